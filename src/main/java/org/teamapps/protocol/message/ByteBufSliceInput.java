@@ -0,0 +1,39 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.message;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * {@link java.io.DataInput} view of a buffer that can hand out byte ranges as slices of the buffer instead of copying them.
+ */
+public class ByteBufSliceInput extends ByteBufInput {
+
+	public ByteBufSliceInput(ByteBuf buffer) {
+		super(buffer);
+	}
+
+	/**
+	 * Reads the next bytes as a read-only slice, the slice is only valid as long as the buffer is retained.
+	 */
+	public ByteBuf readSlice(int length) {
+		return getBuffer().readSlice(length).asReadOnly();
+	}
+}
@@ -0,0 +1,153 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.message;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * {@link DataInput} view of a heap, direct or memory-mapped buffer, reading advances the position of the buffer.
+ */
+public class ByteBufferReader implements DataInput {
+
+	private final ByteBuffer buffer;
+
+	public ByteBufferReader(ByteBuffer buffer) {
+		if (buffer.order() != ByteOrder.BIG_ENDIAN) {
+			throw new RuntimeException("Message buffers must use big endian byte order");
+		}
+		this.buffer = buffer;
+	}
+
+	private void ensureReadable(int length) throws EOFException {
+		if (length > buffer.remaining()) {
+			throw new EOFException("Message too short, required:" + length + ", remaining:" + buffer.remaining());
+		}
+	}
+
+	@Override
+	public void readFully(byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		ensureReadable(len);
+		buffer.get(b, off, len);
+	}
+
+	@Override
+	public int skipBytes(int n) throws IOException {
+		ensureReadable(n);
+		buffer.position(buffer.position() + n);
+		return n;
+	}
+
+	@Override
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		ensureReadable(1);
+		return buffer.get();
+	}
+
+	@Override
+	public int readUnsignedByte() throws IOException {
+		return readByte() & 0xFF;
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		ensureReadable(2);
+		return buffer.getShort();
+	}
+
+	@Override
+	public int readUnsignedShort() throws IOException {
+		return readShort() & 0xFFFF;
+	}
+
+	@Override
+	public char readChar() throws IOException {
+		ensureReadable(2);
+		return buffer.getChar();
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		ensureReadable(4);
+		return buffer.getInt();
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		ensureReadable(8);
+		return buffer.getLong();
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		ensureReadable(4);
+		return buffer.getFloat();
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		ensureReadable(8);
+		return buffer.getDouble();
+	}
+
+	@Override
+	public String readLine() {
+		if (!buffer.hasRemaining()) {
+			return null;
+		}
+		StringBuilder sb = new StringBuilder();
+		while (buffer.hasRemaining()) {
+			int c = buffer.get() & 0xFF;
+			if (c == '\n') {
+				break;
+			} else if (c == '\r') {
+				if (buffer.hasRemaining() && buffer.get(buffer.position()) == '\n') {
+					buffer.get();
+				}
+				break;
+			}
+			sb.append((char) c);
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String readUTF() throws IOException {
+		return DataInputStream.readUTF(this);
+	}
+
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+}
@@ -0,0 +1,138 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.message;
+
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * {@link DataOutput} view of a heap, direct or memory-mapped buffer, writing advances the position of the buffer.
+ */
+public class ByteBufferWriter implements DataOutput {
+
+	private final ByteBuffer buffer;
+
+	public ByteBufferWriter(ByteBuffer buffer) {
+		if (buffer.order() != ByteOrder.BIG_ENDIAN) {
+			throw new RuntimeException("Message buffers must use big endian byte order");
+		}
+		this.buffer = buffer;
+	}
+
+	private void ensureWritable(int length) throws EOFException {
+		if (length > buffer.remaining()) {
+			throw new EOFException("Message buffer too small, required:" + length + ", remaining:" + buffer.remaining());
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		writeByte(b);
+	}
+
+	@Override
+	public void write(byte[] b) throws IOException {
+		write(b, 0, b.length);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureWritable(len);
+		buffer.put(b, off, len);
+	}
+
+	@Override
+	public void writeBoolean(boolean v) throws IOException {
+		writeByte(v ? 1 : 0);
+	}
+
+	@Override
+	public void writeByte(int v) throws IOException {
+		ensureWritable(1);
+		buffer.put((byte) v);
+	}
+
+	@Override
+	public void writeShort(int v) throws IOException {
+		ensureWritable(2);
+		buffer.putShort((short) v);
+	}
+
+	@Override
+	public void writeChar(int v) throws IOException {
+		writeShort(v);
+	}
+
+	@Override
+	public void writeInt(int v) throws IOException {
+		ensureWritable(4);
+		buffer.putInt(v);
+	}
+
+	@Override
+	public void writeLong(long v) throws IOException {
+		ensureWritable(8);
+		buffer.putLong(v);
+	}
+
+	@Override
+	public void writeFloat(float v) throws IOException {
+		ensureWritable(4);
+		buffer.putFloat(v);
+	}
+
+	@Override
+	public void writeDouble(double v) throws IOException {
+		ensureWritable(8);
+		buffer.putDouble(v);
+	}
+
+	@Override
+	public void writeBytes(String s) throws IOException {
+		int length = s.length();
+		ensureWritable(length);
+		for (int i = 0; i < length; i++) {
+			buffer.put((byte) s.charAt(i));
+		}
+	}
+
+	@Override
+	public void writeChars(String s) throws IOException {
+		int length = s.length();
+		ensureWritable(length * 2);
+		for (int i = 0; i < length; i++) {
+			buffer.putChar(s.charAt(i));
+		}
+	}
+
+	@Override
+	public void writeUTF(String s) throws IOException {
+		MessageWriter writer = new MessageWriter(s.length() + 2);
+		writer.writeUTF(s);
+		write(writer.getBytes(), 0, writer.getPosition());
+	}
+
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+}
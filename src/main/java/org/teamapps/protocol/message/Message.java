@@ -49,8 +49,7 @@ public class Message {
 	};
 
 	public static int getMessageFieldId(byte[] bytes) throws IOException {
-		DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes));
-		return dis.readInt();
+		return new MessageReader(bytes).readInt();
 	}
 
 	public Message(MessageField field) {
@@ -154,16 +153,72 @@ public class Message {
 		}
 	}
 
+	public Message(MessageReader reader, MessageModel model) throws IOException {
+		this(reader, model, null);
+	}
+
+	public Message(MessageReader reader, MessageModel model, FileProvider fileProvider) throws IOException {
+		this(reader, model, fileProvider, null);
+	}
+
+	public Message(MessageReader reader, MessageModel model, FileProvider fileProvider, MessageDecoderRegistry decoderRegistry) throws IOException {
+		int id = reader.readInt();
+		this.field = model.getFieldById(id);
+		switch (field.getType()) {
+			case OBJECT, OBJECT_MULTI_REFERENCE -> {
+				if (decoderRegistry != null && field.getType() == MessageFieldType.OBJECT_MULTI_REFERENCE && decoderRegistry.containsDecoder(field.getReferencedFieldId())) {
+					MessageDecoder<? extends Message> messageDecoder = decoderRegistry.getMessageDecoder(field.getReferencedFieldId());
+					List<Message> messages = new ArrayList<>();
+					int messageCount = reader.readInt();
+					for (int i = 0; i < messageCount; i++) {
+						messages.add(messageDecoder.decode(reader, fileProvider));
+					}
+					value = messages;
+				} else {
+					List<Message> messages = new ArrayList<>();
+					int messageCount = reader.readInt();
+					for (int i = 0; i < messageCount; i++) {
+						messages.add(new Message(reader, model, fileProvider, decoderRegistry));
+					}
+					value = messages;
+				}
+			}
+			case OBJECT_SINGLE_REFERENCE -> {
+				if (decoderRegistry !=null && decoderRegistry.containsDecoder(field.getReferencedFieldId())) {
+					MessageDecoder<? extends Message> messageDecoder = decoderRegistry.getMessageDecoder(field.getReferencedFieldId());
+					value = messageDecoder.decode(reader, fileProvider);
+				} else {
+					value = new Message(reader, model, fileProvider);
+				}
+			}
+			case BOOLEAN -> value = reader.readBoolean();
+			case BYTE -> value = reader.readByte();
+			case INT, ENUM -> value = reader.readInt();
+			case LONG -> value = reader.readLong();
+			case FLOAT -> value = reader.readFloat();
+			case DOUBLE -> value = reader.readDouble();
+			case STRING -> value = MessageUtils.readString(reader);
+			case BITSET -> value = MessageUtils.readBitSet(reader);
+			case BYTE_ARRAY -> value = MessageUtils.readByteArray(reader);
+			case INT_ARRAY -> value = MessageUtils.readIntArray(reader);
+			case LONG_ARRAY -> value = MessageUtils.readLongArray(reader);
+			case FLOAT_ARRAY -> value = MessageUtils.readFloatArray(reader);
+			case DOUBLE_ARRAY -> value = MessageUtils.readDoubleArray(reader);
+			case STRING_ARRAY -> value = MessageUtils.readStringArray(reader);
+			case FILE -> value = MessageUtils.readFile(reader, fileProvider);
+		}
+	}
+
 	public Message(byte[] bytes, MessageModel model) throws IOException {
-		this(new DataInputStream(new ByteArrayInputStream(bytes)), model);
+		this(new MessageReader(bytes), model);
 	}
 
 	public Message(byte[] bytes, MessageModel model, FileProvider fileProvider) throws IOException {
-		this(new DataInputStream(new ByteArrayInputStream(bytes)), model, fileProvider);
+		this(new MessageReader(bytes), model, fileProvider);
 	}
 
 	public Message(byte[] bytes, MessageModel model, FileProvider fileProvider, MessageDecoderRegistry decoderRegistry) throws IOException {
-		this(new DataInputStream(new ByteArrayInputStream(bytes)), model, fileProvider, decoderRegistry);
+		this(new MessageReader(bytes), model, fileProvider, decoderRegistry);
 	}
 
 	public void write(DataOutputStream dos) throws IOException {
@@ -203,16 +258,51 @@ public class Message {
 		}
 	}
 
+	public void write(MessageWriter writer, FileSink fileSink) throws IOException {
+		writer.writeInt(field.getId());
+		switch (field.getType()) {
+			case OBJECT, OBJECT_MULTI_REFERENCE -> {
+				List<Message> messages = getMessageObjectValue();
+				if (messages == null) {
+					writer.writeInt(0);
+				} else {
+					writer.writeInt(messages.size());
+					for (Message message : messages) {
+						message.write(writer, fileSink);
+					}
+				}
+			}
+			case OBJECT_SINGLE_REFERENCE -> getMessageObject().write(writer, fileSink);
+			case BOOLEAN -> writer.writeBoolean(getBooleanValue());
+			case BYTE -> writer.writeByte(getByteValue());
+			case INT, ENUM -> writer.writeInt(getIntValue());
+			case LONG -> writer.writeLong(getLongValue());
+			case FLOAT -> writer.writeFloat(getFloatValue());
+			case DOUBLE -> writer.writeDouble(getDoubleValue());
+			case STRING -> MessageUtils.writeString(writer, getStringValue());
+			case BITSET -> MessageUtils.writeBitSet(writer, getBitSetValue());
+			case BYTE_ARRAY -> MessageUtils.writeByteArray(writer, getByteArrayValue());
+			case INT_ARRAY -> MessageUtils.writeIntArray(writer, getIntArrayValue());
+			case LONG_ARRAY -> MessageUtils.writeLongArray(writer, getLongArrayValue());
+			case FLOAT_ARRAY -> MessageUtils.writeFloatArray(writer, getFloatArrayValue());
+			case DOUBLE_ARRAY -> MessageUtils.writeDoubleArray(writer, getDoubleArrayValue());
+			case STRING_ARRAY -> MessageUtils.writeStringArray(writer, getStringArrayValue());
+			case FILE -> MessageUtils.writeFile(writer, getFileValue(), fileSink);
+		}
+	}
+
 	public byte[] toBytes() throws IOException {
 		return toBytes(null);
 	}
 
 	public byte[] toBytes(FileSink fileSink) throws IOException {
-		ByteArrayOutputStream bos = new ByteArrayOutputStream();
-		DataOutputStream dos = new DataOutputStream(bos);
-		write(dos, fileSink);
-		dos.close();
-		return bos.toByteArray();
+		MessageWriter writer = MessageWriter.acquire();
+		try {
+			write(writer, fileSink);
+			return writer.copyBytes();
+		} finally {
+			writer.release();
+		}
 	}
 
 	public MessageField getField() {
@@ -23,11 +23,19 @@ import org.teamapps.protocol.file.FileProvider;
 
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
+import java.io.IOException;
 
 public interface MessageDecoder<MESSAGE extends Message> {
 
 	MESSAGE decode(DataInputStream dis, FileProvider fileProvider);
 
+	default MESSAGE decode(MessageReader reader, FileProvider fileProvider) throws IOException {
+		ByteArrayInputStream bis = new ByteArrayInputStream(reader.getBytes(), reader.getPosition(), reader.remaining());
+		MESSAGE message = decode(new DataInputStream(bis), fileProvider);
+		reader.skipBytes(reader.remaining() - bis.available());
+		return message;
+	}
+
 	default MESSAGE decode(byte[] bytes, FileProvider fileProvider) {
 		return decode(new DataInputStream(new ByteArrayInputStream(bytes)), fileProvider);
 	}
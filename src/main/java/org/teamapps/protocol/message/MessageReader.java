@@ -0,0 +1,185 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.message;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+public class MessageReader implements DataInput {
+
+	private static final VarHandle SHORT_VIEW = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle INT_VIEW = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+	private final byte[] bytes;
+	private final int limit;
+	private int position;
+
+	public MessageReader(byte[] bytes) {
+		this(bytes, 0, bytes.length);
+	}
+
+	public MessageReader(byte[] bytes, int offset, int length) {
+		this.bytes = bytes;
+		this.position = offset;
+		this.limit = offset + length;
+	}
+
+	private void ensureReadable(int length) throws EOFException {
+		if (length > limit - position) {
+			throw new EOFException("Message too short, required:" + length + ", remaining:" + (limit - position));
+		}
+	}
+
+	@Override
+	public void readFully(byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		ensureReadable(len);
+		System.arraycopy(bytes, position, b, off, len);
+		position += len;
+	}
+
+	@Override
+	public int skipBytes(int n) throws IOException {
+		ensureReadable(n);
+		position += n;
+		return n;
+	}
+
+	@Override
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		ensureReadable(1);
+		return bytes[position++];
+	}
+
+	@Override
+	public int readUnsignedByte() throws IOException {
+		return readByte() & 0xFF;
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		ensureReadable(2);
+		short value = (short) SHORT_VIEW.get(bytes, position);
+		position += 2;
+		return value;
+	}
+
+	@Override
+	public int readUnsignedShort() throws IOException {
+		return readShort() & 0xFFFF;
+	}
+
+	@Override
+	public char readChar() throws IOException {
+		return (char) readShort();
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		ensureReadable(4);
+		int value = (int) INT_VIEW.get(bytes, position);
+		position += 4;
+		return value;
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		ensureReadable(8);
+		long value = (long) LONG_VIEW.get(bytes, position);
+		position += 8;
+		return value;
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		return Float.intBitsToFloat(readInt());
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		return Double.longBitsToDouble(readLong());
+	}
+
+	@Override
+	public String readLine() {
+		if (position >= limit) {
+			return null;
+		}
+		StringBuilder sb = new StringBuilder();
+		while (position < limit) {
+			int c = bytes[position++] & 0xFF;
+			if (c == '\n') {
+				break;
+			} else if (c == '\r') {
+				if (position < limit && bytes[position] == '\n') {
+					position++;
+				}
+				break;
+			}
+			sb.append((char) c);
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String readUTF() throws IOException {
+		return DataInputStream.readUTF(this);
+	}
+
+	public int peekUnsignedByte() throws IOException {
+		ensureReadable(1);
+		return bytes[position] & 0xFF;
+	}
+
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	public int getPosition() {
+		return position;
+	}
+
+	public void setPosition(int position) {
+		this.position = position;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	public int remaining() {
+		return limit - position;
+	}
+}
@@ -20,19 +20,27 @@
 package org.teamapps.protocol.message;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import org.teamapps.protocol.file.FileProvider;
 import org.teamapps.protocol.file.FileSink;
 import org.teamapps.protocol.schema.FileProperty;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.BitSet;
 
 public class MessageUtils {
+
+	/**
+	 * Minimum length of byte arrays that are retained as buffer slices or appended as composite components instead of being copied.
+	 */
+	public static final int ZERO_COPY_THRESHOLD = 16 * 1024;
+	private static final int COMPOSITE_PADDING = 4 * 1024;
+
 	public static FileProperty readFileProperty(DataInputStream dis, FileProvider fileProvider) throws IOException {
 		long length = dis.readLong();
 		String fileName = readString(dis);
@@ -126,6 +134,62 @@ public class MessageUtils {
 	}
 
 
+	public static void writeVarInt(DataOutput out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	public static int readVarInt(DataInput in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	public static void writeVarLong(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	public static long readVarLong(DataInput in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varlong");
+	}
+
+	public static int encodeZigZag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	public static int decodeZigZag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	public static long encodeZigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	public static long decodeZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
 	public static void writeIntAsByte(DataOutputStream dos, int value) throws IOException {
 		dos.writeByte(value);
 	}
@@ -165,6 +229,32 @@ public class MessageUtils {
 		}
 	}
 
+	public static int getUtf8Length(String value) {
+		if (value == null) {
+			return 0;
+		}
+		int length = value.length();
+		int utf8Length = length;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c >= 0x80) {
+				if (c < 0x800) {
+					utf8Length++;
+				} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+					utf8Length += 2;
+					i++;
+				} else {
+					utf8Length += 2;
+				}
+			}
+		}
+		return utf8Length;
+	}
+
+	public static int getStringSize(String value) {
+		return 4 + getUtf8Length(value);
+	}
+
 	public static String readString(DataInputStream dis) throws IOException {
 		int length = dis.readInt();
 		if (length == 0) {
@@ -176,6 +266,17 @@ public class MessageUtils {
 		}
 	}
 
+	public static String readString(DataInput in, int firstLengthByte) throws IOException {
+		int length = (firstLengthByte << 24) | (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+		if (length == 0) {
+			return null;
+		} else {
+			byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+
 	public static String readString(ByteBuffer buf) {
 		int length = buf.getInt();
 		if (length == 0) {
@@ -216,6 +317,65 @@ public class MessageUtils {
 		}
 	}
 
+	/**
+	 * Writes bytes to the output, large arrays are appended as component when the output writes into a composite buffer.
+	 */
+	public static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+		CompositeByteBuf composite = getCompositeBuffer(out);
+		if (composite != null && bytes.length >= ZERO_COPY_THRESHOLD) {
+			appendComponent(composite, Unpooled.wrappedBuffer(bytes));
+		} else {
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Writes the readable bytes of a buffer without an intermediate byte array where the output allows it.
+	 */
+	public static void writeBytes(DataOutput out, ByteBuf bytes) throws IOException {
+		writeBytes(out, bytes, bytes.readerIndex(), bytes.readableBytes());
+	}
+
+	public static void writeBytes(DataOutput out, ByteBuf bytes, int index, int length) throws IOException {
+		if (out instanceof MessageWriter) {
+			MessageWriter writer = (MessageWriter) out;
+			int position = writer.getPosition();
+			writer.setPosition(position + length);
+			bytes.getBytes(index, writer.getBytes(), position, length);
+		} else if (out instanceof ByteBufOutputStream) {
+			ByteBuf buffer = ((ByteBufOutputStream) out).buffer();
+			if (length >= ZERO_COPY_THRESHOLD && buffer instanceof CompositeByteBuf) {
+				appendComponent((CompositeByteBuf) buffer, bytes.retainedSlice(index, length));
+			} else {
+				buffer.writeBytes(bytes, index, length);
+			}
+		} else if (out instanceof ByteBufferWriter) {
+			ByteBuffer buffer = ((ByteBufferWriter) out).getBuffer();
+			if (length > buffer.remaining()) {
+				throw new EOFException("Message buffer too small, required:" + length + ", remaining:" + buffer.remaining());
+			}
+			bytes.getBytes(index, buffer.duplicate().limit(buffer.position() + length));
+			buffer.position(buffer.position() + length);
+		} else if (out instanceof OutputStream) {
+			bytes.getBytes(index, (OutputStream) out, length);
+		} else {
+			out.write(ByteBufUtil.getBytes(bytes, index, length));
+		}
+	}
+
+	private static CompositeByteBuf getCompositeBuffer(DataOutput out) {
+		if (out instanceof ByteBufOutputStream && ((ByteBufOutputStream) out).buffer() instanceof CompositeByteBuf) {
+			return (CompositeByteBuf) ((ByteBufOutputStream) out).buffer();
+		}
+		return null;
+	}
+
+	private static void appendComponent(CompositeByteBuf composite, ByteBuf component) {
+		composite.capacity(composite.writerIndex());
+		composite.addComponent(true, component);
+		composite.capacity(composite.writerIndex() + COMPOSITE_PADDING);
+	}
+
 	public static void writeByteArray(ByteBuffer buf, byte[] bytes) {
 		if (bytes == null) {
 			buf.putInt(0);
@@ -267,12 +427,11 @@ public class MessageUtils {
 	}
 
 	public static BitSet readBitSet(DataInputStream dis) throws IOException {
-		int length = dis.readInt();
-		if (length == 0) {
+		int size = dis.readInt();
+		if (size == 0) {
 			return null;
 		}
 		BitSet bitSet = new BitSet();
-		int size = dis.readInt();
 		for (int i = 0; i < size; i++) {
 			bitSet.set(dis.readInt());
 		}
@@ -280,12 +439,11 @@ public class MessageUtils {
 	}
 
 	public static BitSet readBitSet(ByteBuffer buf) {
-		int length = buf.getInt();
-		if (length == 0) {
+		int size = buf.getInt();
+		if (size == 0) {
 			return null;
 		}
 		BitSet bitSet = new BitSet();
-		int size = buf.getInt();
 		for (int i = 0; i < size; i++) {
 			bitSet.set(buf.getInt());
 		}
@@ -468,6 +626,220 @@ public class MessageUtils {
 		return stringArray;
 	}
 
+	public static FileProperty readFileProperty(MessageReader reader, FileProvider fileProvider) throws IOException {
+		long length = reader.readLong();
+		String fileName = readString(reader);
+		String fileId = readString(reader);
+		File file = fileProvider != null ? fileProvider.getFile(fileId) : null;
+		return new FileProperty(fileName, file, length);
+	}
+
+	public static void writeFileProperty(MessageWriter writer, FileProperty fileProperty, FileSink fileSink) throws IOException {
+		writer.writeLong(fileProperty != null ? fileProperty.getLength() : 0);
+		writeString(writer, fileProperty != null ? fileProperty.getFileName() : null);
+		if (fileSink == null || fileProperty == null || !fileProperty.exists() || fileProperty.getLength() == 0) {
+			writeString(writer, null);
+			return;
+		}
+		String fileId = fileSink.handleFile(fileProperty.getFile());
+		writeString(writer, fileId);
+	}
+
+	public static File readFile(MessageReader reader, FileProvider fileProvider) throws IOException {
+		String fileId = readString(reader);
+		if (fileProvider == null) {
+			return null;
+		}
+		return fileProvider.getFile(fileId);
+	}
+
+	public static void writeFile(MessageWriter writer, File file, FileSink fileSink) throws IOException {
+		if (fileSink == null || file == null || !file.exists() || file.length() == 0) {
+			writeString(writer, null);
+			return;
+		}
+		String fileId = fileSink.handleFile(file);
+		writeString(writer, fileId);
+	}
+
+	public static void writeString(MessageWriter writer, String value) {
+		if (value != null && !value.isEmpty()) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writer.writeInt(bytes.length);
+			writer.write(bytes);
+		} else {
+			writer.writeInt(0);
+		}
+	}
+
+	public static String readString(MessageReader reader) throws IOException {
+		int length = reader.readInt();
+		if (length == 0) {
+			return null;
+		} else {
+			int offset = reader.getPosition();
+			reader.skipBytes(length);
+			return new String(reader.getBytes(), offset, length, StandardCharsets.UTF_8);
+		}
+	}
+
+	public static void writeByteArray(MessageWriter writer, byte[] bytes) {
+		if (bytes == null) {
+			writer.writeInt(0);
+		} else {
+			writer.writeInt(bytes.length);
+			writer.write(bytes);
+		}
+	}
+
+	public static byte[] readByteArray(MessageReader reader) throws IOException {
+		int length = reader.readInt();
+		if (length == 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		reader.readFully(bytes);
+		return bytes;
+	}
+
+	public static void writeBitSet(MessageWriter writer, BitSet bitSet) {
+		if (bitSet == null) {
+			writer.writeInt(0);
+		} else {
+			writer.writeInt(bitSet.cardinality());
+			for (int id = bitSet.nextSetBit(0); id >= 0; id = bitSet.nextSetBit(id + 1)) {
+				writer.writeInt(id);
+			}
+		}
+	}
+
+	public static BitSet readBitSet(MessageReader reader) throws IOException {
+		int size = reader.readInt();
+		if (size == 0) {
+			return null;
+		}
+		BitSet bitSet = new BitSet();
+		for (int i = 0; i < size; i++) {
+			bitSet.set(reader.readInt());
+		}
+		return bitSet;
+	}
+
+	public static void writeIntArray(MessageWriter writer, int[] array) {
+		if (array == null || array.length == 0) {
+			writer.writeInt(0);
+		} else {
+			writer.writeInt(array.length);
+			for (int value : array) {
+				writer.writeInt(value);
+			}
+		}
+	}
+
+	public static int[] readIntArray(MessageReader reader) throws IOException {
+		int length = reader.readInt();
+		if (length == 0) {
+			return null;
+		}
+		int[] array = new int[length];
+		for (int i = 0; i < length; i++) {
+			array[i] = reader.readInt();
+		}
+		return array;
+	}
+
+	public static void writeLongArray(MessageWriter writer, long[] array) {
+		if (array == null || array.length == 0) {
+			writer.writeInt(0);
+		} else {
+			writer.writeInt(array.length);
+			for (long value : array) {
+				writer.writeLong(value);
+			}
+		}
+	}
+
+	public static long[] readLongArray(MessageReader reader) throws IOException {
+		int length = reader.readInt();
+		if (length == 0) {
+			return null;
+		}
+		long[] array = new long[length];
+		for (int i = 0; i < length; i++) {
+			array[i] = reader.readLong();
+		}
+		return array;
+	}
+
+	public static void writeFloatArray(MessageWriter writer, float[] array) {
+		if (array == null || array.length == 0) {
+			writer.writeInt(0);
+		} else {
+			writer.writeInt(array.length);
+			for (float value : array) {
+				writer.writeFloat(value);
+			}
+		}
+	}
+
+	public static float[] readFloatArray(MessageReader reader) throws IOException {
+		int length = reader.readInt();
+		if (length == 0) {
+			return null;
+		}
+		float[] array = new float[length];
+		for (int i = 0; i < length; i++) {
+			array[i] = reader.readFloat();
+		}
+		return array;
+	}
+
+	public static void writeDoubleArray(MessageWriter writer, double[] array) {
+		if (array == null || array.length == 0) {
+			writer.writeInt(0);
+		} else {
+			writer.writeInt(array.length);
+			for (double value : array) {
+				writer.writeDouble(value);
+			}
+		}
+	}
+
+	public static double[] readDoubleArray(MessageReader reader) throws IOException {
+		int length = reader.readInt();
+		if (length == 0) {
+			return null;
+		}
+		double[] array = new double[length];
+		for (int i = 0; i < length; i++) {
+			array[i] = reader.readDouble();
+		}
+		return array;
+	}
+
+	public static void writeStringArray(MessageWriter writer, String[] array) {
+		if (array == null || array.length == 0) {
+			writer.writeInt(0);
+		} else {
+			writer.writeInt(array.length);
+			for (String value : array) {
+				writeString(writer, value);
+			}
+		}
+	}
+
+	public static String[] readStringArray(MessageReader reader) throws IOException {
+		int length = reader.readInt();
+		if (length == 0) {
+			return null;
+		}
+		String[] array = new String[length];
+		for (int i = 0; i < length; i++) {
+			array[i] = readString(reader);
+		}
+		return array;
+	}
+
 	public static void writeBoolean(ByteBuffer buffer, boolean value) {
 		buffer.put((byte) (value ? 1 : 0));
 	}
@@ -0,0 +1,242 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.message;
+
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+public class MessageWriter implements DataOutput {
+
+	private static final VarHandle SHORT_VIEW = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle INT_VIEW = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+	private static final int DEFAULT_CAPACITY = 256;
+	private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+	private static final ThreadLocal<MessageWriter> SCRATCH_WRITER = ThreadLocal.withInitial(MessageWriter::new);
+
+	private byte[] bytes;
+	private int position;
+	private boolean acquired;
+	private DataOutputStream dataOutputStream;
+
+	/**
+	 * Returns the scratch writer of the current thread, or a new writer if the scratch writer is used by an enclosing call.
+	 * The scratch buffer grows with the largest message written and is handed back with {@link #release()}.
+	 */
+	public static MessageWriter acquire() {
+		MessageWriter writer = SCRATCH_WRITER.get();
+		if (writer.acquired) {
+			return new MessageWriter();
+		}
+		writer.acquired = true;
+		writer.position = 0;
+		return writer;
+	}
+
+	public void release() {
+		if (bytes.length > MAX_RETAINED_CAPACITY) {
+			bytes = new byte[DEFAULT_CAPACITY];
+		}
+		position = 0;
+		acquired = false;
+	}
+
+	public MessageWriter() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public MessageWriter(int initialCapacity) {
+		this(new byte[initialCapacity]);
+	}
+
+	public MessageWriter(byte[] bytes) {
+		this.bytes = bytes;
+	}
+
+	public void ensureCapacity(int length) {
+		if (length > bytes.length - position) {
+			bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, position + length));
+		}
+	}
+
+	@Override
+	public void write(int b) {
+		writeByte(b);
+	}
+
+	@Override
+	public void write(byte[] b) {
+		write(b, 0, b.length);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		ensureCapacity(len);
+		System.arraycopy(b, off, bytes, position, len);
+		position += len;
+	}
+
+	@Override
+	public void writeBoolean(boolean v) {
+		writeByte(v ? 1 : 0);
+	}
+
+	@Override
+	public void writeByte(int v) {
+		ensureCapacity(1);
+		bytes[position++] = (byte) v;
+	}
+
+	@Override
+	public void writeShort(int v) {
+		ensureCapacity(2);
+		SHORT_VIEW.set(bytes, position, (short) v);
+		position += 2;
+	}
+
+	@Override
+	public void writeChar(int v) {
+		writeShort(v);
+	}
+
+	@Override
+	public void writeInt(int v) {
+		ensureCapacity(4);
+		INT_VIEW.set(bytes, position, v);
+		position += 4;
+	}
+
+	@Override
+	public void writeLong(long v) {
+		ensureCapacity(8);
+		LONG_VIEW.set(bytes, position, v);
+		position += 8;
+	}
+
+	@Override
+	public void writeFloat(float v) {
+		writeInt(Float.floatToIntBits(v));
+	}
+
+	@Override
+	public void writeDouble(double v) {
+		writeLong(Double.doubleToLongBits(v));
+	}
+
+	@Override
+	public void writeBytes(String s) {
+		int length = s.length();
+		ensureCapacity(length);
+		for (int i = 0; i < length; i++) {
+			bytes[position++] = (byte) s.charAt(i);
+		}
+	}
+
+	@Override
+	public void writeChars(String s) {
+		int length = s.length();
+		ensureCapacity(length * 2);
+		for (int i = 0; i < length; i++) {
+			SHORT_VIEW.set(bytes, position, (short) s.charAt(i));
+			position += 2;
+		}
+	}
+
+	@Override
+	public void writeUTF(String s) throws UTFDataFormatException {
+		int length = s.length();
+		int utfLength = 0;
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			utfLength += c >= 0x0001 && c <= 0x007F ? 1 : c > 0x07FF ? 3 : 2;
+		}
+		if (utfLength > 65535) {
+			throw new UTFDataFormatException("Encoded string too long: " + utfLength + " bytes");
+		}
+		writeShort(utfLength);
+		ensureCapacity(utfLength);
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if (c >= 0x0001 && c <= 0x007F) {
+				bytes[position++] = (byte) c;
+			} else if (c > 0x07FF) {
+				bytes[position++] = (byte) (0xE0 | ((c >> 12) & 0x0F));
+				bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				bytes[position++] = (byte) (0x80 | (c & 0x3F));
+			} else {
+				bytes[position++] = (byte) (0xC0 | ((c >> 6) & 0x1F));
+				bytes[position++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+	}
+
+	public void setInt(int index, int v) {
+		INT_VIEW.set(bytes, index, v);
+	}
+
+	public int getPosition() {
+		return position;
+	}
+
+	public void setPosition(int position) {
+		ensureCapacity(position - this.position);
+		this.position = position;
+	}
+
+	public void reset() {
+		position = 0;
+	}
+
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	public byte[] toByteArray() {
+		return position == bytes.length ? bytes : Arrays.copyOf(bytes, position);
+	}
+
+	public byte[] copyBytes() {
+		return Arrays.copyOf(bytes, position);
+	}
+
+	public DataOutputStream asDataOutputStream() {
+		if (dataOutputStream == null) {
+			dataOutputStream = new DataOutputStream(new OutputStream() {
+				@Override
+				public void write(int b) {
+					writeByte(b);
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) {
+					MessageWriter.this.write(b, off, len);
+				}
+			});
+		}
+		return dataOutputStream;
+	}
+}
@@ -20,9 +20,13 @@
 package org.teamapps.protocol.schema;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import org.teamapps.protocol.file.FileProvider;
 import org.teamapps.protocol.file.FileSink;
+import org.teamapps.protocol.message.ByteBufInput;
 import org.teamapps.protocol.message.MessageUtils;
+import org.teamapps.protocol.message.MessageWriter;
 
 import java.io.*;
 import java.util.ArrayList;
@@ -32,7 +36,7 @@ import java.util.List;
 public class AbstractMessageProperty implements MessageProperty {
 
 	private final PropertyDefinition propertyDefinition;
-	private final Object value;
+	private Object value;
 
 	public AbstractMessageProperty(PropertyDefinition propertyDefinition, Object value) {
 		this.propertyDefinition = propertyDefinition;
@@ -61,197 +65,247 @@ public class AbstractMessageProperty implements MessageProperty {
 	}
 
 	public AbstractMessageProperty(DataInputStream dis, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
-		PropertyType type = PropertyType.getById(dis.readByte());
-		int key = dis.readShort();
+		this(dis, model, fileProvider, decoderRegistry, MessageEncoding.DEFAULT);
+	}
+
+	public AbstractMessageProperty(ByteBuf buf, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		this(new ByteBufInput(buf), model, fileProvider, decoderRegistry, MessageEncoding.DEFAULT);
+	}
+
+	public AbstractMessageProperty(DataInput in, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry, MessageEncoding encoding) throws IOException {
+		this(in, model, fileProvider, decoderRegistry, encoding, SharedReferences.create(encoding));
+	}
+
+	AbstractMessageProperty(DataInput in, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry, MessageEncoding encoding, SharedReferences references) throws IOException {
+		PropertyType type = PropertyType.getById(in.readByte());
+		int key = encoding.readKey(in);
 		this.propertyDefinition = model.getPropertyDefinitionByKey(key);
+		if (propertyDefinition == null) {
+			throw new RuntimeException("Message parsing error - unknown property key:" + key);
+		}
 		if (type != propertyDefinition.getType()) {
 			throw new RuntimeException("Message parsing error - property type mismatch: " + type + " <-> " + propertyDefinition.getType());
 		}
-		switch (propertyDefinition.getType()) {
-			case OBJECT_SINGLE_REFERENCE -> {
-				ObjectPropertyDefinition referencedObjectDefinition = propertyDefinition.getReferencedObject();
-				if (decoderRegistry != null && decoderRegistry.containsDecoder(referencedObjectDefinition.getObjectUuid())) {
-					PojoObjectDecoder<? extends MessageObject> messageDecoder = decoderRegistry.getMessageDecoder(referencedObjectDefinition.getObjectUuid());
-					value = messageDecoder.decode(dis, fileProvider);
-				} else {
-					value = new MessageObject(dis, referencedObjectDefinition, fileProvider, decoderRegistry);
-				}
-			}
-			case OBJECT_MULTI_REFERENCE -> {
-				ObjectPropertyDefinition referencedObjectDefinition = propertyDefinition.getReferencedObject();
-				List<MessageObject> messageObjects = new ArrayList<>();
-				int messageCount = dis.readInt();
-				if (decoderRegistry != null && decoderRegistry.containsDecoder(referencedObjectDefinition.getObjectUuid())) {
-					PojoObjectDecoder<? extends MessageObject> messageDecoder = decoderRegistry.getMessageDecoder(referencedObjectDefinition.getObjectUuid());
-					for (int i = 0; i < messageCount; i++) {
-						messageObjects.add(messageDecoder.decode(dis, fileProvider));
+		this.value = readEncodedValue(in, fileProvider, decoderRegistry, encoding, references);
+	}
+
+	AbstractMessageProperty(PropertyDefinition propertyDefinition, PropertyType type, DataInput in, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry, MessageEncoding encoding, SharedReferences references) throws IOException {
+		this.propertyDefinition = propertyDefinition;
+		if (type != propertyDefinition.getType()) {
+			throw new RuntimeException("Message parsing error - property type mismatch: " + type + " <-> " + propertyDefinition.getType());
+		}
+		this.value = readEncodedValue(in, fileProvider, decoderRegistry, encoding, references);
+	}
+
+	void readValueInto(DataInput in, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry, MessageEncoding encoding, SharedReferences references) throws IOException {
+		if (!encoding.isSharedReferences()) {
+			ObjectPropertyDefinition referencedObjectDefinition = propertyDefinition.getReferencedObject();
+			if (propertyDefinition.getType() == PropertyType.OBJECT_SINGLE_REFERENCE && isReusable(value, referencedObjectDefinition)) {
+				encoding.readFrameLength(in, propertyDefinition.getType());
+				((MessageObject) value).readInto(in, fileProvider, decoderRegistry, encoding, references);
+				return;
+			} else if (propertyDefinition.getType() == PropertyType.OBJECT_MULTI_REFERENCE && !encoding.isColumnar() && value instanceof ArrayList) {
+				encoding.readFrameLength(in, propertyDefinition.getType());
+				List<MessageObject> messageObjects = (List<MessageObject>) value;
+				PojoObjectDecoder<? extends MessageObject> messageDecoder = decoderRegistry != null && decoderRegistry.containsDecoder(referencedObjectDefinition.getObjectUuid()) ? decoderRegistry.getMessageDecoder(referencedObjectDefinition.getObjectUuid()) : null;
+				int messageCount = encoding.readSize(in);
+				for (int i = 0; i < messageCount; i++) {
+					encoding.readObjectFrameLength(in);
+					MessageObject messageObject = i < messageObjects.size() ? messageObjects.get(i) : null;
+					if (isReusable(messageObject, referencedObjectDefinition)) {
+						messageObject.readInto(in, fileProvider, decoderRegistry, encoding, references);
+						continue;
 					}
-				} else {
-					for (int i = 0; i < messageCount; i++) {
-						messageObjects.add(new MessageObject(dis, referencedObjectDefinition, fileProvider, decoderRegistry));
+					messageObject = messageDecoder != null ? messageDecoder.decode(in, referencedObjectDefinition, fileProvider, decoderRegistry, encoding, references) : new MessageObject(in, referencedObjectDefinition, fileProvider, decoderRegistry, encoding, references);
+					if (i < messageObjects.size()) {
+						messageObjects.set(i, messageObject);
+					} else {
+						messageObjects.add(messageObject);
 					}
 				}
-				value = messageObjects;
-			}
-			case BOOLEAN -> value = dis.readBoolean();
-			case BYTE -> value = dis.readByte();
-			case INT -> value = dis.readInt();
-			case LONG -> value = dis.readLong();
-			case FLOAT -> value = dis.readFloat();
-			case DOUBLE -> value = dis.readDouble();
-			case STRING -> value = MessageUtils.readString(dis);
-			case BITSET -> value = MessageUtils.readBitSet(dis);
-			case BYTE_ARRAY -> value = MessageUtils.readByteArray(dis);
-			case INT_ARRAY -> value = MessageUtils.readIntArray(dis);
-			case LONG_ARRAY -> value = MessageUtils.readLongArray(dis);
-			case FLOAT_ARRAY -> value = MessageUtils.readFloatArray(dis);
-			case DOUBLE_ARRAY -> value = MessageUtils.readDoubleArray(dis);
-			case STRING_ARRAY -> value = MessageUtils.readStringArray(dis);
-			case FILE -> value = MessageUtils.readFileProperty(dis, fileProvider);
-			case ENUM -> {
-				value = null;
+				if (messageObjects.size() > messageCount) {
+					messageObjects.subList(messageCount, messageObjects.size()).clear();
+				}
+				return;
 			}
-			default ->
-					throw new RuntimeException("Message parsing error - property type unknown:" + propertyDefinition.getType());
 		}
+		value = readEncodedValue(in, fileProvider, decoderRegistry, encoding, references);
 	}
 
-	public AbstractMessageProperty(ByteBuf buf, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
-		PropertyType type = PropertyType.getById(buf.readByte());
-		int key = buf.readShort();
-		this.propertyDefinition = model.getPropertyDefinitionByKey(key);
-		if (type != propertyDefinition.getType()) {
-			throw new RuntimeException("Message parsing error - property type mismatch: " + type + " <-> " + propertyDefinition.getType());
+	private static boolean isReusable(Object value, ObjectPropertyDefinition referencedObjectDefinition) {
+		if (!(value instanceof MessageObject) || value instanceof LazyMessageObject) {
+			return false;
 		}
+		return ((MessageObject) value).getModel().getModelUuid().equals(referencedObjectDefinition.getObjectUuid());
+	}
+
+	private Object readEncodedValue(DataInput in, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry, MessageEncoding encoding, SharedReferences references) throws IOException {
+		Object value;
+		encoding.readFrameLength(in, propertyDefinition.getType());
 		switch (propertyDefinition.getType()) {
 			case OBJECT_SINGLE_REFERENCE -> {
 				ObjectPropertyDefinition referencedObjectDefinition = propertyDefinition.getReferencedObject();
-				if (decoderRegistry != null && decoderRegistry.containsDecoder(referencedObjectDefinition.getObjectUuid())) {
+				MessageObject sharedReference = encoding.readSharedReference(in, references);
+				if (sharedReference != null) {
+					value = sharedReference;
+				} else if (decoderRegistry != null && decoderRegistry.containsDecoder(referencedObjectDefinition.getObjectUuid())) {
 					PojoObjectDecoder<? extends MessageObject> messageDecoder = decoderRegistry.getMessageDecoder(referencedObjectDefinition.getObjectUuid());
-					value = messageDecoder.decode(buf, fileProvider);
+					value = encoding.addSharedReference(messageDecoder.decode(in, referencedObjectDefinition, fileProvider, decoderRegistry, encoding, references), references);
 				} else {
-					value = new MessageObject(buf, referencedObjectDefinition, fileProvider, decoderRegistry);
+					value = encoding.addSharedReference(new MessageObject(in, referencedObjectDefinition, fileProvider, decoderRegistry, encoding, references), references);
 				}
 			}
 			case OBJECT_MULTI_REFERENCE -> {
 				ObjectPropertyDefinition referencedObjectDefinition = propertyDefinition.getReferencedObject();
-				List<MessageObject> messageObjects = new ArrayList<>();
-				int messageCount = buf.readInt();
-				if (decoderRegistry != null && decoderRegistry.containsDecoder(referencedObjectDefinition.getObjectUuid())) {
-					PojoObjectDecoder<? extends MessageObject> messageDecoder = decoderRegistry.getMessageDecoder(referencedObjectDefinition.getObjectUuid());
-					for (int i = 0; i < messageCount; i++) {
-						messageObjects.add(messageDecoder.decode(buf, fileProvider));
-					}
+				if (encoding.isColumnar()) {
+					value = ColumnarListCodec.read(in, referencedObjectDefinition, null, fileProvider, decoderRegistry, encoding, references);
 				} else {
-					for (int i = 0; i < messageCount; i++) {
-						messageObjects.add(new MessageObject(buf, referencedObjectDefinition, fileProvider, decoderRegistry));
+					List<MessageObject> messageObjects = new ArrayList<>();
+					int messageCount = encoding.readSize(in);
+					if (decoderRegistry != null && decoderRegistry.containsDecoder(referencedObjectDefinition.getObjectUuid())) {
+						PojoObjectDecoder<? extends MessageObject> messageDecoder = decoderRegistry.getMessageDecoder(referencedObjectDefinition.getObjectUuid());
+						for (int i = 0; i < messageCount; i++) {
+							encoding.readObjectFrameLength(in);
+							MessageObject sharedReference = encoding.readSharedReference(in, references);
+							messageObjects.add(sharedReference != null ? sharedReference : encoding.addSharedReference(messageDecoder.decode(in, referencedObjectDefinition, fileProvider, decoderRegistry, encoding, references), references));
+						}
+					} else {
+						for (int i = 0; i < messageCount; i++) {
+							encoding.readObjectFrameLength(in);
+							MessageObject sharedReference = encoding.readSharedReference(in, references);
+							messageObjects.add(sharedReference != null ? sharedReference : encoding.addSharedReference(new MessageObject(in, referencedObjectDefinition, fileProvider, decoderRegistry, encoding, references), references));
+						}
 					}
+					value = messageObjects;
 				}
-				value = messageObjects;
-			}
-			case BOOLEAN -> value = buf.readBoolean();
-			case BYTE -> value = buf.readByte();
-			case INT -> value = buf.readInt();
-			case LONG -> value = buf.readLong();
-			case FLOAT -> value = buf.readFloat();
-			case DOUBLE -> value = buf.readDouble();
-			case STRING -> value = MessageUtils.readString(buf);
-//			case BITSET -> value = MessageUtils.readBitSet(buf);
-			case BYTE_ARRAY -> value = MessageUtils.readByteArray(buf);
-//			case INT_ARRAY -> value = MessageUtils.readIntArray(buf);
-//			case LONG_ARRAY -> value = MessageUtils.readLongArray(buf);
-//			case FLOAT_ARRAY -> value = MessageUtils.readFloatArray(buf);
-//			case DOUBLE_ARRAY -> value = MessageUtils.readDoubleArray(buf);
-//			case STRING_ARRAY -> value = MessageUtils.readStringArray(buf);
-//			case FILE -> value = MessageUtils.readFile(buf, fileProvider);
-			case ENUM -> {
-				value = null;
 			}
+			case BOOLEAN -> value = in.readBoolean();
+			case BYTE -> value = in.readByte();
+			case INT, ENUM -> value = encoding.readInt(in);
+			case LONG -> value = encoding.readLong(in);
+			case FLOAT -> value = in.readFloat();
+			case DOUBLE -> value = in.readDouble();
+			case STRING -> value = encoding.readString(in);
+			case BITSET -> value = encoding.readBitSet(in);
+			case BYTE_ARRAY -> value = encoding.readByteArrayValue(in);
+			case INT_ARRAY -> value = encoding.readIntArray(in);
+			case LONG_ARRAY -> value = encoding.readLongArray(in);
+			case FLOAT_ARRAY -> value = encoding.readFloatArray(in);
+			case DOUBLE_ARRAY -> value = encoding.readDoubleArray(in);
+			case STRING_ARRAY -> value = encoding.readStringArray(in);
+			case FILE -> value = encoding.readFileProperty(in, fileProvider);
 			default ->
 					throw new RuntimeException("Message parsing error - property type unknown:" + propertyDefinition.getType());
 		}
+		return value;
 	}
 
 	@Override
-	public void write(DataOutputStream dos, FileSink fileSink) throws IOException {
-		dos.writeByte(propertyDefinition.getType().getId());
-		dos.writeShort(propertyDefinition.getKey());
+	public void writeEncoded(DataOutput out, FileSink fileSink, MessageEncoding encoding, SharedReferences references) throws IOException {
+		out.writeByte(propertyDefinition.getType().getId());
+		encoding.writeKey(out, propertyDefinition.getKey());
+		writeEncodedValue(out, fileSink, encoding, references);
+	}
+
+	void writeEncodedValue(DataOutput out, FileSink fileSink, MessageEncoding encoding, SharedReferences references) throws IOException {
+		if (encoding.isFramed(propertyDefinition.getType())) {
+			encoding.writeFrame(out, frameOut -> writeValue(frameOut, fileSink, encoding, references));
+		} else {
+			writeValue(out, fileSink, encoding, references);
+		}
+	}
+
+	private void writeValue(DataOutput out, FileSink fileSink, MessageEncoding encoding, SharedReferences references) throws IOException {
 		switch (propertyDefinition.getType()) {
 			case OBJECT_SINGLE_REFERENCE -> {
-				MessageObject referencedObject = getReferencedObject();
-				referencedObject.write(dos, fileSink);
+				encoding.writeReferencedObject(out, getReferencedObject(), fileSink, references);
 			}
 			case OBJECT_MULTI_REFERENCE -> {
 				List<MessageObject> referencedObjects = getReferencedObjects();
-				if (referencedObjects == null || referencedObjects.isEmpty()) {
-					dos.writeInt(0);
+				if (encoding.isColumnar()) {
+					ColumnarListCodec.write(out, referencedObjects, propertyDefinition.getReferencedObject(), fileSink, encoding, references);
+				} else if (referencedObjects == null || referencedObjects.isEmpty()) {
+					encoding.writeSize(out, 0);
 				} else {
-					dos.writeInt(referencedObjects.size());
+					encoding.writeSize(out, referencedObjects.size());
 					for (MessageObject referencedObject : referencedObjects) {
-						referencedObject.write(dos, fileSink);
+						if (encoding.isFramed()) {
+							encoding.writeFrame(out, frameOut -> encoding.writeReferencedObject(frameOut, referencedObject, fileSink, references));
+						} else {
+							encoding.writeReferencedObject(out, referencedObject, fileSink, references);
+						}
 					}
 				}
 			}
-			case BOOLEAN -> dos.writeBoolean(getBooleanProperty());
-			case BYTE -> dos.writeByte(getByteProperty());
-			case INT -> dos.writeInt(getIntProperty());
-			case LONG -> dos.writeLong(getLongProperty());
-			case FLOAT -> dos.writeFloat(getFloatProperty());
-			case DOUBLE -> dos.writeDouble(getDoubleProperty());
-			case STRING -> MessageUtils.writeString(dos, getStringProperty());
-			case BITSET -> MessageUtils.writeBitSet(dos, getBitSetProperty());
-			case BYTE_ARRAY -> MessageUtils.writeByteArray(dos, getByteArrayProperty());
-			case INT_ARRAY -> MessageUtils.writeIntArray(dos, getIntArrayProperty());
-			case LONG_ARRAY -> MessageUtils.writeLongArray(dos, getLongArrayProperty());
-			case FLOAT_ARRAY -> MessageUtils.writeFloatArray(dos, getFloatArrayProperty());
-			case DOUBLE_ARRAY -> MessageUtils.writeDoubleArray(dos, getDoubleArrayProperty());
-			case STRING_ARRAY -> MessageUtils.writeStringArray(dos, getStringArrayProperty());
-			case FILE -> MessageUtils.writeFileProperty(dos, getFileProperty(), fileSink);
-			case ENUM -> {
+			case BOOLEAN -> out.writeBoolean(getBooleanProperty());
+			case BYTE -> out.writeByte(getByteProperty());
+			case INT, ENUM -> encoding.writeInt(out, getIntProperty());
+			case LONG -> encoding.writeLong(out, getLongProperty());
+			case FLOAT -> out.writeFloat(getFloatProperty());
+			case DOUBLE -> out.writeDouble(getDoubleProperty());
+			case STRING -> encoding.writeString(out, getStringProperty());
+			case BITSET -> encoding.writeBitSet(out, getBitSetProperty());
+			case BYTE_ARRAY -> {
+				if (value instanceof ByteBuf) {
+					encoding.writeByteArray(out, (ByteBuf) value);
+				} else {
+					encoding.writeByteArray(out, getByteArrayProperty());
+				}
+			}
+			case INT_ARRAY -> encoding.writeIntArray(out, getIntArrayProperty());
+			case LONG_ARRAY -> encoding.writeLongArray(out, getLongArrayProperty());
+			case FLOAT_ARRAY -> encoding.writeFloatArray(out, getFloatArrayProperty());
+			case DOUBLE_ARRAY -> encoding.writeDoubleArray(out, getDoubleArrayProperty());
+			case STRING_ARRAY -> encoding.writeStringArray(out, getStringArrayProperty());
+			case FILE -> encoding.writeFileProperty(out, getFileProperty(), fileSink);
+			case OBJECT -> {
 				//
 			}
 		}
 	}
 
 	@Override
-	public void write(ByteBuf buf, FileSink fileSink) throws IOException {
-		buf.writeByte(propertyDefinition.getType().getId());
-		buf.writeShort(propertyDefinition.getKey());
-		switch (propertyDefinition.getType()) {
-			case OBJECT_SINGLE_REFERENCE -> {
-				MessageObject referencedObject = getReferencedObject();
-				referencedObject.write(buf, fileSink);
-			}
+	public int getSerializedSize() {
+		return 3 + getValueSize();
+	}
+
+	private int getValueSize() {
+		return switch (propertyDefinition.getType()) {
+			case OBJECT_SINGLE_REFERENCE -> getReferencedObject().getSerializedSize();
 			case OBJECT_MULTI_REFERENCE -> {
+				int size = 4;
 				List<MessageObject> referencedObjects = getReferencedObjects();
-				if (referencedObjects == null || referencedObjects.isEmpty()) {
-					buf.writeInt(0);
-				} else {
-					buf.writeInt(referencedObjects.size());
+				if (referencedObjects != null) {
 					for (MessageObject referencedObject : referencedObjects) {
-						referencedObject.write(buf, fileSink);
+						size += referencedObject.getSerializedSize();
 					}
 				}
+				yield size;
 			}
-			case BOOLEAN -> buf.writeBoolean(getBooleanProperty());
-			case BYTE -> buf.writeByte(getByteProperty());
-			case INT -> buf.writeInt(getIntProperty());
-			case LONG -> buf.writeLong(getLongProperty());
-			case FLOAT -> buf.writeFloat(getFloatProperty());
-			case DOUBLE -> buf.writeDouble(getDoubleProperty());
-			case STRING -> MessageUtils.writeString(buf, getStringProperty());
-//			case BITSET -> MessageUtils.writeBitSet(buf, getBitSetProperty());
-			case BYTE_ARRAY -> MessageUtils.writeByteArray(buf, getByteArrayProperty());
-//			case INT_ARRAY -> MessageUtils.writeIntArray(buf, getIntArrayProperty());
-//			case LONG_ARRAY -> MessageUtils.writeLongArray(buf, getLongArrayProperty());
-//			case FLOAT_ARRAY -> MessageUtils.writeFloatArray(buf, getFloatArrayProperty());
-//			case DOUBLE_ARRAY -> MessageUtils.writeDoubleArray(buf, getDoubleArrayProperty());
-//			case STRING_ARRAY -> MessageUtils.writeStringArray(buf, getStringArrayProperty());
-			case FILE -> MessageUtils.writeFileProperty(buf, getFileProperty(), fileSink);
-			case ENUM -> {
-				//
+			case BOOLEAN, BYTE -> 1;
+			case INT, FLOAT, ENUM -> 4;
+			case LONG, DOUBLE -> 8;
+			case STRING -> MessageUtils.getStringSize(getStringProperty());
+			case BITSET -> 4 + (value != null ? 4 * getBitSetProperty().cardinality() : 0);
+			case BYTE_ARRAY -> 4 + (value instanceof ByteBuf ? ((ByteBuf) value).readableBytes() : value != null ? getByteArrayProperty().length : 0);
+			case INT_ARRAY -> 4 + (value != null ? 4 * getIntArrayProperty().length : 0);
+			case LONG_ARRAY -> 4 + (value != null ? 8 * getLongArrayProperty().length : 0);
+			case FLOAT_ARRAY -> 4 + (value != null ? 4 * getFloatArrayProperty().length : 0);
+			case DOUBLE_ARRAY -> 4 + (value != null ? 8 * getDoubleArrayProperty().length : 0);
+			case STRING_ARRAY -> {
+				int size = 4;
+				String[] stringArray = getStringArrayProperty();
+				if (stringArray != null) {
+					for (String s : stringArray) {
+						size += MessageUtils.getStringSize(s);
+					}
+				}
+				yield size;
 			}
-		}
+			// the file id is assigned by the file sink while writing
+			case FILE -> 8 + MessageUtils.getStringSize(getFilePropertyAsFileName()) + MessageUtils.getStringSize(null);
+			case OBJECT -> 0;
+		};
 	}
 
 	@Override
@@ -261,11 +315,20 @@ public class AbstractMessageProperty implements MessageProperty {
 
 	@Override
 	public byte[] toBytes(FileSink fileSink) throws IOException {
-		ByteArrayOutputStream bos = new ByteArrayOutputStream();
-		DataOutputStream dos = new DataOutputStream(bos);
-		write(dos, fileSink);
-		dos.close();
-		return bos.toByteArray();
+		MessageWriter writer = MessageWriter.acquire();
+		try {
+			writeEncoded(writer, fileSink, MessageEncoding.DEFAULT);
+			return writer.copyBytes();
+		} finally {
+			writer.release();
+		}
+	}
+
+	public Object getValue() {
+		if (value instanceof ByteBuf) {
+			return getByteArrayProperty();
+		}
+		return value;
 	}
 
 	@Override
@@ -372,9 +435,21 @@ public class AbstractMessageProperty implements MessageProperty {
 	@Override
 	public byte[] getByteArrayProperty() {
 		if (value == null) return null;
+		if (value instanceof ByteBuf) {
+			return ByteBufUtil.getBytes((ByteBuf) value);
+		}
 		return (byte[]) value;
 	}
 
+	@Override
+	public ByteBuf getByteBufProperty() {
+		if (value == null) return null;
+		if (value instanceof ByteBuf) {
+			return (ByteBuf) value;
+		}
+		return Unpooled.wrappedBuffer((byte[]) value);
+	}
+
 	@Override
 	public int[] getIntArrayProperty() {
 		if (value == null) return null;
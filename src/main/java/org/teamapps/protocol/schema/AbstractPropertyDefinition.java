@@ -21,6 +21,7 @@ package org.teamapps.protocol.schema;
 
 
 import org.teamapps.protocol.message.MessageUtils;
+import org.teamapps.protocol.message.MessageWriter;
 
 import java.io.*;
 import java.util.HashMap;
@@ -36,7 +37,7 @@ public class AbstractPropertyDefinition implements PropertyDefinition {
 	private final String title;
 	private final ObjectPropertyDefinition referencedObject;
 	private final boolean multiReference;
-
+	private int ordinal = -1;
 
 	public AbstractPropertyDefinition(ObjectPropertyDefinition parent, String name, int key, PropertyType type, PropertyContentType contentType, String specificType, String title) {
 		this.parent = parent;
@@ -115,11 +116,22 @@ public class AbstractPropertyDefinition implements PropertyDefinition {
 
 	@Override
 	public byte[] toBytes() throws IOException {
-		ByteArrayOutputStream bos = new ByteArrayOutputStream();
-		DataOutputStream dos = new DataOutputStream(bos);
-		write(dos);
-		dos.close();
-		return bos.toByteArray();
+		MessageWriter writer = MessageWriter.acquire();
+		try {
+			write(writer.asDataOutputStream());
+			return writer.copyBytes();
+		} finally {
+			writer.release();
+		}
+	}
+
+	@Override
+	public int getOrdinal() {
+		return ordinal;
+	}
+
+	void setOrdinal(int ordinal) {
+		this.ordinal = ordinal;
 	}
 
 	@Override
@@ -0,0 +1,142 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.schema;
+
+import org.teamapps.protocol.file.FileProvider;
+import org.teamapps.protocol.file.FileSink;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Struct-of-arrays layout for {@link PropertyType#OBJECT_MULTI_REFERENCE} lists used with {@link MessageEncoding#FLAG_COLUMNAR}:
+ * [size rows][size columns] and per column [byte type][key][presence bitmap][values of all present rows].
+ */
+final class ColumnarListCodec {
+
+	private ColumnarListCodec() {
+	}
+
+	static void write(DataOutput out, List<MessageObject> messages, ObjectPropertyDefinition model, FileSink fileSink, MessageEncoding encoding, SharedReferences references) throws IOException {
+		int rowCount = messages != null ? messages.size() : 0;
+		encoding.writeSize(out, rowCount);
+		if (rowCount == 0) {
+			return;
+		}
+		List<PropertyDefinition> columns = new ArrayList<>();
+		List<MessageProperty[]> columnValues = new ArrayList<>();
+		for (PropertyDefinition propertyDefinition : model.getPropertyDefinitions()) {
+			MessageProperty[] values = null;
+			for (int row = 0; row < rowCount; row++) {
+				MessageProperty property = messages.get(row).getProperty(propertyDefinition.getName());
+				if (property != null) {
+					if (values == null) {
+						values = new MessageProperty[rowCount];
+					}
+					values[row] = property;
+				}
+			}
+			if (values != null) {
+				columns.add(propertyDefinition);
+				columnValues.add(values);
+			}
+		}
+		encoding.writeSize(out, columns.size());
+		byte[] presence = new byte[(rowCount + 7) / 8];
+		for (int column = 0; column < columns.size(); column++) {
+			PropertyDefinition propertyDefinition = columns.get(column);
+			MessageProperty[] values = columnValues.get(column);
+			out.writeByte(propertyDefinition.getType().getId());
+			encoding.writeKey(out, propertyDefinition.getKey());
+			for (int row = 0; row < rowCount; row++) {
+				if (values[row] != null) {
+					presence[row >>> 3] |= 1 << (row & 7);
+				} else {
+					presence[row >>> 3] &= ~(1 << (row & 7));
+				}
+			}
+			out.write(presence);
+			for (MessageProperty value : values) {
+				if (value != null) {
+					MessageObject.writeEncodedValue(value, out, fileSink, encoding, references);
+				}
+			}
+		}
+	}
+
+	static List<MessageObject> read(DataInput in, ObjectPropertyDefinition model, PropertyProjection projection, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry, MessageEncoding encoding, SharedReferences references) throws IOException {
+		int rowCount = encoding.readSize(in);
+		List<MessageObject> messages = new ArrayList<>(rowCount);
+		if (rowCount == 0) {
+			return messages;
+		}
+		PojoObjectDecoder<? extends MessageObject> messageDecoder = decoderRegistry != null ? decoderRegistry.getMessageDecoder(model.getObjectUuid()) : null;
+		for (int row = 0; row < rowCount; row++) {
+			messages.add(messageDecoder != null ? messageDecoder.create(model) : new MessageObject(model));
+		}
+		int columnCount = encoding.readSize(in);
+		byte[] presence = new byte[(rowCount + 7) / 8];
+		for (int column = 0; column < columnCount; column++) {
+			PropertyType type = PropertyType.getById(in.readByte());
+			int key = encoding.readKey(in);
+			in.readFully(presence);
+			PropertyDefinition propertyDefinition = model.getPropertyDefinitionByKey(key);
+			boolean projected = projection == null || projection.contains(key);
+			for (int row = 0; row < rowCount; row++) {
+				if (!MessageEncoding.isPresent(presence, row)) {
+					continue;
+				}
+				if (propertyDefinition == null) {
+					encoding.skipUnknownValue(in, type);
+				} else if (!projected && encoding.isSharedReferences() && propertyDefinition.isReferenceProperty()) {
+					new AbstractMessageProperty(propertyDefinition, type, in, fileProvider, decoderRegistry, encoding, references);
+				} else if (!projected) {
+					encoding.skipValue(in, type, propertyDefinition);
+				} else {
+					messages.get(row).addProperty(new AbstractMessageProperty(propertyDefinition, type, in, fileProvider, decoderRegistry, encoding, references));
+				}
+			}
+		}
+		return messages;
+	}
+
+	static void skip(DataInput in, ObjectPropertyDefinition model, MessageEncoding encoding) throws IOException {
+		int rowCount = encoding.readSize(in);
+		if (rowCount == 0) {
+			return;
+		}
+		int columnCount = encoding.readSize(in);
+		byte[] presence = new byte[(rowCount + 7) / 8];
+		for (int column = 0; column < columnCount; column++) {
+			PropertyType type = PropertyType.getById(in.readByte());
+			int key = encoding.readKey(in);
+			in.readFully(presence);
+			PropertyDefinition propertyDefinition = model != null ? model.getPropertyDefinitionByKey(key) : null;
+			for (int row = 0; row < rowCount; row++) {
+				if (MessageEncoding.isPresent(presence, row)) {
+					encoding.skipValue(in, type, propertyDefinition);
+				}
+			}
+		}
+	}
+}
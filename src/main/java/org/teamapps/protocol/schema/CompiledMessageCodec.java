@@ -0,0 +1,287 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.schema;
+
+import io.netty.buffer.ByteBuf;
+import org.teamapps.protocol.file.FileProvider;
+import org.teamapps.protocol.file.FileSink;
+import org.teamapps.protocol.message.ByteBufInput;
+import org.teamapps.protocol.message.MessageReader;
+import org.teamapps.protocol.message.MessageUtils;
+import org.teamapps.protocol.message.MessageWriter;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Legacy format codec for a single model version, created once when the model is registered.
+ * Property definitions are resolved by key through an array and written in key order, without model lookups.
+ * Referenced objects with a registered pojo decoder are decoded by that decoder directly.
+ */
+public class CompiledMessageCodec implements PojoObjectDecoder<MessageObject> {
+
+	private final ObjectPropertyDefinition objectPropertyDefinition;
+	private final MessageModelRegistry registry;
+	private final PropertyDefinition[] layout;
+	private final PropertyDefinition[] definitionByKey;
+	private final CompiledMessageCodec[] referencedCodecByKey;
+	private final MessageObjectPool<MessageObject> pool;
+
+	CompiledMessageCodec(ObjectPropertyDefinition objectPropertyDefinition, MessageModelRegistry registry) {
+		this.objectPropertyDefinition = objectPropertyDefinition;
+		this.registry = registry;
+		this.pool = new MessageObjectPool<>(() -> new MessageObject(objectPropertyDefinition));
+		this.layout = objectPropertyDefinition.getFixedLayout();
+		int maxKey = 0;
+		for (PropertyDefinition propertyDefinition : layout) {
+			maxKey = Math.max(maxKey, propertyDefinition.getKey());
+		}
+		this.definitionByKey = new PropertyDefinition[maxKey + 1];
+		this.referencedCodecByKey = new CompiledMessageCodec[maxKey + 1];
+		for (PropertyDefinition propertyDefinition : layout) {
+			if (propertyDefinition.getKey() >= 0) {
+				definitionByKey[propertyDefinition.getKey()] = propertyDefinition;
+			}
+		}
+	}
+
+	public MessageModel getModel() {
+		return objectPropertyDefinition;
+	}
+
+	@Override
+	public MessageObject decode(DataInputStream dis, FileProvider fileProvider) {
+		try {
+			int firstByte = dis.readUnsignedByte();
+			if (MessageEncoding.isEncodingHeader(firstByte)) {
+				MessageEncoding encoding = MessageEncoding.fromHeader(firstByte);
+				return new MessageObject(encoding.openBody(dis), objectPropertyDefinition, fileProvider, registry, encoding);
+			}
+			return readBody(dis, fileProvider, MessageUtils.readString(dis, firstByte));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public MessageObject decode(ByteBuf buf, FileProvider fileProvider) {
+		try {
+			if (MessageEncoding.isEncodingHeader(buf.getUnsignedByte(buf.readerIndex()))) {
+				return new MessageObject(buf, objectPropertyDefinition, fileProvider, registry);
+			}
+			return readBody(new ByteBufInput(buf), fileProvider, MessageUtils.readString(buf));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public MessageObject decode(MessageReader reader, FileProvider fileProvider) throws IOException {
+		if (MessageEncoding.isEncodingHeader(reader.peekUnsignedByte())) {
+			return new MessageObject(reader, objectPropertyDefinition, fileProvider, registry);
+		}
+		return readBody(reader, fileProvider, MessageUtils.readString(reader));
+	}
+
+	@Override
+	public MessageObject remap(MessageObject message) {
+		return message;
+	}
+
+	@Override
+	public String getMessageObjectUuid() {
+		return objectPropertyDefinition.getObjectUuid();
+	}
+
+	@Override
+	public PojoObjectDecoderRegistry getDecoderRegistry() {
+		return registry;
+	}
+
+	@Override
+	public MessageObjectPool<MessageObject> getPool() {
+		return pool;
+	}
+
+	public void write(MessageObject message, DataOutput out, FileSink fileSink) throws IOException {
+		if (message.getClass() != MessageObject.class || message.getModel() != objectPropertyDefinition) {
+			message.write(out, fileSink);
+			return;
+		}
+		MessageEncoding.DEFAULT.writeString(out, objectPropertyDefinition.getObjectUuid());
+		out.writeShort(objectPropertyDefinition.getModelVersion());
+		out.writeShort(message.getStoredPropertyCount());
+		for (PropertyDefinition propertyDefinition : layout) {
+			MessageProperty property = message.getStoredProperty(propertyDefinition);
+			if (property != null) {
+				out.writeByte(propertyDefinition.getType().getId());
+				out.writeShort(propertyDefinition.getKey());
+				writeValue(propertyDefinition, property, out, fileSink);
+			}
+		}
+	}
+
+	public byte[] toBytes(MessageObject message, FileSink fileSink) throws IOException {
+		MessageWriter writer = MessageWriter.acquire();
+		try {
+			write(message, writer, fileSink);
+			return writer.copyBytes();
+		} finally {
+			writer.release();
+		}
+	}
+
+	private void writeValue(PropertyDefinition propertyDefinition, MessageProperty property, DataOutput out, FileSink fileSink) throws IOException {
+		MessageEncoding encoding = MessageEncoding.DEFAULT;
+		switch (propertyDefinition.getType()) {
+			case OBJECT_SINGLE_REFERENCE -> getReferencedCodec(propertyDefinition).write(property.getReferencedObject(), out, fileSink);
+			case OBJECT_MULTI_REFERENCE -> {
+				List<MessageObject> messages = property.getReferencedObjects();
+				if (messages == null || messages.isEmpty()) {
+					out.writeInt(0);
+				} else {
+					CompiledMessageCodec referencedCodec = getReferencedCodec(propertyDefinition);
+					out.writeInt(messages.size());
+					for (MessageObject message : messages) {
+						referencedCodec.write(message, out, fileSink);
+					}
+				}
+			}
+			case BOOLEAN -> out.writeBoolean(property.getBooleanProperty());
+			case BYTE -> out.writeByte(property.getByteProperty());
+			case INT, ENUM -> out.writeInt(property.getIntProperty());
+			case LONG -> out.writeLong(property.getLongProperty());
+			case FLOAT -> out.writeFloat(property.getFloatProperty());
+			case DOUBLE -> out.writeDouble(property.getDoubleProperty());
+			case STRING -> encoding.writeString(out, property.getStringProperty());
+			case BITSET -> encoding.writeBitSet(out, property.getBitSetProperty());
+			case BYTE_ARRAY -> encoding.writeByteArray(out, property.getByteArrayProperty());
+			case INT_ARRAY -> encoding.writeIntArray(out, property.getIntArrayProperty());
+			case LONG_ARRAY -> encoding.writeLongArray(out, property.getLongArrayProperty());
+			case FLOAT_ARRAY -> encoding.writeFloatArray(out, property.getFloatArrayProperty());
+			case DOUBLE_ARRAY -> encoding.writeDoubleArray(out, property.getDoubleArrayProperty());
+			case STRING_ARRAY -> encoding.writeStringArray(out, property.getStringArrayProperty());
+			case FILE -> encoding.writeFileProperty(out, property.getFileProperty(), fileSink);
+			case OBJECT -> {
+				//
+			}
+		}
+	}
+
+	private MessageObject readBody(DataInput in, FileProvider fileProvider, String objectUuid) throws IOException {
+		if (!objectPropertyDefinition.getObjectUuid().equals(objectUuid)) {
+			throw new RuntimeException("Cannot parse message with wrong model:" + objectUuid + ", expected:" + objectPropertyDefinition.getObjectUuid());
+		}
+		short modelVersion = in.readShort();
+		if (modelVersion != objectPropertyDefinition.getModelVersion()) {
+			CompiledMessageCodec versionCodec = registry.getModelCodec(objectUuid, modelVersion);
+			if (versionCodec != null) {
+				return versionCodec.readProperties(in, fileProvider);
+			}
+		}
+		return readProperties(in, fileProvider);
+	}
+
+	private MessageObject readProperties(DataInput in, FileProvider fileProvider) throws IOException {
+		MessageObject message = new MessageObject(objectPropertyDefinition);
+		int propertyCount = in.readShort();
+		for (int i = 0; i < propertyCount; i++) {
+			int type = in.readByte();
+			int key = in.readShort();
+			PropertyDefinition propertyDefinition = getPropertyDefinition(key);
+			if (propertyDefinition == null) {
+				MessageEncoding.DEFAULT.skipUnknownValue(in, PropertyType.getById(type));
+				continue;
+			}
+			if (type != propertyDefinition.getType().getId()) {
+				throw new RuntimeException("Message parsing error - property type mismatch: " + PropertyType.getById(type) + " <-> " + propertyDefinition.getType());
+			}
+			message.addProperty(new AbstractMessageProperty(propertyDefinition, readValue(propertyDefinition, in, fileProvider)));
+		}
+		return message;
+	}
+
+	private Object readValue(PropertyDefinition propertyDefinition, DataInput in, FileProvider fileProvider) throws IOException {
+		MessageEncoding encoding = MessageEncoding.DEFAULT;
+		return switch (propertyDefinition.getType()) {
+			case OBJECT_SINGLE_REFERENCE -> readReferencedObject(propertyDefinition, in, fileProvider);
+			case OBJECT_MULTI_REFERENCE -> {
+				int count = in.readInt();
+				List<MessageObject> messages = new ArrayList<>(count);
+				for (int i = 0; i < count; i++) {
+					messages.add(readReferencedObject(propertyDefinition, in, fileProvider));
+				}
+				yield messages;
+			}
+			case BOOLEAN -> in.readBoolean();
+			case BYTE -> in.readByte();
+			case INT, ENUM -> in.readInt();
+			case LONG -> in.readLong();
+			case FLOAT -> in.readFloat();
+			case DOUBLE -> in.readDouble();
+			case STRING -> encoding.readString(in);
+			case BITSET -> encoding.readBitSet(in);
+			case BYTE_ARRAY -> encoding.readByteArray(in);
+			case INT_ARRAY -> encoding.readIntArray(in);
+			case LONG_ARRAY -> encoding.readLongArray(in);
+			case FLOAT_ARRAY -> encoding.readFloatArray(in);
+			case DOUBLE_ARRAY -> encoding.readDoubleArray(in);
+			case STRING_ARRAY -> encoding.readStringArray(in);
+			case FILE -> encoding.readFileProperty(in, fileProvider);
+			case OBJECT -> null;
+		};
+	}
+
+	private MessageObject readReferencedObject(PropertyDefinition propertyDefinition, DataInput in, FileProvider fileProvider) throws IOException {
+		ObjectPropertyDefinition referencedObject = propertyDefinition.getReferencedObject();
+		PojoObjectDecoder<? extends MessageObject> decoder = registry.getMessageDecoder(referencedObject.getObjectUuid());
+		if (decoder != null) {
+			return decoder.decode(in, referencedObject, fileProvider, registry, MessageEncoding.DEFAULT, null);
+		}
+		return getReferencedCodec(propertyDefinition).readBody(in, fileProvider, MessageUtils.readString(in, in.readUnsignedByte()));
+	}
+
+	private PropertyDefinition getPropertyDefinition(int key) {
+		if (key >= 0 && key < definitionByKey.length && definitionByKey[key] != null) {
+			return definitionByKey[key];
+		}
+		return objectPropertyDefinition.getPropertyDefinitionByKey(key);
+	}
+
+	private CompiledMessageCodec getReferencedCodec(PropertyDefinition propertyDefinition) {
+		int key = propertyDefinition.getKey();
+		CompiledMessageCodec referencedCodec = key >= 0 && key < referencedCodecByKey.length ? referencedCodecByKey[key] : null;
+		if (referencedCodec == null) {
+			ObjectPropertyDefinition referencedObject = propertyDefinition.getReferencedObject();
+			referencedCodec = referencedObject == objectPropertyDefinition ? this : registry.getModelCodec(referencedObject);
+			if (referencedCodec == null) {
+				referencedCodec = new CompiledMessageCodec(referencedObject, registry);
+			}
+			if (key >= 0 && key < referencedCodecByKey.length) {
+				referencedCodecByKey[key] = referencedCodec;
+			}
+		}
+		return referencedCodec;
+	}
+}
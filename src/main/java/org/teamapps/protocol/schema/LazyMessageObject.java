@@ -0,0 +1,255 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.schema;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCounted;
+import org.teamapps.protocol.file.FileProvider;
+import org.teamapps.protocol.file.FileSink;
+import org.teamapps.protocol.message.ByteBufSliceInput;
+import org.teamapps.protocol.message.MessageReader;
+import org.teamapps.protocol.message.MessageUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Message that keeps its encoded body and decodes properties on first access.
+ * The body is held as a retained slice of the source buffer, it has to be released when the message is no longer used.
+ */
+public class LazyMessageObject extends MessageObject implements ReferenceCounted {
+
+	private final ByteBuf body;
+	private final MessageEncoding encoding;
+	private final int sourceLength;
+	private boolean modified;
+
+	public LazyMessageObject(byte[] bytes, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		this(Unpooled.wrappedBuffer(bytes), model, fileProvider, decoderRegistry);
+	}
+
+	public LazyMessageObject(byte[] bytes, ModelRegistry modelRegistry, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		this(Unpooled.wrappedBuffer(bytes), modelRegistry, fileProvider, decoderRegistry);
+	}
+
+	public LazyMessageObject(ByteBuf buf, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		this(new BodyScanner(buf, model, null), fileProvider, decoderRegistry);
+	}
+
+	public LazyMessageObject(ByteBuf buf, ModelRegistry modelRegistry, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		this(new BodyScanner(buf, null, modelRegistry), fileProvider, decoderRegistry);
+	}
+
+	public LazyMessageObject(MessageReader reader, ModelRegistry modelRegistry, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		this(new BodyScanner(Unpooled.wrappedBuffer(reader.getBytes(), reader.getPosition(), reader.remaining()), null, modelRegistry), fileProvider, decoderRegistry);
+		reader.skipBytes(sourceLength);
+	}
+
+	public LazyMessageObject(MessageReader reader, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		this(new BodyScanner(Unpooled.wrappedBuffer(reader.getBytes(), reader.getPosition(), reader.remaining()), model, null), fileProvider, decoderRegistry);
+		reader.skipBytes(sourceLength);
+	}
+
+	private LazyMessageObject(BodyScanner scanner, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		super(scanner.model);
+		this.encoding = scanner.encoding;
+		MessageModel model = scanner.model;
+		ByteBufSliceInput in = scanner.in;
+		ByteBuf buffer = scanner.buffer;
+		int bodyStart = scanner.bodyStart;
+		SharedReferences references = SharedReferences.create(encoding);
+		if (encoding.isFixedLayout()) {
+			PropertyDefinition[] layout = model.getObjectPropertyDefinition().getFixedLayout();
+			byte[] presence = encoding.readPresence(in, layout.length);
+			for (int i = 0; i < layout.length; i++) {
+				if (!MessageEncoding.isPresent(presence, i)) {
+					continue;
+				}
+				if (encoding.isSharedReferences() && layout[i].isReferenceProperty()) {
+					super.addProperty(new AbstractMessageProperty(layout[i], layout[i].getType(), in, fileProvider, decoderRegistry, encoding, references));
+					continue;
+				}
+				int valueStart = buffer.readerIndex();
+				encoding.skipValue(in, layout[i].getType(), layout[i]);
+				super.addProperty(new LazyMessageProperty(layout[i], model, buffer, valueStart, buffer.readerIndex(), encoding, fileProvider, decoderRegistry));
+			}
+		} else {
+			int propertyCount = encoding.readPropertyCount(in);
+			for (int i = 0; i < propertyCount; i++) {
+				int propertyStart = buffer.readerIndex();
+				PropertyType type = PropertyType.getById(in.readByte());
+				PropertyDefinition propertyDefinition = model.getPropertyDefinitionByKey(encoding.readKey(in));
+				if (propertyDefinition == null) {
+					encoding.skipUnknownValue(in, type);
+					continue;
+				}
+				if (encoding.isSharedReferences() && propertyDefinition.isReferenceProperty()) {
+					super.addProperty(new AbstractMessageProperty(propertyDefinition, type, in, fileProvider, decoderRegistry, encoding, references));
+					continue;
+				}
+				encoding.skipValue(in, type, propertyDefinition);
+				if (type != propertyDefinition.getType()) {
+					throw new RuntimeException("Message parsing error - property type mismatch: " + type + " <-> " + propertyDefinition.getType());
+				}
+				super.addProperty(new LazyMessageProperty(propertyDefinition, model, buffer, propertyStart, buffer.readerIndex(), encoding, fileProvider, decoderRegistry));
+			}
+		}
+		this.sourceLength = scanner.source.readerIndex() - scanner.sourceStart;
+		this.body = buffer.retainedSlice(bodyStart, buffer.readerIndex() - bodyStart);
+	}
+
+	public boolean isModified() {
+		return modified;
+	}
+
+	private boolean isUnmodified(MessageEncoding targetEncoding) {
+		if (modified || targetEncoding.isModelIds() || encoding.getFlags() != targetEncoding.getFlags()) {
+			return false;
+		}
+		for (MessageProperty property : getProperties()) {
+			if (!(property instanceof LazyMessageProperty) || !((LazyMessageProperty) property).canWriteRaw(targetEncoding)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	protected void writeEncoded(DataOutput out, FileSink fileSink, MessageEncoding encoding, SharedReferences references) throws IOException {
+		if (isUnmodified(encoding)) {
+			MessageUtils.writeBytes(out, body);
+		} else {
+			super.writeEncoded(out, fileSink, encoding, references);
+		}
+	}
+
+	@Override
+	public int getSerializedSize() {
+		if (isUnmodified(MessageEncoding.DEFAULT)) {
+			return body.readableBytes();
+		}
+		return super.getSerializedSize();
+	}
+
+	@Override
+	public void setProperty(PropertyDefinition propertyDefinition, Object value) {
+		modified = true;
+		super.setProperty(propertyDefinition, value);
+	}
+
+	@Override
+	public void addReference(String name, MessageObject messageObject) {
+		modified = true;
+		super.addReference(name, messageObject);
+	}
+
+	@Override
+	protected void addProperty(MessageProperty property) {
+		modified = true;
+		super.addProperty(property);
+	}
+
+	@Override
+	public void clear() {
+		modified = true;
+		super.clear();
+	}
+
+	@Override
+	public void removeField(PropertyDefinition propertyDefinition) {
+		modified = true;
+		super.removeField(propertyDefinition);
+	}
+
+	@Override
+	public int refCnt() {
+		return body.refCnt();
+	}
+
+	@Override
+	public LazyMessageObject retain() {
+		body.retain();
+		return this;
+	}
+
+	@Override
+	public LazyMessageObject retain(int increment) {
+		body.retain(increment);
+		return this;
+	}
+
+	@Override
+	public LazyMessageObject touch() {
+		body.touch();
+		return this;
+	}
+
+	@Override
+	public LazyMessageObject touch(Object hint) {
+		body.touch(hint);
+		return this;
+	}
+
+	@Override
+	public boolean release() {
+		return body.release();
+	}
+
+	@Override
+	public boolean release(int decrement) {
+		return body.release(decrement);
+	}
+
+	/**
+	 * Reads the encoding and model header once, the scan of the properties continues on the same input.
+	 */
+	private static class BodyScanner {
+		private final ByteBuf source;
+		private final int sourceStart;
+		private final MessageEncoding encoding;
+		private final ByteBuf buffer;
+		private final int bodyStart;
+		private final ByteBufSliceInput in;
+		private final MessageModel model;
+
+		private BodyScanner(ByteBuf source, MessageModel model, ModelRegistry modelRegistry) throws IOException {
+			this.source = source;
+			this.sourceStart = source.readerIndex();
+			MessageEncoding sourceEncoding = MessageEncoding.DEFAULT;
+			if (MessageEncoding.isEncodingHeader(source.getUnsignedByte(sourceStart))) {
+				sourceEncoding = MessageEncoding.fromHeader(source.readUnsignedByte());
+			}
+			this.encoding = sourceEncoding.getBodyEncoding();
+			ByteBufSliceInput sourceInput = new ByteBufSliceInput(source);
+			DataInput bodyInput = sourceEncoding.openBody(sourceInput);
+			this.buffer = bodyInput == sourceInput ? source : Unpooled.wrappedBuffer(((MessageReader) bodyInput).getBytes());
+			this.bodyStart = buffer.readerIndex();
+			this.in = bodyInput == sourceInput ? sourceInput : new ByteBufSliceInput(buffer);
+			if (model != null) {
+				encoding.skipModelHeader(in, model);
+				this.model = model;
+			} else {
+				this.model = encoding.readModelHeader(in, modelRegistry);
+			}
+		}
+	}
+}
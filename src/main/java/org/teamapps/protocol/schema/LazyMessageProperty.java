@@ -0,0 +1,261 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.schema;
+
+import io.netty.buffer.ByteBuf;
+import org.teamapps.protocol.file.FileProvider;
+import org.teamapps.protocol.file.FileSink;
+import org.teamapps.protocol.message.ByteBufSliceInput;
+import org.teamapps.protocol.message.MessageUtils;
+import org.teamapps.protocol.message.MessageWriter;
+
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.List;
+
+public class LazyMessageProperty implements MessageProperty {
+
+	private final PropertyDefinition propertyDefinition;
+	private final MessageModel model;
+	private final ByteBuf buffer;
+	private final int start;
+	private final int end;
+	private final MessageEncoding encoding;
+	private final FileProvider fileProvider;
+	private final PojoObjectDecoderRegistry decoderRegistry;
+	private AbstractMessageProperty decodedProperty;
+
+	public LazyMessageProperty(PropertyDefinition propertyDefinition, MessageModel model, ByteBuf buffer, int start, int end, MessageEncoding encoding, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) {
+		this.propertyDefinition = propertyDefinition;
+		this.model = model;
+		this.buffer = buffer;
+		this.start = start;
+		this.end = end;
+		this.encoding = encoding;
+		this.fileProvider = fileProvider;
+		this.decoderRegistry = decoderRegistry;
+	}
+
+	public AbstractMessageProperty getDecodedProperty() {
+		if (decodedProperty == null) {
+			try {
+				ByteBufSliceInput reader = new ByteBufSliceInput(buffer.slice(start, end - start));
+				if (encoding.isFixedLayout()) {
+					decodedProperty = new AbstractMessageProperty(propertyDefinition, propertyDefinition.getType(), reader, fileProvider, decoderRegistry, encoding, null);
+				} else {
+					decodedProperty = new AbstractMessageProperty(reader, model, fileProvider, decoderRegistry, encoding);
+				}
+			} catch (IOException e) {
+				throw new RuntimeException("Message parsing error - cannot decode property:" + propertyDefinition.getName(), e);
+			}
+		}
+		return decodedProperty;
+	}
+
+	public boolean isDecoded() {
+		return decodedProperty != null;
+	}
+
+	public boolean isUnmodified() {
+		return switch (propertyDefinition.getType()) {
+			case BOOLEAN, BYTE, INT, LONG, FLOAT, DOUBLE, STRING, ENUM -> true;
+			case FILE -> false;
+			default -> decodedProperty == null;
+		};
+	}
+
+	boolean canWriteRaw(MessageEncoding targetEncoding) {
+		if (!isUnmodified() || encoding.getFlags() != targetEncoding.getFlags()) {
+			return false;
+		}
+		if (encoding.isSharedReferences() && propertyDefinition.isReferenceProperty()) {
+			return false;
+		}
+		return !encoding.isModelIds() || !propertyDefinition.isReferenceProperty();
+	}
+
+	@Override
+	public PropertyDefinition getPropertyDefinition() {
+		return propertyDefinition;
+	}
+
+	@Override
+	public MessageObject getReferencedObject() {
+		return getDecodedProperty().getReferencedObject();
+	}
+
+	@Override
+	public List<MessageObject> getReferencedObjects() {
+		return getDecodedProperty().getReferencedObjects();
+	}
+
+	@Override
+	public <TYPE extends MessageObject> TYPE getReferencedObjectAsType() {
+		return getDecodedProperty().getReferencedObjectAsType();
+	}
+
+	@Override
+	public <TYPE extends MessageObject> List<TYPE> getReferencedObjectsAsType() {
+		return getDecodedProperty().getReferencedObjectsAsType();
+	}
+
+	@Override
+	public boolean getBooleanProperty() {
+		return getDecodedProperty().getBooleanProperty();
+	}
+
+	@Override
+	public byte getByteProperty() {
+		return getDecodedProperty().getByteProperty();
+	}
+
+	@Override
+	public int getIntProperty() {
+		return getDecodedProperty().getIntProperty();
+	}
+
+	@Override
+	public long getLongProperty() {
+		return getDecodedProperty().getLongProperty();
+	}
+
+	@Override
+	public float getFloatProperty() {
+		return getDecodedProperty().getFloatProperty();
+	}
+
+	@Override
+	public double getDoubleProperty() {
+		return getDecodedProperty().getDoubleProperty();
+	}
+
+	@Override
+	public String getStringProperty() {
+		return getDecodedProperty().getStringProperty();
+	}
+
+	@Override
+	public FileProperty getFileProperty() {
+		return getDecodedProperty().getFileProperty();
+	}
+
+	@Override
+	public File getFilePropertyAsFile() {
+		return getDecodedProperty().getFilePropertyAsFile();
+	}
+
+	@Override
+	public String getFilePropertyAsFileName() {
+		return getDecodedProperty().getFilePropertyAsFileName();
+	}
+
+	@Override
+	public long getFilePropertyAsFileLength() {
+		return getDecodedProperty().getFilePropertyAsFileLength();
+	}
+
+	@Override
+	public BitSet getBitSetProperty() {
+		return getDecodedProperty().getBitSetProperty();
+	}
+
+	@Override
+	public byte[] getByteArrayProperty() {
+		return getDecodedProperty().getByteArrayProperty();
+	}
+
+	@Override
+	public int[] getIntArrayProperty() {
+		return getDecodedProperty().getIntArrayProperty();
+	}
+
+	@Override
+	public long[] getLongArrayProperty() {
+		return getDecodedProperty().getLongArrayProperty();
+	}
+
+	@Override
+	public float[] getFloatArrayProperty() {
+		return getDecodedProperty().getFloatArrayProperty();
+	}
+
+	@Override
+	public double[] getDoubleArrayProperty() {
+		return getDecodedProperty().getDoubleArrayProperty();
+	}
+
+	@Override
+	public String[] getStringArrayProperty() {
+		return getDecodedProperty().getStringArrayProperty();
+	}
+
+	@Override
+	public String getAsString() {
+		return getDecodedProperty().getAsString();
+	}
+
+	@Override
+	public void writeEncoded(DataOutput out, FileSink fileSink, MessageEncoding encoding, SharedReferences references) throws IOException {
+		if (canWriteRaw(encoding) && !encoding.isFixedLayout()) {
+			MessageUtils.writeBytes(out, buffer, start, end - start);
+		} else {
+			getDecodedProperty().writeEncoded(out, fileSink, encoding, references);
+		}
+	}
+
+	void writeEncodedValue(DataOutput out, FileSink fileSink, MessageEncoding encoding, SharedReferences references) throws IOException {
+		if (canWriteRaw(encoding) && encoding.isFixedLayout()) {
+			MessageUtils.writeBytes(out, buffer, start, end - start);
+		} else {
+			getDecodedProperty().writeEncodedValue(out, fileSink, encoding, references);
+		}
+	}
+
+	@Override
+	public int getSerializedSize() {
+		if (canWriteRaw(MessageEncoding.DEFAULT)) {
+			return end - start;
+		}
+		return getDecodedProperty().getSerializedSize();
+	}
+
+	@Override
+	public byte[] toBytes() throws IOException {
+		return toBytes(null);
+	}
+
+	@Override
+	public byte[] toBytes(FileSink fileSink) throws IOException {
+		MessageWriter writer = MessageWriter.acquire();
+		try {
+			writeEncoded(writer, fileSink, MessageEncoding.DEFAULT);
+			return writer.copyBytes();
+		} finally {
+			writer.release();
+		}
+	}
+
+	@Override
+	public String explain(int level) {
+		return getDecodedProperty().explain(level);
+	}
+}
@@ -0,0 +1,105 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.schema;
+
+import org.teamapps.protocol.file.FileProvider;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads messages written by {@link MessageChannelWriter}. When used as its own {@link FileProvider}, the file contents
+ * following a message as [long length][bytes] in file id order are stored as files in the given directory.
+ */
+public class MessageChannelReader implements FileProvider {
+
+	private final DataInputStream in;
+	private final File directory;
+	private final Map<String, File> pendingFiles = new HashMap<>();
+
+	public MessageChannelReader(ReadableByteChannel channel, File directory) {
+		this(Channels.newInputStream(channel), directory);
+	}
+
+	public MessageChannelReader(InputStream inputStream, File directory) {
+		this(inputStream, directory, MessageChannelWriter.DEFAULT_BUFFER_SIZE);
+	}
+
+	public MessageChannelReader(InputStream inputStream, File directory, int bufferSize) {
+		this.in = new DataInputStream(new BufferedInputStream(inputStream, bufferSize));
+		this.directory = directory;
+	}
+
+	public MessageObject readMessage(MessageModel model, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		try {
+			MessageObject message = new MessageObject(in, model, this, decoderRegistry);
+			readPendingFiles();
+			return message;
+		} finally {
+			pendingFiles.clear();
+		}
+	}
+
+	public MessageObject readMessage(MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		return new MessageObject(in, model, fileProvider, decoderRegistry);
+	}
+
+	@Override
+	public File getFile(String fileId) {
+		if (fileId == null) {
+			return null;
+		}
+		try {
+			File file = File.createTempFile("message-file-", ".bin", directory);
+			pendingFiles.put(fileId, file);
+			return file;
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot create file for file id:" + fileId, e);
+		}
+	}
+
+	private void readPendingFiles() throws IOException {
+		byte[] bytes = new byte[8192];
+		for (int i = 0; i < pendingFiles.size(); i++) {
+			File file = pendingFiles.get(String.valueOf(i));
+			if (file == null) {
+				throw new RuntimeException("Message parsing error - missing file id:" + i);
+			}
+			long remaining = in.readLong();
+			try (OutputStream out = new FileOutputStream(file)) {
+				while (remaining > 0) {
+					int length = (int) Math.min(bytes.length, remaining);
+					in.readFully(bytes, 0, length);
+					out.write(bytes, 0, length);
+					remaining -= length;
+				}
+			}
+		}
+	}
+}
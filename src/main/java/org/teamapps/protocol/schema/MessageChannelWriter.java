@@ -0,0 +1,287 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.schema;
+
+import org.teamapps.protocol.file.FileSink;
+import org.teamapps.protocol.message.MessageWriter;
+
+import java.io.DataOutput;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams messages to a blocking channel through a fixed-size buffer that is flushed whenever it runs full.
+ * When used as its own {@link FileSink}, file contents follow the message as [long length][bytes] in file id order,
+ * see {@link MessageChannelReader}.
+ * <p>
+ * Frame lengths of {@link MessageEncoding#FLAG_FRAMED} are patched in the buffer, or in the file for a {@link FileChannel},
+ * so frames larger than the buffer are rejected for other channels. Compressed encodings need the whole body before its
+ * length is known and are rejected.
+ */
+public class MessageChannelWriter implements DataOutput, FileSink, Flushable {
+
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	private final WritableByteChannel channel;
+	private final OutputStream outputStream;
+	private final ByteBuffer buffer;
+	private final FileChannel fileChannel;
+	private final long channelStart;
+	private final List<File> pendingFiles = new ArrayList<>();
+	private long writtenBytes;
+	private int openFrames;
+
+	public MessageChannelWriter(WritableByteChannel channel) {
+		this(channel, DEFAULT_BUFFER_SIZE);
+	}
+
+	public MessageChannelWriter(WritableByteChannel channel, int bufferSize) {
+		this.channel = channel;
+		this.outputStream = null;
+		this.buffer = ByteBuffer.allocate(bufferSize);
+		this.fileChannel = channel instanceof FileChannel ? (FileChannel) channel : null;
+		this.channelStart = getChannelPosition(fileChannel);
+	}
+
+	public MessageChannelWriter(OutputStream outputStream) {
+		this(outputStream, DEFAULT_BUFFER_SIZE);
+	}
+
+	public MessageChannelWriter(OutputStream outputStream, int bufferSize) {
+		this.channel = Channels.newChannel(outputStream);
+		this.outputStream = outputStream;
+		this.buffer = ByteBuffer.allocate(bufferSize);
+		this.fileChannel = null;
+		this.channelStart = 0;
+	}
+
+	private static long getChannelPosition(FileChannel fileChannel) {
+		try {
+			return fileChannel != null ? fileChannel.position() : 0;
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot read position of file channel", e);
+		}
+	}
+
+	public void writeMessage(MessageObject message, MessageEncoding encoding) throws IOException {
+		checkEncoding(encoding);
+		message.write(this, this, encoding);
+		writePendingFiles();
+		flush();
+	}
+
+	public void writeMessage(MessageObject message, FileSink fileSink, MessageEncoding encoding) throws IOException {
+		checkEncoding(encoding);
+		message.write(this, fileSink, encoding);
+		flush();
+	}
+
+	private static void checkEncoding(MessageEncoding encoding) {
+		if (encoding != null && encoding.isCompressed()) {
+			throw new RuntimeException("Compressed messages cannot be streamed, the compressed body length is only known after compressing the whole body");
+		}
+	}
+
+	/**
+	 * Writes a length placeholder, streams the frame content and patches the length once the content is written.
+	 */
+	void writeFrame(MessageEncoding.FrameContent content) throws IOException {
+		ensureCapacity(4);
+		long start = getWrittenBytes();
+		buffer.putInt(0);
+		openFrames++;
+		try {
+			content.write(this);
+		} finally {
+			openFrames--;
+		}
+		int length = (int) (getWrittenBytes() - start - 4);
+		if (start >= writtenBytes) {
+			buffer.putInt((int) (start - writtenBytes), length);
+			return;
+		}
+		ByteBuffer lengthBuffer = ByteBuffer.allocate(4).putInt(0, length);
+		while (lengthBuffer.hasRemaining()) {
+			fileChannel.write(lengthBuffer, channelStart + start + lengthBuffer.position());
+		}
+	}
+
+	@Override
+	public String handleFile(File file) {
+		pendingFiles.add(file);
+		return String.valueOf(pendingFiles.size() - 1);
+	}
+
+	private void writePendingFiles() throws IOException {
+		try {
+			for (File file : pendingFiles) {
+				transferFile(file);
+			}
+		} finally {
+			pendingFiles.clear();
+		}
+	}
+
+	public void transferFile(File file) throws IOException {
+		try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = fileChannel.size();
+			writeLong(size);
+			flushBuffer();
+			long position = 0;
+			while (position < size) {
+				position += fileChannel.transferTo(position, size - position, channel);
+			}
+			writtenBytes += size;
+		}
+	}
+
+	public long getWrittenBytes() {
+		return writtenBytes + buffer.position();
+	}
+
+	@Override
+	public void flush() throws IOException {
+		flushBuffer();
+		if (outputStream != null) {
+			outputStream.flush();
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		if (openFrames > 0 && fileChannel == null) {
+			throw new RuntimeException("Message frame exceeds the buffer size of " + buffer.capacity() + " bytes, use a larger buffer or a file channel");
+		}
+		buffer.flip();
+		writtenBytes += buffer.remaining();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private void ensureCapacity(int length) throws IOException {
+		if (buffer.remaining() < length) {
+			flushBuffer();
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureCapacity(1);
+		buffer.put((byte) b);
+	}
+
+	@Override
+	public void write(byte[] b) throws IOException {
+		write(b, 0, b.length);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (len <= buffer.remaining()) {
+			buffer.put(b, off, len);
+			return;
+		}
+		flushBuffer();
+		if (len < buffer.capacity()) {
+			buffer.put(b, off, len);
+			return;
+		}
+		ByteBuffer source = ByteBuffer.wrap(b, off, len);
+		while (source.hasRemaining()) {
+			channel.write(source);
+		}
+		writtenBytes += len;
+	}
+
+	@Override
+	public void writeBoolean(boolean v) throws IOException {
+		write(v ? 1 : 0);
+	}
+
+	@Override
+	public void writeByte(int v) throws IOException {
+		write(v);
+	}
+
+	@Override
+	public void writeShort(int v) throws IOException {
+		ensureCapacity(2);
+		buffer.putShort((short) v);
+	}
+
+	@Override
+	public void writeChar(int v) throws IOException {
+		ensureCapacity(2);
+		buffer.putChar((char) v);
+	}
+
+	@Override
+	public void writeInt(int v) throws IOException {
+		ensureCapacity(4);
+		buffer.putInt(v);
+	}
+
+	@Override
+	public void writeLong(long v) throws IOException {
+		ensureCapacity(8);
+		buffer.putLong(v);
+	}
+
+	@Override
+	public void writeFloat(float v) throws IOException {
+		writeInt(Float.floatToIntBits(v));
+	}
+
+	@Override
+	public void writeDouble(double v) throws IOException {
+		writeLong(Double.doubleToLongBits(v));
+	}
+
+	@Override
+	public void writeBytes(String s) throws IOException {
+		for (int i = 0; i < s.length(); i++) {
+			write(s.charAt(i));
+		}
+	}
+
+	@Override
+	public void writeChars(String s) throws IOException {
+		for (int i = 0; i < s.length(); i++) {
+			writeChar(s.charAt(i));
+		}
+	}
+
+	@Override
+	public void writeUTF(String s) throws IOException {
+		MessageWriter writer = new MessageWriter(s.length() + 2);
+		writer.writeUTF(s);
+		write(writer.getBytes(), 0, writer.getPosition());
+	}
+}
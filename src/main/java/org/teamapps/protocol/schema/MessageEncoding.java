@@ -0,0 +1,936 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.schema;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.CompositeByteBuf;
+import org.teamapps.protocol.file.FileProvider;
+import org.teamapps.protocol.file.FileSink;
+import org.teamapps.protocol.message.ByteBufInput;
+import org.teamapps.protocol.message.ByteBufSliceInput;
+import org.teamapps.protocol.message.ByteBufferReader;
+import org.teamapps.protocol.message.ByteBufferWriter;
+import org.teamapps.protocol.message.MessageReader;
+import org.teamapps.protocol.message.MessageUtils;
+import org.teamapps.protocol.message.MessageWriter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class MessageEncoding {
+
+	public static final int FLAG_COMPACT = 1;
+	public static final int FLAG_MODEL_IDS = 2;
+	public static final int FLAG_FRAMED = 4;
+	public static final int FLAG_COMPRESSED = 8;
+	public static final int FLAG_COLUMNAR = 16;
+	public static final int FLAG_FIXED_LAYOUT = 32;
+	public static final int FLAG_SHARED_REFERENCES = 64;
+
+	public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
+	private static final int HEADER_MARKER = 0x80;
+	private static final int FLAG_MASK = 0x7F;
+
+	public static final MessageEncoding DEFAULT = new MessageEncoding(0);
+	public static final MessageEncoding COMPACT = new MessageEncoding(FLAG_COMPACT);
+
+	private final int flags;
+	private final ModelRegistry modelRegistry;
+	private final int compressionThreshold;
+	private final int compressionLevel;
+
+	public static boolean isEncodingHeader(int firstByte) {
+		return (firstByte & HEADER_MARKER) != 0;
+	}
+
+	public static MessageEncoding fromHeader(int header) {
+		int flags = header & FLAG_MASK;
+		if (flags == FLAG_COMPACT) {
+			return COMPACT;
+		}
+		return new MessageEncoding(flags);
+	}
+
+	public MessageEncoding(int flags) {
+		this(flags, null);
+	}
+
+	public MessageEncoding(int flags, ModelRegistry modelRegistry) {
+		this(flags, modelRegistry, DEFAULT_COMPRESSION_THRESHOLD, Deflater.BEST_SPEED);
+	}
+
+	public MessageEncoding(int flags, ModelRegistry modelRegistry, int compressionThreshold, int compressionLevel) {
+		if ((flags & ~FLAG_MASK) != 0) {
+			throw new RuntimeException("Invalid message encoding flags:" + flags);
+		}
+		this.flags = flags;
+		this.modelRegistry = modelRegistry;
+		this.compressionThreshold = compressionThreshold;
+		this.compressionLevel = compressionLevel;
+	}
+
+	public MessageEncoding withFlags(int flags) {
+		return new MessageEncoding(this.flags | flags, modelRegistry, compressionThreshold, compressionLevel);
+	}
+
+	public MessageEncoding withModelIds(ModelRegistry modelRegistry) {
+		return new MessageEncoding(flags | FLAG_MODEL_IDS, modelRegistry, compressionThreshold, compressionLevel);
+	}
+
+	public MessageEncoding withCompression(int compressionThreshold) {
+		return withCompression(compressionThreshold, Deflater.BEST_SPEED);
+	}
+
+	public MessageEncoding withCompression(int compressionThreshold, int compressionLevel) {
+		return new MessageEncoding(flags | FLAG_COMPRESSED, modelRegistry, compressionThreshold, compressionLevel);
+	}
+
+	public MessageEncoding getBodyEncoding() {
+		if (!isCompressed()) {
+			return this;
+		}
+		return new MessageEncoding(flags & ~FLAG_COMPRESSED, modelRegistry, compressionThreshold, compressionLevel);
+	}
+
+	public int getFlags() {
+		return flags;
+	}
+
+	public int getHeader() {
+		return HEADER_MARKER | flags;
+	}
+
+	public boolean isDefault() {
+		return flags == 0;
+	}
+
+	public boolean isCompact() {
+		return (flags & FLAG_COMPACT) != 0;
+	}
+
+	public boolean isModelIds() {
+		return (flags & FLAG_MODEL_IDS) != 0;
+	}
+
+	public boolean isFramed() {
+		return (flags & FLAG_FRAMED) != 0;
+	}
+
+	public boolean isCompressed() {
+		return (flags & FLAG_COMPRESSED) != 0;
+	}
+
+	public boolean isColumnar() {
+		return (flags & FLAG_COLUMNAR) != 0;
+	}
+
+	public boolean isFixedLayout() {
+		return (flags & FLAG_FIXED_LAYOUT) != 0;
+	}
+
+	public boolean isSharedReferences() {
+		return (flags & FLAG_SHARED_REFERENCES) != 0;
+	}
+
+	public int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+
+	public int getCompressionLevel() {
+		return compressionLevel;
+	}
+
+	public boolean isFramed(PropertyType type) {
+		if (!isFramed()) {
+			return false;
+		}
+		return switch (type) {
+			case OBJECT_SINGLE_REFERENCE, OBJECT_MULTI_REFERENCE, BITSET, INT_ARRAY, LONG_ARRAY, STRING_ARRAY, FILE -> true;
+			default -> false;
+		};
+	}
+
+	public ModelRegistry getModelRegistry() {
+		return modelRegistry;
+	}
+
+	public void writeModelHeader(DataOutput out, MessageModel model) throws IOException {
+		if (isModelIds()) {
+			int modelId = modelRegistry != null ? modelRegistry.getModelId(model) : -1;
+			if (modelId < 0) {
+				throw new RuntimeException("Model is not registered for id encoding:" + model.getModelUuid() + ", version:" + model.getModelVersion());
+			}
+			MessageUtils.writeVarInt(out, modelId);
+		} else {
+			writeString(out, model.getModelUuid());
+			writeModelVersion(out, model.getModelVersion());
+		}
+	}
+
+	public MessageModel readModelHeader(DataInput in, ModelRegistry modelRegistry) throws IOException {
+		MessageModel model;
+		if (isModelIds()) {
+			int modelId = MessageUtils.readVarInt(in);
+			model = modelRegistry.getModelById(modelId);
+			if (model == null) {
+				throw new RuntimeException("Cannot parse message with unknown model id:" + modelId);
+			}
+		} else {
+			String objectUuid = readString(in);
+			short modelVersion = readModelVersion(in);
+			model = modelRegistry.getModel(objectUuid, modelVersion);
+			if (model == null) {
+				throw new RuntimeException("Cannot parse message with unknown model:" + objectUuid + ", version:" + modelVersion);
+			}
+		}
+		return model;
+	}
+
+	public void skipModelHeader(DataInput in, MessageModel expectedModel) throws IOException {
+		if (isModelIds()) {
+			MessageUtils.readVarInt(in);
+		} else {
+			String objectUuid = readString(in);
+			if (!expectedModel.getModelUuid().equals(objectUuid)) {
+				throw new RuntimeException("Cannot parse message with wrong model:" + objectUuid + ", expected:" + expectedModel.getModelUuid());
+			}
+			readModelVersion(in);
+		}
+	}
+
+	public void writeInt(DataOutput out, int value) throws IOException {
+		if (isCompact()) {
+			MessageUtils.writeVarInt(out, MessageUtils.encodeZigZag(value));
+		} else {
+			out.writeInt(value);
+		}
+	}
+
+	public int readInt(DataInput in) throws IOException {
+		return isCompact() ? MessageUtils.decodeZigZag(MessageUtils.readVarInt(in)) : in.readInt();
+	}
+
+	public void writeLong(DataOutput out, long value) throws IOException {
+		if (isCompact()) {
+			MessageUtils.writeVarLong(out, MessageUtils.encodeZigZag(value));
+		} else {
+			out.writeLong(value);
+		}
+	}
+
+	public long readLong(DataInput in) throws IOException {
+		return isCompact() ? MessageUtils.decodeZigZag(MessageUtils.readVarLong(in)) : in.readLong();
+	}
+
+	public void writeSize(DataOutput out, int size) throws IOException {
+		if (isCompact()) {
+			MessageUtils.writeVarInt(out, size);
+		} else {
+			out.writeInt(size);
+		}
+	}
+
+	public int readSize(DataInput in) throws IOException {
+		return isCompact() ? MessageUtils.readVarInt(in) : in.readInt();
+	}
+
+	public void writeKey(DataOutput out, int key) throws IOException {
+		if (isCompact()) {
+			MessageUtils.writeVarInt(out, key);
+		} else {
+			out.writeShort(key);
+		}
+	}
+
+	public int readKey(DataInput in) throws IOException {
+		return isCompact() ? MessageUtils.readVarInt(in) : in.readShort();
+	}
+
+	public void writePropertyCount(DataOutput out, int count) throws IOException {
+		writeKey(out, count);
+	}
+
+	public int readPropertyCount(DataInput in) throws IOException {
+		return readKey(in);
+	}
+
+	public void writeModelVersion(DataOutput out, short modelVersion) throws IOException {
+		writeKey(out, modelVersion);
+	}
+
+	public short readModelVersion(DataInput in) throws IOException {
+		return (short) readKey(in);
+	}
+
+	public void writeString(DataOutput out, String value) throws IOException {
+		if (value != null && !value.isEmpty()) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeSize(out, bytes.length);
+			out.write(bytes);
+		} else {
+			writeSize(out, 0);
+		}
+	}
+
+	public String readString(DataInput in) throws IOException {
+		int length = readSize(in);
+		if (length == 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public void writeByteArray(DataOutput out, byte[] bytes) throws IOException {
+		if (bytes == null) {
+			writeSize(out, 0);
+		} else {
+			writeSize(out, bytes.length);
+			MessageUtils.writeBytes(out, bytes);
+		}
+	}
+
+	public void writeByteArray(DataOutput out, ByteBuf bytes) throws IOException {
+		if (bytes == null) {
+			writeSize(out, 0);
+		} else {
+			writeSize(out, bytes.readableBytes());
+			MessageUtils.writeBytes(out, bytes);
+		}
+	}
+
+	/**
+	 * Reads a byte array value, large arrays of a {@link ByteBufSliceInput} are returned as read-only slices of its buffer.
+	 */
+	public Object readByteArrayValue(DataInput in) throws IOException {
+		if (!(in instanceof ByteBufSliceInput)) {
+			return readByteArray(in);
+		}
+		int length = readSize(in);
+		if (length == 0) {
+			return null;
+		}
+		if (length >= MessageUtils.ZERO_COPY_THRESHOLD) {
+			return ((ByteBufSliceInput) in).readSlice(length);
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	public byte[] readByteArray(DataInput in) throws IOException {
+		int length = readSize(in);
+		if (length == 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	public void writeBitSet(DataOutput out, BitSet bitSet) throws IOException {
+		if (bitSet == null) {
+			writeSize(out, 0);
+			return;
+		}
+		writeSize(out, bitSet.cardinality());
+		int previous = 0;
+		for (int id = bitSet.nextSetBit(0); id >= 0; id = bitSet.nextSetBit(id + 1)) {
+			if (isCompact()) {
+				MessageUtils.writeVarInt(out, id - previous);
+				previous = id;
+			} else {
+				out.writeInt(id);
+			}
+		}
+	}
+
+	public BitSet readBitSet(DataInput in) throws IOException {
+		int size = readSize(in);
+		if (size == 0) {
+			return null;
+		}
+		BitSet bitSet = new BitSet();
+		int id = 0;
+		for (int i = 0; i < size; i++) {
+			if (isCompact()) {
+				id += MessageUtils.readVarInt(in);
+			} else {
+				id = in.readInt();
+			}
+			bitSet.set(id);
+		}
+		return bitSet;
+	}
+
+	public void writeIntArray(DataOutput out, int[] intArray) throws IOException {
+		if (intArray == null || intArray.length == 0) {
+			writeSize(out, 0);
+			return;
+		}
+		writeSize(out, intArray.length);
+		ByteBuffer target = isCompact() ? null : getWritableRegion(out, intArray.length * 4);
+		if (target != null) {
+			target.asIntBuffer().put(intArray);
+		} else {
+			for (int value : intArray) {
+				writeInt(out, value);
+			}
+		}
+	}
+
+	public int[] readIntArray(DataInput in) throws IOException {
+		int length = readSize(in);
+		if (length == 0) {
+			return null;
+		}
+		int[] intArray = new int[length];
+		ByteBuffer source = isCompact() ? null : getReadableRegion(in, length * 4);
+		if (source != null) {
+			source.asIntBuffer().get(intArray);
+		} else {
+			for (int i = 0; i < length; i++) {
+				intArray[i] = readInt(in);
+			}
+		}
+		return intArray;
+	}
+
+	public void writeLongArray(DataOutput out, long[] longArray) throws IOException {
+		if (longArray == null || longArray.length == 0) {
+			writeSize(out, 0);
+			return;
+		}
+		writeSize(out, longArray.length);
+		ByteBuffer target = isCompact() ? null : getWritableRegion(out, longArray.length * 8);
+		if (target != null) {
+			target.asLongBuffer().put(longArray);
+		} else {
+			for (long value : longArray) {
+				writeLong(out, value);
+			}
+		}
+	}
+
+	public long[] readLongArray(DataInput in) throws IOException {
+		int length = readSize(in);
+		if (length == 0) {
+			return null;
+		}
+		long[] longArray = new long[length];
+		ByteBuffer source = isCompact() ? null : getReadableRegion(in, length * 8);
+		if (source != null) {
+			source.asLongBuffer().get(longArray);
+		} else {
+			for (int i = 0; i < length; i++) {
+				longArray[i] = readLong(in);
+			}
+		}
+		return longArray;
+	}
+
+	public void writeFloatArray(DataOutput out, float[] floatArray) throws IOException {
+		if (floatArray == null || floatArray.length == 0) {
+			writeSize(out, 0);
+			return;
+		}
+		writeSize(out, floatArray.length);
+		ByteBuffer target = getWritableRegion(out, floatArray.length * 4);
+		if (target != null) {
+			target.asFloatBuffer().put(floatArray);
+		} else {
+			for (float value : floatArray) {
+				out.writeFloat(value);
+			}
+		}
+	}
+
+	public float[] readFloatArray(DataInput in) throws IOException {
+		int length = readSize(in);
+		if (length == 0) {
+			return null;
+		}
+		float[] floatArray = new float[length];
+		ByteBuffer source = getReadableRegion(in, length * 4);
+		if (source != null) {
+			source.asFloatBuffer().get(floatArray);
+		} else {
+			for (int i = 0; i < length; i++) {
+				floatArray[i] = in.readFloat();
+			}
+		}
+		return floatArray;
+	}
+
+	public void writeDoubleArray(DataOutput out, double[] doubleArray) throws IOException {
+		if (doubleArray == null || doubleArray.length == 0) {
+			writeSize(out, 0);
+			return;
+		}
+		writeSize(out, doubleArray.length);
+		ByteBuffer target = getWritableRegion(out, doubleArray.length * 8);
+		if (target != null) {
+			target.asDoubleBuffer().put(doubleArray);
+		} else {
+			for (double value : doubleArray) {
+				out.writeDouble(value);
+			}
+		}
+	}
+
+	public double[] readDoubleArray(DataInput in) throws IOException {
+		int length = readSize(in);
+		if (length == 0) {
+			return null;
+		}
+		double[] doubleArray = new double[length];
+		ByteBuffer source = getReadableRegion(in, length * 8);
+		if (source != null) {
+			source.asDoubleBuffer().get(doubleArray);
+		} else {
+			for (int i = 0; i < length; i++) {
+				doubleArray[i] = in.readDouble();
+			}
+		}
+		return doubleArray;
+	}
+
+	/**
+	 * Reserves the next bytes of an output backed by a byte array or a single buffer and returns them as big endian view
+	 * for bulk transfers of primitive arrays, returns null for other outputs.
+	 */
+	private static ByteBuffer getWritableRegion(DataOutput out, int length) throws IOException {
+		if (out instanceof MessageWriter) {
+			MessageWriter writer = (MessageWriter) out;
+			int position = writer.getPosition();
+			writer.setPosition(position + length);
+			return ByteBuffer.wrap(writer.getBytes(), position, length);
+		} else if (out instanceof ByteBufferWriter) {
+			ByteBuffer buffer = ((ByteBufferWriter) out).getBuffer();
+			if (length > buffer.remaining()) {
+				throw new EOFException("Message buffer too small, required:" + length + ", remaining:" + buffer.remaining());
+			}
+			int position = buffer.position();
+			buffer.position(position + length);
+			return buffer.duplicate().position(position).limit(position + length);
+		} else if (out instanceof ByteBufOutputStream) {
+			ByteBuf buffer = ((ByteBufOutputStream) out).buffer();
+			if (buffer instanceof CompositeByteBuf) {
+				return null;
+			}
+			buffer.ensureWritable(length);
+			if (buffer.nioBufferCount() != 1) {
+				return null;
+			}
+			int writerIndex = buffer.writerIndex();
+			buffer.writerIndex(writerIndex + length);
+			return buffer.nioBuffer(writerIndex, length).order(ByteOrder.BIG_ENDIAN);
+		}
+		return null;
+	}
+
+	/**
+	 * Consumes the next bytes of an input backed by a byte array or buffer and returns them as big endian view
+	 * for bulk transfers of primitive arrays, returns null for other inputs.
+	 */
+	private static ByteBuffer getReadableRegion(DataInput in, int length) throws IOException {
+		if (in instanceof MessageReader) {
+			MessageReader reader = (MessageReader) in;
+			int position = reader.getPosition();
+			reader.skipBytes(length);
+			return ByteBuffer.wrap(reader.getBytes(), position, length);
+		} else if (in instanceof ByteBufferReader) {
+			ByteBuffer buffer = ((ByteBufferReader) in).getBuffer();
+			int position = buffer.position();
+			skipBytes(in, length);
+			return buffer.duplicate().position(position).limit(position + length);
+		} else if (in instanceof ByteBufInput) {
+			ByteBuf buffer = ((ByteBufInput) in).getBuffer();
+			int readerIndex = buffer.readerIndex();
+			skipBytes(in, length);
+			return buffer.nioBuffer(readerIndex, length).order(ByteOrder.BIG_ENDIAN);
+		}
+		return null;
+	}
+
+	public void writeStringArray(DataOutput out, String[] stringArray) throws IOException {
+		if (stringArray == null || stringArray.length == 0) {
+			writeSize(out, 0);
+		} else {
+			writeSize(out, stringArray.length);
+			for (String value : stringArray) {
+				writeString(out, value);
+			}
+		}
+	}
+
+	public String[] readStringArray(DataInput in) throws IOException {
+		int length = readSize(in);
+		if (length == 0) {
+			return null;
+		}
+		String[] stringArray = new String[length];
+		for (int i = 0; i < length; i++) {
+			stringArray[i] = readString(in);
+		}
+		return stringArray;
+	}
+
+	public void writeFileProperty(DataOutput out, FileProperty fileProperty, FileSink fileSink) throws IOException {
+		writeLong(out, fileProperty != null ? fileProperty.getLength() : 0);
+		writeString(out, fileProperty != null ? fileProperty.getFileName() : null);
+		if (fileSink == null || fileProperty == null || !fileProperty.exists() || fileProperty.getLength() == 0) {
+			writeString(out, null);
+			return;
+		}
+		writeString(out, fileSink.handleFile(fileProperty.getFile()));
+	}
+
+	public FileProperty readFileProperty(DataInput in, FileProvider fileProvider) throws IOException {
+		long length = readLong(in);
+		String fileName = readString(in);
+		String fileId = readString(in);
+		File file = fileProvider != null ? fileProvider.getFile(fileId) : null;
+		return new FileProperty(fileName, file, length);
+	}
+
+	public void writeCompressedBody(DataOutput out, byte[] bytes, int length) throws IOException {
+		Deflater deflater = new Deflater(compressionLevel);
+		try {
+			deflater.setInput(bytes, 0, length);
+			deflater.finish();
+			MessageWriter writer = new MessageWriter(length / 2 + 64);
+			while (!deflater.finished()) {
+				writer.ensureCapacity(1024);
+				int position = writer.getPosition();
+				writer.setPosition(position + deflater.deflate(writer.getBytes(), position, writer.getBytes().length - position));
+			}
+			MessageUtils.writeVarInt(out, length);
+			MessageUtils.writeVarInt(out, writer.getPosition());
+			out.write(writer.getBytes(), 0, writer.getPosition());
+		} finally {
+			deflater.end();
+		}
+	}
+
+	public DataInput openBody(DataInput in) throws IOException {
+		if (!isCompressed()) {
+			return in;
+		} else if (in instanceof MessageReader) {
+			return openBody((MessageReader) in);
+		}
+		int length = MessageUtils.readVarInt(in);
+		byte[] compressedBytes = new byte[MessageUtils.readVarInt(in)];
+		in.readFully(compressedBytes);
+		return new MessageReader(inflate(compressedBytes, 0, compressedBytes.length, length));
+	}
+
+	public MessageReader openBody(MessageReader reader) throws IOException {
+		if (!isCompressed()) {
+			return reader;
+		}
+		int length = MessageUtils.readVarInt(reader);
+		int compressedLength = MessageUtils.readVarInt(reader);
+		int offset = reader.getPosition();
+		reader.skipBytes(compressedLength);
+		return new MessageReader(inflate(reader.getBytes(), offset, compressedLength, length));
+	}
+
+	public void skipBody(DataInput in) throws IOException {
+		skipBody(in, null);
+	}
+
+	public void skipBody(DataInput in, MessageModel model) throws IOException {
+		if (isCompressed()) {
+			MessageUtils.readVarInt(in);
+			skipBytes(in, MessageUtils.readVarInt(in));
+		} else {
+			skipObject(in, model);
+		}
+	}
+
+	private static byte[] inflate(byte[] compressedBytes, int offset, int compressedLength, int length) throws IOException {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressedBytes, offset, compressedLength);
+			byte[] bytes = new byte[length];
+			int inflatedLength = 0;
+			while (inflatedLength < length && !inflater.finished()) {
+				int count = inflater.inflate(bytes, inflatedLength, length - inflatedLength);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				inflatedLength += count;
+			}
+			if (inflatedLength != length) {
+				throw new RuntimeException("Message parsing error - invalid compressed message length:" + inflatedLength + ", expected:" + length);
+			}
+			return bytes;
+		} catch (DataFormatException e) {
+			throw new IOException("Message parsing error - invalid compressed message", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	public void writeFrame(DataOutput out, FrameContent content) throws IOException {
+		if (out instanceof MessageWriter) {
+			MessageWriter writer = (MessageWriter) out;
+			int position = writer.getPosition();
+			writer.writeInt(0);
+			content.write(writer);
+			writer.setInt(position, writer.getPosition() - position - 4);
+		} else if (out instanceof ByteBufOutputStream) {
+			ByteBuf buffer = ((ByteBufOutputStream) out).buffer();
+			int writerIndex = buffer.writerIndex();
+			buffer.writeInt(0);
+			content.write(out);
+			buffer.setInt(writerIndex, buffer.writerIndex() - writerIndex - 4);
+		} else if (out instanceof ByteBufferWriter) {
+			ByteBuffer buffer = ((ByteBufferWriter) out).getBuffer();
+			int position = buffer.position();
+			out.writeInt(0);
+			content.write(out);
+			buffer.putInt(position, buffer.position() - position - 4);
+		} else if (out instanceof MessageChannelWriter) {
+			((MessageChannelWriter) out).writeFrame(content);
+		} else {
+			MessageWriter writer = new MessageWriter();
+			content.write(writer);
+			out.writeInt(writer.getPosition());
+			out.write(writer.getBytes(), 0, writer.getPosition());
+		}
+	}
+
+	public int readFrameLength(DataInput in, PropertyType type) throws IOException {
+		return isFramed(type) ? in.readInt() : -1;
+	}
+
+	public int readObjectFrameLength(DataInput in) throws IOException {
+		return isFramed() ? in.readInt() : -1;
+	}
+
+	public void skipObject(DataInput in) throws IOException {
+		skipObject(in, null);
+	}
+
+	public void skipObject(DataInput in, MessageModel model) throws IOException {
+		if (isModelIds()) {
+			MessageUtils.readVarInt(in);
+		} else {
+			skipBytes(in, readSize(in));
+			readModelVersion(in);
+		}
+		if (isFixedLayout()) {
+			if (model == null) {
+				throw new RuntimeException("Message parsing error - cannot skip fixed layout object without model");
+			}
+			PropertyDefinition[] layout = model.getObjectPropertyDefinition().getFixedLayout();
+			byte[] presence = readPresence(in, layout.length);
+			for (int i = 0; i < layout.length; i++) {
+				if (isPresent(presence, i)) {
+					skipValue(in, layout[i].getType(), layout[i]);
+				}
+			}
+			return;
+		}
+		int propertyCount = readPropertyCount(in);
+		for (int i = 0; i < propertyCount; i++) {
+			skipProperty(in);
+		}
+	}
+
+	public void skipProperty(DataInput in) throws IOException {
+		PropertyType type = PropertyType.getById(in.readByte());
+		readKey(in);
+		skipValue(in, type);
+	}
+
+	public void skipValue(DataInput in, PropertyType type) throws IOException {
+		skipValue(in, type, null);
+	}
+
+	public void skipValue(DataInput in, PropertyType type, PropertyDefinition propertyDefinition) throws IOException {
+		if (type == null) {
+			throw new RuntimeException("Message parsing error - property type unknown");
+		}
+		if (isFramed(type)) {
+			skipBytes(in, in.readInt());
+			return;
+		}
+		switch (type) {
+			case OBJECT_SINGLE_REFERENCE -> {
+				if (!skipSharedReference(in)) {
+					skipObject(in, propertyDefinition != null ? propertyDefinition.getReferencedObject() : null);
+				}
+			}
+			case OBJECT_MULTI_REFERENCE -> {
+				ObjectPropertyDefinition referencedObject = propertyDefinition != null ? propertyDefinition.getReferencedObject() : null;
+				if (isColumnar()) {
+					ColumnarListCodec.skip(in, referencedObject, this);
+					return;
+				}
+				int messageCount = readSize(in);
+				for (int i = 0; i < messageCount; i++) {
+					if (!skipSharedReference(in)) {
+						skipObject(in, referencedObject);
+					}
+				}
+			}
+			case BOOLEAN, BYTE -> skipBytes(in, 1);
+			case INT, ENUM -> readInt(in);
+			case LONG -> readLong(in);
+			case FLOAT -> skipBytes(in, 4);
+			case DOUBLE -> skipBytes(in, 8);
+			case STRING, BYTE_ARRAY -> skipBytes(in, readSize(in));
+			case BITSET -> {
+				int size = readSize(in);
+				for (int i = 0; i < size; i++) {
+					if (isCompact()) {
+						MessageUtils.readVarInt(in);
+					} else {
+						in.readInt();
+					}
+				}
+			}
+			case INT_ARRAY -> {
+				int length = readSize(in);
+				if (!isCompact()) {
+					skipBytes(in, 4 * length);
+					return;
+				}
+				for (int i = 0; i < length; i++) {
+					readInt(in);
+				}
+			}
+			case LONG_ARRAY -> {
+				int length = readSize(in);
+				if (!isCompact()) {
+					skipBytes(in, 8 * length);
+					return;
+				}
+				for (int i = 0; i < length; i++) {
+					readLong(in);
+				}
+			}
+			case FLOAT_ARRAY -> skipBytes(in, 4 * readSize(in));
+			case DOUBLE_ARRAY -> skipBytes(in, 8 * readSize(in));
+			case STRING_ARRAY -> {
+				int length = readSize(in);
+				for (int i = 0; i < length; i++) {
+					skipBytes(in, readSize(in));
+				}
+			}
+			case FILE -> {
+				readLong(in);
+				skipBytes(in, readSize(in));
+				skipBytes(in, readSize(in));
+			}
+			case OBJECT -> {
+			}
+		}
+	}
+
+	public void writeReferencedObject(DataOutput out, MessageObject message, FileSink fileSink, SharedReferences references) throws IOException {
+		if (!isSharedReferences()) {
+			message.writeEncoded(out, fileSink, this, null);
+			return;
+		}
+		int index = references.getWrittenIndex(message);
+		if (index >= 0) {
+			MessageUtils.writeVarInt(out, index + 1);
+			return;
+		}
+		MessageUtils.writeVarInt(out, 0);
+		message.writeEncoded(out, fileSink, this, references);
+		references.addWritten(message);
+	}
+
+	public MessageObject readSharedReference(DataInput in, SharedReferences references) throws IOException {
+		if (!isSharedReferences()) {
+			return null;
+		}
+		int index = MessageUtils.readVarInt(in);
+		if (index == 0) {
+			return null;
+		}
+		return references.getRead(index - 1);
+	}
+
+	public <MESSAGE extends MessageObject> MESSAGE addSharedReference(MESSAGE message, SharedReferences references) {
+		if (isSharedReferences()) {
+			references.addRead(message);
+		}
+		return message;
+	}
+
+	public void skipUnknownValue(DataInput in, PropertyType type) throws IOException {
+		if (isSharedReferences() && (type == PropertyType.OBJECT_SINGLE_REFERENCE || type == PropertyType.OBJECT_MULTI_REFERENCE)) {
+			throw new RuntimeException("Message parsing error - cannot skip unknown reference property with shared references");
+		}
+		skipValue(in, type);
+	}
+
+	private boolean skipSharedReference(DataInput in) throws IOException {
+		return isSharedReferences() && MessageUtils.readVarInt(in) != 0;
+	}
+
+	public void writePresence(DataOutput out, byte[] presence, int count) throws IOException {
+		writeSize(out, count);
+		out.write(presence, 0, (count + 7) / 8);
+	}
+
+	public byte[] readPresence(DataInput in, int maxCount) throws IOException {
+		int count = readSize(in);
+		if (count > maxCount) {
+			throw new RuntimeException("Message parsing error - fixed layout with " + count + " properties exceeds model with " + maxCount + " properties");
+		}
+		byte[] presence = new byte[(maxCount + 7) / 8];
+		in.readFully(presence, 0, (count + 7) / 8);
+		return presence;
+	}
+
+	public static boolean isPresent(byte[] presence, int index) {
+		return (presence[index >>> 3] & (1 << (index & 7))) != 0;
+	}
+
+	private static void skipBytes(DataInput in, int length) throws IOException {
+		if (in.skipBytes(length) != length) {
+			throw new EOFException("Message too short, cannot skip " + length + " bytes");
+		}
+	}
+
+	public interface FrameContent {
+		void write(DataOutput out) throws IOException;
+	}
+}
@@ -19,11 +19,11 @@
  */
 package org.teamapps.protocol.schema;
 
+import org.teamapps.protocol.file.FileProvider;
+import org.teamapps.protocol.message.MessageReader;
 import org.teamapps.protocol.message.MessageUtils;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
-import java.io.IOException;
+import java.io.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -34,6 +34,13 @@ public class MessageModelRegistry implements ModelRegistry, PojoObjectDecoderReg
 	private Set<String> allModelKeys = new HashSet<>();
 	private List<MessageModel> allModels = new ArrayList<>();
 	private Map<String, PojoObjectDecoder<? extends MessageObject>> decoderByUuid = new ConcurrentHashMap<>();
+	private Map<String, CompiledMessageCodec> codecByModelKey = new ConcurrentHashMap<>();
+	private Map<MessageModel, Integer> modelIdByModel = new ConcurrentHashMap<>();
+	private Map<String, Integer> modelIdByModelKey = new ConcurrentHashMap<>();
+	private volatile ModelIds modelIds = new ModelIds(new MessageModel[16], 0);
+	private Map<String, Integer> unresolvedModelIdByModelKey = new ConcurrentHashMap<>();
+	private Map<Integer, String> unresolvedModelUuidById = new ConcurrentHashMap<>();
+	private Map<Integer, Short> unresolvedModelVersionById = new ConcurrentHashMap<>();
 
 	public MessageModelRegistry() {
 	}
@@ -42,6 +49,24 @@ public class MessageModelRegistry implements ModelRegistry, PojoObjectDecoderReg
 		addModelCollection(collection);
 	}
 
+	public MessageModelRegistry(byte[] modelIds, ModelRegistry localRegistry) throws IOException {
+		DataInputStream dis = new DataInputStream(new ByteArrayInputStream(modelIds));
+		int count = dis.readInt();
+		for (int modelId = 0; modelId < count; modelId++) {
+			String objectUuid = MessageUtils.readString(dis);
+			short modelVersion = dis.readShort();
+			MessageModel model = objectUuid != null ? localRegistry.getModel(objectUuid, modelVersion) : null;
+			if (model != null) {
+				addModel(model, modelId);
+			} else if (objectUuid != null) {
+				unresolvedModelIdByModelKey.put(objectUuid + modelVersion, modelId);
+				unresolvedModelUuidById.put(modelId, objectUuid);
+				unresolvedModelVersionById.put(modelId, modelVersion);
+			}
+		}
+		reserveModelIds(count);
+	}
+
 	@Override
 	public void mergeRegistry(ModelRegistry registry) {
 		registry.getAllModels().forEach(this::addModel);
@@ -72,6 +97,21 @@ public class MessageModelRegistry implements ModelRegistry, PojoObjectDecoderReg
 		}
 	}
 
+	@Override
+	public int getModelId(MessageModel model) {
+		Integer modelId = modelIdByModel.get(model.getObjectPropertyDefinition());
+		if (modelId == null) {
+			modelId = modelIdByModelKey.get(model.getModelUuid() + model.getModelVersion());
+		}
+		return modelId != null ? modelId : -1;
+	}
+
+	@Override
+	public MessageModel getModelById(int modelId) {
+		MessageModel[] models = modelIds.models;
+		return modelId >= 0 && modelId < models.length ? models[modelId] : null;
+	}
+
 	@Override
 	public MessageModel getLatestModel(String uuid) {
 		return latestModelByObjectUuid.get(uuid);
@@ -79,21 +119,43 @@ public class MessageModelRegistry implements ModelRegistry, PojoObjectDecoderReg
 
 	@Override
 	public MessageModel getModel(byte[] message) throws IOException {
-		DataInputStream dis = new DataInputStream(new ByteArrayInputStream(message));
-		String objectUuid = MessageUtils.readString(dis);
-		short modelVersion = dis.readShort();
+		MessageReader reader = new MessageReader(message);
+		if (MessageEncoding.isEncodingHeader(reader.peekUnsignedByte())) {
+			MessageEncoding encoding = MessageEncoding.fromHeader(reader.readUnsignedByte());
+			MessageReader body = encoding.openBody(reader);
+			if (encoding.isModelIds()) {
+				return getModelById(MessageUtils.readVarInt(body));
+			}
+			return getModel(encoding.readString(body), encoding.readModelVersion(body));
+		}
+		String objectUuid = MessageUtils.readString(reader);
+		short modelVersion = reader.readShort();
 		return getModel(objectUuid, modelVersion);
 	}
 
 	@Override
-	public ModelRegistry addModel(MessageModel model) {
+	public synchronized ModelRegistry addModel(MessageModel model) {
+		Integer unresolvedModelId = unresolvedModelIdByModelKey.remove(model.getModelUuid() + model.getModelVersion());
+		if (unresolvedModelId != null) {
+			unresolvedModelUuidById.remove(unresolvedModelId);
+			unresolvedModelVersionById.remove(unresolvedModelId);
+			addModel(model, unresolvedModelId);
+		} else {
+			addModel(model, modelIds.count);
+		}
+		return this;
+	}
+
+	private synchronized void addModel(MessageModel model, int modelId) {
 		String objectUuid = model.getObjectPropertyDefinition().getObjectUuid();
 		short modelVersion = model.getModelVersion();
 		String key = objectUuid + modelVersion;
 		if (allModelKeys.contains(key)) {
-			return this;
+			return;
 		}
 		allModelKeys.add(key);
+		addModelId(model, key, modelId);
+		codecByModelKey.put(key, new CompiledMessageCodec(model.getObjectPropertyDefinition(), this));
 		List<MessageModel> messageModels = modelsByObjectUuid.get(objectUuid);
 		if (messageModels != null) {
 			boolean contained = false;
@@ -101,13 +163,14 @@ public class MessageModelRegistry implements ModelRegistry, PojoObjectDecoderReg
 			for (MessageModel messageModel : messageModels) {
 				if (messageModel.getModelVersion() == modelVersion) {
 					contained = true;
-					lastVersion = (short) Math.max(lastVersion, messageModel.getModelVersion());
 				}
+				lastVersion = (short) Math.max(lastVersion, messageModel.getModelVersion());
 			}
 			if (!contained) {
 				messageModels.add(model);
+				allModels.add(model);
 				if (lastVersion < modelVersion) {
-					latestModelByObjectUuid.put(key, model);
+					latestModelByObjectUuid.put(objectUuid, model);
 				}
 			}
 
@@ -118,7 +181,42 @@ public class MessageModelRegistry implements ModelRegistry, PojoObjectDecoderReg
 			latestModelByObjectUuid.put(objectUuid, model);
 			allModels.add(model);
 		}
-		return this;
+	}
+
+	public CompiledMessageCodec getModelCodec(String uuid, short modelVersion) {
+		return codecByModelKey.get(uuid + modelVersion);
+	}
+
+	public CompiledMessageCodec getModelCodec(MessageModel model) {
+		return getModelCodec(model.getModelUuid(), model.getModelVersion());
+	}
+
+	public MessageObject decode(byte[] bytes, FileProvider fileProvider) throws IOException {
+		MessageModel model = getModel(bytes);
+		if (model == null) {
+			throw new RuntimeException("Message model not registered:" + MessageObject.readMessageObjectUuid(bytes));
+		}
+		PojoObjectDecoder<? extends MessageObject> decoder = getMessageDecoder(model.getModelUuid());
+		if (decoder != null) {
+			return decoder.decode(new MessageReader(bytes), fileProvider);
+		}
+		return getModelCodec(model).decode(new MessageReader(bytes), fileProvider);
+	}
+
+	private void addModelId(MessageModel model, String key, int modelId) {
+		ModelIds ids = modelIds;
+		MessageModel[] models = Arrays.copyOf(ids.models, Math.max(ids.models.length, modelId + 1));
+		models[modelId] = model;
+		modelIds = new ModelIds(models, Math.max(ids.count, modelId + 1));
+		modelIdByModel.put(model.getObjectPropertyDefinition(), modelId);
+		modelIdByModelKey.put(key, modelId);
+	}
+
+	private synchronized void reserveModelIds(int count) {
+		ModelIds ids = modelIds;
+		if (count > ids.count) {
+			modelIds = new ModelIds(Arrays.copyOf(ids.models, Math.max(ids.models.length, count)), count);
+		}
 	}
 
 	@Override
@@ -151,6 +249,38 @@ public class MessageModelRegistry implements ModelRegistry, PojoObjectDecoderReg
 
 	@Override
 	public byte[] toBytes() {
-		return new byte[0];
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			DataOutputStream dos = new DataOutputStream(bos);
+			ModelIds ids = modelIds;
+			dos.writeInt(ids.count);
+			for (int modelId = 0; modelId < ids.count; modelId++) {
+				MessageModel model = ids.models[modelId];
+				if (model != null) {
+					MessageUtils.writeString(dos, model.getModelUuid());
+					dos.writeShort(model.getModelVersion());
+				} else {
+					MessageUtils.writeString(dos, unresolvedModelUuidById.get(modelId));
+					dos.writeShort(unresolvedModelVersionById.getOrDefault(modelId, (short) 0));
+				}
+			}
+			dos.close();
+			return bos.toByteArray();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Model ids are replaced as a whole so that readers always see an array and a count that belong together.
+	 */
+	private static class ModelIds {
+		private final MessageModel[] models;
+		private final int count;
+
+		private ModelIds(MessageModel[] models, int count) {
+			this.models = models;
+			this.count = count;
+		}
 	}
 }
@@ -21,31 +21,55 @@ package org.teamapps.protocol.schema;
 
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.teamapps.protocol.file.FileProvider;
 import org.teamapps.protocol.file.FileSink;
+import org.teamapps.protocol.message.ByteBufInput;
+import org.teamapps.protocol.message.ByteBufferReader;
+import org.teamapps.protocol.message.ByteBufferWriter;
+import org.teamapps.protocol.message.MessageReader;
 import org.teamapps.protocol.message.MessageUtils;
+import org.teamapps.protocol.message.MessageWriter;
 
 import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 public class MessageObject {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final MessageProperty[] NO_PROPERTIES = new MessageProperty[0];
 
 	private final ObjectPropertyDefinition objectPropertyDefinition;
-	private final List<MessageProperty> properties;
-	private final Map<String, MessageProperty> propertyByName;
+	private MessageProperty[] slots = NO_PROPERTIES;
+	private MessageProperty[] recycledSlots;
+	private int propertyCount;
+	private int flatSerializedSize = -1;
 
 	public static String readMessageObjectUuid(byte[] bytes) throws IOException {
-		return MessageUtils.readString(new DataInputStream(new ByteArrayInputStream(bytes)));
+		MessageReader reader = new MessageReader(bytes);
+		if (MessageEncoding.isEncodingHeader(reader.peekUnsignedByte())) {
+			MessageEncoding encoding = MessageEncoding.fromHeader(reader.readUnsignedByte());
+			return encoding.isModelIds() ? null : encoding.readString(encoding.openBody(reader));
+		}
+		return MessageUtils.readString(reader);
 	}
 
-	public static String readMessageObjectUuid(ByteBuf buf) {
+	public static String readMessageObjectUuid(ByteBuf buf) throws IOException {
+		if (MessageEncoding.isEncodingHeader(buf.getUnsignedByte(buf.readerIndex()))) {
+			MessageEncoding encoding = MessageEncoding.fromHeader(buf.readUnsignedByte());
+			return encoding.isModelIds() ? null : encoding.readString(encoding.openBody(new ByteBufInput(buf)));
+		}
 		return MessageUtils.readString(buf);
 	}
 
 	public MessageObject(ObjectPropertyDefinition objectPropertyDefinition) {
 		this.objectPropertyDefinition = objectPropertyDefinition;
-		this.properties = new ArrayList<>();
-		this.propertyByName = new HashMap<>();
 	}
 
 	public MessageObject(MessageModel model) {
@@ -54,94 +78,295 @@ public class MessageObject {
 
 	public MessageObject(MessageObject message, PojoObjectDecoderRegistry decoderRegistry) {
 		this.objectPropertyDefinition = message.objectPropertyDefinition;
-		this.properties = new ArrayList<>();
-		this.propertyByName = new HashMap<>();
 		for (MessageProperty property : message.getProperties()) {
-			MessageProperty messageProperty = new AbstractMessageProperty((AbstractMessageProperty) property, decoderRegistry);
-			properties.add(messageProperty);
-			propertyByName.put(property.getPropertyDefinition().getName(), messageProperty);
+			AbstractMessageProperty sourceProperty = property instanceof LazyMessageProperty ? ((LazyMessageProperty) property).getDecodedProperty() : (AbstractMessageProperty) property;
+			MessageProperty messageProperty = new AbstractMessageProperty(sourceProperty, decoderRegistry);
+			addProperty(messageProperty);
 		}
 	}
 
 	public MessageObject(byte[] bytes, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
-		this(new DataInputStream(new ByteArrayInputStream(bytes)), model, fileProvider, decoderRegistry);
+		this(new MessageReader(bytes), model, fileProvider, decoderRegistry);
 	}
 
 	public MessageObject(byte[] bytes, ModelRegistry modelRegistry, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
-		this(new DataInputStream(new ByteArrayInputStream(bytes)), modelRegistry, fileProvider, decoderRegistry);
+		this(new MessageReader(bytes), modelRegistry, fileProvider, decoderRegistry);
 	}
 
 	public MessageObject(DataInputStream dis, ModelRegistry modelRegistry, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
-		String objectUuid = MessageUtils.readString(dis);
-		short modelVersion = dis.readShort();
-		MessageModel model = modelRegistry.getModel(objectUuid, modelVersion);
-		this.objectPropertyDefinition = model.getObjectPropertyDefinition();
-		this.properties = new ArrayList<>();
-		this.propertyByName = new HashMap<>();
-		int propertyCount = dis.readShort();
-		for (int i = 0; i < propertyCount; i++) {
-			AbstractMessageProperty messageProperty = new AbstractMessageProperty(dis, objectPropertyDefinition, fileProvider, decoderRegistry);
-			properties.add(messageProperty);
-			propertyByName.put(messageProperty.getPropertyDefinition().getName(), messageProperty);
-		}
+		this((DataInput) dis, modelRegistry, fileProvider, decoderRegistry);
 	}
 
 	public MessageObject(ByteBuf buf, ModelRegistry modelRegistry, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
-		String objectUuid = MessageUtils.readString(buf);
-		short modelVersion = buf.readShort();
-		MessageModel model = modelRegistry.getModel(objectUuid, modelVersion);
+		this(new ByteBufInput(buf), modelRegistry, fileProvider, decoderRegistry);
+	}
+
+	/**
+	 * Decodes a message from a heap, direct or memory-mapped buffer starting at its position, the buffer has to use big endian byte order.
+	 */
+	public MessageObject(ByteBuffer buffer, ModelRegistry modelRegistry, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		this(new ByteBufferReader(buffer), modelRegistry, fileProvider, decoderRegistry);
+	}
+
+	public MessageObject(DataInput in, ModelRegistry modelRegistry, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		int firstByte = in.readUnsignedByte();
+		MessageEncoding encoding = MessageEncoding.DEFAULT;
+		MessageModel model;
+		if (MessageEncoding.isEncodingHeader(firstByte)) {
+			encoding = MessageEncoding.fromHeader(firstByte);
+			in = encoding.openBody(in);
+			model = encoding.readModelHeader(in, modelRegistry);
+		} else {
+			String objectUuid = MessageUtils.readString(in, firstByte);
+			short modelVersion = in.readShort();
+			model = modelRegistry.getModel(objectUuid, modelVersion);
+			if (model == null) {
+				throw new RuntimeException("Cannot parse message with unknown model:" + objectUuid + ", version:" + modelVersion);
+			}
+		}
 		this.objectPropertyDefinition = model.getObjectPropertyDefinition();
-		this.properties = new ArrayList<>();
-		this.propertyByName = new HashMap<>();
-		int propertyCount = buf.readShort();
-		for (int i = 0; i < propertyCount; i++) {
-			AbstractMessageProperty messageProperty = new AbstractMessageProperty(buf, objectPropertyDefinition, fileProvider, decoderRegistry);
-			properties.add(messageProperty);
-			propertyByName.put(messageProperty.getPropertyDefinition().getName(), messageProperty);
+		readEncodedProperties(in, fileProvider, decoderRegistry, encoding, SharedReferences.create(encoding));
+	}
+
+	public MessageObject(DataInputStream dis, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		this((DataInput) dis, model, fileProvider, decoderRegistry);
+	}
+
+	public MessageObject(ByteBuf buf, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		this(new ByteBufInput(buf), model, fileProvider, decoderRegistry);
+	}
+
+	/**
+	 * Decodes a message from a heap, direct or memory-mapped buffer starting at its position, the buffer has to use big endian byte order.
+	 */
+	public MessageObject(ByteBuffer buffer, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		this(new ByteBufferReader(buffer), model, fileProvider, decoderRegistry);
+	}
+
+	public MessageObject(DataInput in, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		this.objectPropertyDefinition = model.getObjectPropertyDefinition();
+		int firstByte = in.readUnsignedByte();
+		if (MessageEncoding.isEncodingHeader(firstByte)) {
+			MessageEncoding encoding = MessageEncoding.fromHeader(firstByte);
+			DataInput body = encoding.openBody(in);
+			encoding.skipModelHeader(body, objectPropertyDefinition);
+			readEncodedProperties(body, fileProvider, decoderRegistry, encoding, SharedReferences.create(encoding));
+		} else {
+			String objectUuid = MessageUtils.readString(in, firstByte);
+			if (!objectPropertyDefinition.getObjectUuid().equals(objectUuid)) {
+				throw new RuntimeException("Cannot parse message with wrong model:" + objectUuid + ", expected:" + objectPropertyDefinition.getObjectUuid());
+			}
+			short modelVersion = in.readShort();
+			if (modelVersion != objectPropertyDefinition.getModelVersion()) {
+				LOGGER.warn("Decoding message of model version {} with model {}, version {}", modelVersion, objectUuid, objectPropertyDefinition.getModelVersion());
+			}
+			readEncodedProperties(in, fileProvider, decoderRegistry, MessageEncoding.DEFAULT, null);
 		}
 	}
 
+	public MessageObject(DataInput in, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry, MessageEncoding encoding) throws IOException {
+		this(in, model, fileProvider, decoderRegistry, encoding, SharedReferences.create(encoding));
+	}
 
-	public MessageObject(DataInputStream dis, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+	protected MessageObject(DataInput in, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry, MessageEncoding encoding, SharedReferences references) throws IOException {
 		this.objectPropertyDefinition = model.getObjectPropertyDefinition();
-		this.properties = new ArrayList<>();
-		this.propertyByName = new HashMap<>();
-		String objectUuid = MessageUtils.readString(dis);
-		if (!model.getObjectPropertyDefinition().getObjectUuid().equals(objectUuid)) {
-			throw new RuntimeException("Cannot parse message with wrong model:" + objectUuid + ", expected:" + objectPropertyDefinition.getObjectUuid());
+		encoding.skipModelHeader(in, objectPropertyDefinition);
+		readEncodedProperties(in, fileProvider, decoderRegistry, encoding, references);
+	}
+
+	public MessageObject(byte[] bytes, PropertyProjection projection, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		this(new MessageReader(bytes), projection, fileProvider, decoderRegistry);
+	}
+
+	public MessageObject(MessageReader reader, PropertyProjection projection, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		this(projection.getModel());
+		MessageEncoding encoding = MessageEncoding.DEFAULT;
+		if (MessageEncoding.isEncodingHeader(reader.peekUnsignedByte())) {
+			encoding = MessageEncoding.fromHeader(reader.readUnsignedByte());
 		}
-		short modelVersion = dis.readShort();
-		if (model.getModelVersion() != modelVersion) {
-			System.out.println("Wrong model version " + model + ", expected: " + model.getModelVersion());
+		readProjectedProperties(encoding.openBody(reader), projection, fileProvider, decoderRegistry, encoding, SharedReferences.create(encoding));
+	}
+
+	private MessageObject(MessageReader reader, PropertyProjection projection, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry, MessageEncoding encoding, SharedReferences references) throws IOException {
+		this(projection.getModel());
+		readProjectedProperties(reader, projection, fileProvider, decoderRegistry, encoding, references);
+	}
+
+	private void readProjectedProperties(MessageReader reader, PropertyProjection projection, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry, MessageEncoding encoding, SharedReferences references) throws IOException {
+		encoding.skipModelHeader(reader, objectPropertyDefinition);
+		if (encoding.isFixedLayout()) {
+			PropertyDefinition[] layout = objectPropertyDefinition.getFixedLayout();
+			byte[] presence = encoding.readPresence(reader, layout.length);
+			for (int i = 0; i < layout.length; i++) {
+				if (MessageEncoding.isPresent(presence, i)) {
+					readProjectedProperty(reader, layout[i].getType(), layout[i].getKey(), projection, fileProvider, decoderRegistry, encoding, references);
+				}
+			}
+			return;
 		}
-		int propertyCount = dis.readShort();
+		int propertyCount = encoding.readPropertyCount(reader);
 		for (int i = 0; i < propertyCount; i++) {
-			AbstractMessageProperty messageProperty = new AbstractMessageProperty(dis, objectPropertyDefinition, fileProvider, decoderRegistry);
-			properties.add(messageProperty);
-			propertyByName.put(messageProperty.getPropertyDefinition().getName(), messageProperty);
+			PropertyType type = PropertyType.getById(reader.readByte());
+			readProjectedProperty(reader, type, encoding.readKey(reader), projection, fileProvider, decoderRegistry, encoding, references);
 		}
 	}
 
-	public MessageObject(ByteBuf buf, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
-		this.objectPropertyDefinition = model.getObjectPropertyDefinition();
-		this.properties = new ArrayList<>();
-		this.propertyByName = new HashMap<>();
-		String objectUuid = MessageUtils.readString(buf);
-		if (!model.getObjectPropertyDefinition().getObjectUuid().equals(objectUuid)) {
-			throw new RuntimeException("Cannot parse message with wrong model:" + objectUuid + ", expected:" + objectPropertyDefinition.getObjectUuid());
+	private void readProjectedProperty(MessageReader reader, PropertyType type, int key, PropertyProjection projection, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry, MessageEncoding encoding, SharedReferences references) throws IOException {
+		PropertyDefinition propertyDefinition = objectPropertyDefinition.getPropertyDefinitionByKey(key);
+		if (!projection.contains(key)) {
+			if (encoding.isSharedReferences() && propertyDefinition != null && propertyDefinition.isReferenceProperty()) {
+				new AbstractMessageProperty(propertyDefinition, type, reader, fileProvider, decoderRegistry, encoding, references);
+			} else {
+				encoding.skipValue(reader, type, propertyDefinition);
+			}
+			return;
 		}
-		short modelVersion = buf.readShort();
-		if (model.getModelVersion() != modelVersion) {
-			System.out.println("Wrong model version " + model + ", expected: " + model.getModelVersion());
+		PropertyProjection referenceProjection = projection.getProjection(key);
+		if (referenceProjection == null) {
+			addProperty(new AbstractMessageProperty(propertyDefinition, type, reader, fileProvider, decoderRegistry, encoding, references));
+			return;
 		}
-		int propertyCount = buf.readShort();
+		if (type != propertyDefinition.getType()) {
+			throw new RuntimeException("Message parsing error - property type mismatch: " + type + " <-> " + propertyDefinition.getType());
+		}
+		encoding.readFrameLength(reader, type);
+		if (type == PropertyType.OBJECT_SINGLE_REFERENCE) {
+			MessageObject sharedReference = encoding.readSharedReference(reader, references);
+			addProperty(new AbstractMessageProperty(propertyDefinition, sharedReference != null ? sharedReference : encoding.addSharedReference(new MessageObject(reader, referenceProjection, fileProvider, decoderRegistry, encoding, references), references)));
+		} else if (encoding.isColumnar()) {
+			addProperty(new AbstractMessageProperty(propertyDefinition, ColumnarListCodec.read(reader, propertyDefinition.getReferencedObject(), referenceProjection, fileProvider, decoderRegistry, encoding, references)));
+		} else {
+			int messageCount = encoding.readSize(reader);
+			List<MessageObject> messageObjects = new ArrayList<>(messageCount);
+			for (int n = 0; n < messageCount; n++) {
+				encoding.readObjectFrameLength(reader);
+				MessageObject sharedReference = encoding.readSharedReference(reader, references);
+				messageObjects.add(sharedReference != null ? sharedReference : encoding.addSharedReference(new MessageObject(reader, referenceProjection, fileProvider, decoderRegistry, encoding, references), references));
+			}
+			addProperty(new AbstractMessageProperty(propertyDefinition, messageObjects));
+		}
+	}
+
+	private void readEncodedProperties(DataInput in, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry, MessageEncoding encoding, SharedReferences references) throws IOException {
+		if (encoding.isFixedLayout()) {
+			PropertyDefinition[] layout = objectPropertyDefinition.getFixedLayout();
+			byte[] presence = encoding.readPresence(in, layout.length);
+			for (int i = 0; i < layout.length; i++) {
+				if (MessageEncoding.isPresent(presence, i)) {
+					addProperty(new AbstractMessageProperty(layout[i], layout[i].getType(), in, fileProvider, decoderRegistry, encoding, references));
+				}
+			}
+			return;
+		}
+		int propertyCount = encoding.readPropertyCount(in);
 		for (int i = 0; i < propertyCount; i++) {
-			AbstractMessageProperty messageProperty = new AbstractMessageProperty(buf, objectPropertyDefinition, fileProvider, decoderRegistry);
-			properties.add(messageProperty);
-			propertyByName.put(messageProperty.getPropertyDefinition().getName(), messageProperty);
+			PropertyType type = PropertyType.getById(in.readByte());
+			PropertyDefinition propertyDefinition = objectPropertyDefinition.getPropertyDefinitionByKey(encoding.readKey(in));
+			if (propertyDefinition == null) {
+				encoding.skipUnknownValue(in, type);
+				continue;
+			}
+			addProperty(new AbstractMessageProperty(propertyDefinition, type, in, fileProvider, decoderRegistry, encoding, references));
 		}
 	}
 
+	/**
+	 * Decodes a message into an existing instance instead of allocating a new one. All properties of the target are replaced,
+	 * property holders, nested objects and reference lists are refilled in place, so previously read values of the target
+	 * must not be kept by the caller.
+	 */
+	public static <MESSAGE extends MessageObject> MESSAGE decodeInto(MESSAGE target, MessageReader reader, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		checkReusable(target);
+		MessageEncoding encoding = MessageEncoding.DEFAULT;
+		if (MessageEncoding.isEncodingHeader(reader.peekUnsignedByte())) {
+			encoding = MessageEncoding.fromHeader(reader.readUnsignedByte());
+		}
+		target.readInto(encoding.openBody(reader), fileProvider, decoderRegistry, encoding, SharedReferences.create(encoding));
+		return target;
+	}
+
+	public static <MESSAGE extends MessageObject> MESSAGE decodeInto(MESSAGE target, ByteBuf buf, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		checkReusable(target);
+		MessageEncoding encoding = MessageEncoding.DEFAULT;
+		if (MessageEncoding.isEncodingHeader(buf.getUnsignedByte(buf.readerIndex()))) {
+			encoding = MessageEncoding.fromHeader(buf.readUnsignedByte());
+		}
+		target.readInto(encoding.openBody(new ByteBufInput(buf)), fileProvider, decoderRegistry, encoding, SharedReferences.create(encoding));
+		return target;
+	}
+
+	public static <MESSAGE extends MessageObject> MESSAGE decodeInto(MESSAGE target, byte[] bytes, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		return decodeInto(target, new MessageReader(bytes), fileProvider, decoderRegistry);
+	}
+
+	private static void checkReusable(MessageObject target) {
+		if (target instanceof LazyMessageObject) {
+			throw new RuntimeException("Cannot decode into lazy message:" + target.getName());
+		}
+	}
+
+	void readInto(DataInput in, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry, MessageEncoding encoding, SharedReferences references) throws IOException {
+		encoding.skipModelHeader(in, objectPropertyDefinition);
+		clearFields();
+		MessageProperty[] previousSlots = slots;
+		slots = recycledSlots != null && recycledSlots.length >= previousSlots.length ? recycledSlots : new MessageProperty[Math.max(previousSlots.length, objectPropertyDefinition.getPropertyDefinitions().size())];
+		recycledSlots = null;
+		propertyCount = 0;
+		flatSerializedSize = -1;
+		if (encoding.isFixedLayout()) {
+			PropertyDefinition[] layout = objectPropertyDefinition.getFixedLayout();
+			byte[] presence = encoding.readPresence(in, layout.length);
+			for (int i = 0; i < layout.length; i++) {
+				if (MessageEncoding.isPresent(presence, i)) {
+					readPropertyInto(layout[i], layout[i].getType(), previousSlots, in, fileProvider, decoderRegistry, encoding, references);
+				}
+			}
+		} else {
+			int propertyCount = encoding.readPropertyCount(in);
+			for (int i = 0; i < propertyCount; i++) {
+				PropertyType type = PropertyType.getById(in.readByte());
+				PropertyDefinition propertyDefinition = objectPropertyDefinition.getPropertyDefinitionByKey(encoding.readKey(in));
+				if (propertyDefinition == null) {
+					encoding.skipUnknownValue(in, type);
+					continue;
+				}
+				readPropertyInto(propertyDefinition, type, previousSlots, in, fileProvider, decoderRegistry, encoding, references);
+			}
+		}
+		Arrays.fill(previousSlots, null);
+		recycledSlots = previousSlots;
+	}
+
+	/**
+	 * Reads a property value of the given encoding and adds it to this message.
+	 */
+	protected void readProperty(PropertyDefinition propertyDefinition, PropertyType type, DataInput in, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry, MessageEncoding encoding, SharedReferences references) throws IOException {
+		addProperty(new AbstractMessageProperty(propertyDefinition, type, in, fileProvider, decoderRegistry, encoding, references));
+	}
+
+	private void readPropertyInto(PropertyDefinition propertyDefinition, PropertyType type, MessageProperty[] previousSlots, DataInput in, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry, MessageEncoding encoding, SharedReferences references) throws IOException {
+		int slot = getSlot(propertyDefinition);
+		MessageProperty previousProperty = slot < previousSlots.length ? previousSlots[slot] : null;
+		if (previousProperty != null && previousProperty.getClass() == AbstractMessageProperty.class && previousProperty.getPropertyDefinition() == propertyDefinition) {
+			checkPropertyType(type.getId(), propertyDefinition);
+			AbstractMessageProperty property = (AbstractMessageProperty) previousProperty;
+			property.readValueInto(in, fileProvider, decoderRegistry, encoding, references);
+			addProperty(property);
+		} else {
+			addProperty(new AbstractMessageProperty(propertyDefinition, type, in, fileProvider, decoderRegistry, encoding, references));
+		}
+	}
+
+	/**
+	 * Removes all properties while keeping the allocated property store for reuse.
+	 */
+	public void clear() {
+		clearFields();
+		Arrays.fill(slots, null);
+		propertyCount = 0;
+		flatSerializedSize = -1;
+	}
+
 	public MessageModel getModel() {
 		return objectPropertyDefinition;
 	}
@@ -151,24 +376,144 @@ public class MessageObject {
 	}
 
 	public List<MessageProperty> getProperties() {
+		List<MessageProperty> properties = new ArrayList<>(propertyCount + getFieldCount());
+		for (MessageProperty property : slots) {
+			if (property != null) {
+				properties.add(property);
+			}
+		}
+		if (getFieldCount() > 0) {
+			for (PropertyDefinition propertyDefinition : objectPropertyDefinition.getFixedLayout()) {
+				if (hasFieldValue(propertyDefinition)) {
+					properties.add(new AbstractMessageProperty(propertyDefinition, getFieldValue(propertyDefinition)));
+				}
+			}
+		}
 		return properties;
 	}
 
+	protected MessageProperty[] getStoredProperties() {
+		return slots;
+	}
+
+	protected int getStoredPropertyCount() {
+		return propertyCount;
+	}
+
 	public void write(DataOutputStream dos, FileSink fileSink) throws IOException {
-		MessageUtils.writeString(dos, objectPropertyDefinition.getObjectUuid());
-		dos.writeShort(objectPropertyDefinition.getModelVersion());
-		dos.writeShort(properties.size());
-		for (MessageProperty field : properties) {
-			field.write(dos, fileSink);
-		}
+		write((DataOutput) dos, fileSink);
 	}
 
 	public void write(ByteBuf buffer, FileSink fileSink) throws IOException {
-		MessageUtils.writeString(buffer, objectPropertyDefinition.getObjectUuid());
-		buffer.writeShort(objectPropertyDefinition.getModelVersion());
-		buffer.writeShort(properties.size());
-		for (MessageProperty field : properties) {
-			field.write(buffer, fileSink);
+		write((DataOutput) new ByteBufOutputStream(buffer), fileSink);
+	}
+
+	public void write(MessageWriter writer, FileSink fileSink) throws IOException {
+		write((DataOutput) writer, fileSink);
+	}
+
+	/**
+	 * Writes the message at the position of a heap, direct or memory-mapped buffer, the buffer has to use big endian byte order.
+	 * Without a file sink it has to provide {@link #getSerializedSize()} remaining bytes, file ids of a sink need additional
+	 * bytes. A buffer that is too small fails with an {@link java.io.EOFException}.
+	 */
+	public void write(ByteBuffer buffer, FileSink fileSink) throws IOException {
+		write(buffer, fileSink, MessageEncoding.DEFAULT);
+	}
+
+	public void write(DataOutput out, FileSink fileSink) throws IOException {
+		writeEncoded(out, fileSink, MessageEncoding.DEFAULT);
+	}
+
+	public void write(ByteBuffer buffer, FileSink fileSink, MessageEncoding encoding) throws IOException {
+		write(new ByteBufferWriter(buffer), fileSink, encoding);
+	}
+
+	/**
+	 * Encodes the message into a composite buffer, byte arrays above {@link MessageUtils#ZERO_COPY_THRESHOLD} are added as
+	 * wrapped components instead of being copied.
+	 */
+	public CompositeByteBuf toCompositeByteBuf(FileSink fileSink) throws IOException {
+		CompositeByteBuf buffer = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+		write(buffer, fileSink);
+		return buffer;
+	}
+
+	public void write(ByteBuf buffer, FileSink fileSink, MessageEncoding encoding) throws IOException {
+		write(new ByteBufOutputStream(buffer), fileSink, encoding);
+	}
+
+	public void write(DataOutput out, FileSink fileSink, MessageEncoding encoding) throws IOException {
+		if (encoding == null || encoding.isDefault()) {
+			write(out, fileSink);
+		} else {
+			writeFlagged(out, fileSink, encoding);
+		}
+	}
+
+	private void writeFlagged(DataOutput out, FileSink fileSink, MessageEncoding encoding) throws IOException {
+		if (!encoding.isCompressed()) {
+			out.writeByte(encoding.getHeader());
+			writeEncoded(out, fileSink, encoding, SharedReferences.create(encoding));
+			return;
+		}
+		MessageEncoding bodyEncoding = encoding.getBodyEncoding();
+		MessageWriter body = new MessageWriter(getSerializedSize());
+		writeEncoded(body, fileSink, bodyEncoding, SharedReferences.create(bodyEncoding));
+		if (body.getPosition() < encoding.getCompressionThreshold()) {
+			out.writeByte(bodyEncoding.getHeader());
+			out.write(body.getBytes(), 0, body.getPosition());
+		} else {
+			out.writeByte(encoding.getHeader());
+			encoding.writeCompressedBody(out, body.getBytes(), body.getPosition());
+		}
+	}
+
+	/**
+	 * Writes the message body, shared references are only resolved within this call.
+	 */
+	public void writeEncoded(DataOutput out, FileSink fileSink, MessageEncoding encoding) throws IOException {
+		writeEncoded(out, fileSink, encoding, SharedReferences.create(encoding));
+	}
+
+	protected void writeEncoded(DataOutput out, FileSink fileSink, MessageEncoding encoding, SharedReferences references) throws IOException {
+		encoding.writeModelHeader(out, objectPropertyDefinition);
+		if (encoding.isFixedLayout()) {
+			PropertyDefinition[] layout = objectPropertyDefinition.getFixedLayout();
+			byte[] presence = new byte[(layout.length + 7) / 8];
+			for (int i = 0; i < layout.length; i++) {
+				if (getStoredProperty(layout[i]) != null || hasFieldValue(layout[i])) {
+					presence[i >>> 3] |= 1 << (i & 7);
+				}
+			}
+			encoding.writePresence(out, presence, layout.length);
+			for (int i = 0; i < layout.length; i++) {
+				if (MessageEncoding.isPresent(presence, i)) {
+					MessageProperty property = getStoredProperty(layout[i]);
+					if (property != null) {
+						writeEncodedValue(property, out, fileSink, encoding, references);
+					} else {
+						writeFieldValue(layout[i], out, encoding);
+					}
+				}
+			}
+			return;
+		}
+		int fieldCount = getFieldCount();
+		encoding.writePropertyCount(out, propertyCount + fieldCount);
+		for (MessageProperty field : slots) {
+			if (field != null) {
+				field.writeEncoded(out, fileSink, encoding, references);
+			}
+		}
+		if (fieldCount > 0) {
+			for (PropertyDefinition propertyDefinition : objectPropertyDefinition.getFixedLayout()) {
+				if (hasFieldValue(propertyDefinition)) {
+					out.writeByte(propertyDefinition.getType().getId());
+					encoding.writeKey(out, propertyDefinition.getKey());
+					writeFieldValue(propertyDefinition, out, encoding);
+				}
+			}
 		}
 	}
 
@@ -177,11 +522,46 @@ public class MessageObject {
 	}
 
 	public byte[] toBytes(FileSink fileSink) throws IOException {
-		ByteArrayOutputStream bos = new ByteArrayOutputStream();
-		DataOutputStream dos = new DataOutputStream(bos);
-		write(dos, fileSink);
-		dos.close();
-		return bos.toByteArray();
+		MessageWriter writer = MessageWriter.acquire();
+		try {
+			write(writer, fileSink);
+			return writer.copyBytes();
+		} finally {
+			writer.release();
+		}
+	}
+
+	/**
+	 * Returns the length of the {@link MessageEncoding#DEFAULT} encoding written without a {@link FileSink}. File ids
+	 * returned by a sink are not known before writing and add their string length, flagged encodings have other lengths.
+	 */
+	public int getSerializedSize() {
+		if (flatSerializedSize < 0) {
+			int size = MessageUtils.getStringSize(objectPropertyDefinition.getObjectUuid()) + 4;
+			for (MessageProperty property : slots) {
+				if (property != null && !property.getPropertyDefinition().isReferenceProperty()) {
+					size += property.getSerializedSize();
+				}
+			}
+			flatSerializedSize = size;
+		}
+		int size = flatSerializedSize + getFieldsSerializedSize();
+		for (MessageProperty property : slots) {
+			if (property != null && property.getPropertyDefinition().isReferenceProperty()) {
+				size += property.getSerializedSize();
+			}
+		}
+		return size;
+	}
+
+	public byte[] toBytes(FileSink fileSink, MessageEncoding encoding) throws IOException {
+		MessageWriter writer = MessageWriter.acquire();
+		try {
+			write(writer, fileSink, encoding);
+			return writer.copyBytes();
+		} finally {
+			writer.release();
+		}
 	}
 
 
@@ -190,120 +570,225 @@ public class MessageObject {
 		return this;
 	}
 
+	public MessageObject setReferencedObject(PropertyDefinition propertyDefinition, MessageObject value) {
+		setProperty(propertyDefinition, value);
+		return this;
+	}
+
 
 	public MessageObject setReferencedObjects(String name, List<MessageObject> value) {
 		setProperty(name, value);
 		return this;
 	}
 
+	public MessageObject setReferencedObjects(PropertyDefinition propertyDefinition, List<MessageObject> value) {
+		setProperty(propertyDefinition, value);
+		return this;
+	}
+
 	public <TYPE extends MessageObject> MessageObject setReferencedObjectAsType(String name, TYPE value) {
 		setProperty(name, value);
 		return this;
 	}
 
+	public <TYPE extends MessageObject> MessageObject setReferencedObjectAsType(PropertyDefinition propertyDefinition, TYPE value) {
+		setProperty(propertyDefinition, value);
+		return this;
+	}
+
 	public <TYPE extends MessageObject> MessageObject setReferencedObjectsAsType(String name, List<TYPE> value) {
 		setProperty(name, value);
 		return this;
 	}
 
+	public <TYPE extends MessageObject> MessageObject setReferencedObjectsAsType(PropertyDefinition propertyDefinition, List<TYPE> value) {
+		setProperty(propertyDefinition, value);
+		return this;
+	}
+
 	public MessageObject setBooleanProperty(String name, boolean value) {
 		setProperty(name, value);
 		return this;
 	}
 
+	public MessageObject setBooleanProperty(PropertyDefinition propertyDefinition, boolean value) {
+		setProperty(propertyDefinition, value);
+		return this;
+	}
+
 
 	public MessageObject setByteProperty(String name, byte value) {
 		setProperty(name, value);
 		return this;
 	}
 
+	public MessageObject setByteProperty(PropertyDefinition propertyDefinition, byte value) {
+		setProperty(propertyDefinition, value);
+		return this;
+	}
+
 
 	public MessageObject setIntProperty(String name, int value) {
 		setProperty(name, value);
 		return this;
 	}
 
+	public MessageObject setIntProperty(PropertyDefinition propertyDefinition, int value) {
+		setProperty(propertyDefinition, value);
+		return this;
+	}
+
 
 	public MessageObject setLongProperty(String name, long value) {
 		setProperty(name, value);
 		return this;
 	}
 
+	public MessageObject setLongProperty(PropertyDefinition propertyDefinition, long value) {
+		setProperty(propertyDefinition, value);
+		return this;
+	}
+
 
 	public MessageObject setFloatProperty(String name, float value) {
 		setProperty(name, value);
 		return this;
 	}
 
+	public MessageObject setFloatProperty(PropertyDefinition propertyDefinition, float value) {
+		setProperty(propertyDefinition, value);
+		return this;
+	}
+
 
 	public MessageObject setDoubleProperty(String name, double value) {
 		setProperty(name, value);
 		return this;
 	}
 
+	public MessageObject setDoubleProperty(PropertyDefinition propertyDefinition, double value) {
+		setProperty(propertyDefinition, value);
+		return this;
+	}
+
 
 	public MessageObject setStringProperty(String name, String value) {
 		setProperty(name, value);
 		return this;
 	}
 
+	public MessageObject setStringProperty(PropertyDefinition propertyDefinition, String value) {
+		setProperty(propertyDefinition, value);
+		return this;
+	}
+
 
 	public MessageObject setFileProperty(String name, FileProperty value) {
 		setProperty(name, value);
 		return this;
 	}
 
+	public MessageObject setFileProperty(PropertyDefinition propertyDefinition, FileProperty value) {
+		setProperty(propertyDefinition, value);
+		return this;
+	}
+
 	public MessageObject setFileProperty(String name, File file) {
 		setProperty(name, file != null ? new FileProperty(file) : null);
 		return this;
 	}
 
+	public MessageObject setFileProperty(PropertyDefinition propertyDefinition, File file) {
+		setProperty(propertyDefinition, file != null ? new FileProperty(file) : null);
+		return this;
+	}
+
 	public MessageObject setFileProperty(String name, File file, String fileName) {
 		setProperty(name, file != null ? new FileProperty(fileName, file) : null);
 		return this;
 	}
 
+	public MessageObject setFileProperty(PropertyDefinition propertyDefinition, File file, String fileName) {
+		setProperty(propertyDefinition, file != null ? new FileProperty(fileName, file) : null);
+		return this;
+	}
+
 	public MessageObject setBitSetProperty(String name, BitSet value) {
 		setProperty(name, value);
 		return this;
 	}
 
+	public MessageObject setBitSetProperty(PropertyDefinition propertyDefinition, BitSet value) {
+		setProperty(propertyDefinition, value);
+		return this;
+	}
+
 
 	public MessageObject setByteArrayProperty(String name, byte[] value) {
 		setProperty(name, value);
 		return this;
 	}
 
+	public MessageObject setByteArrayProperty(PropertyDefinition propertyDefinition, byte[] value) {
+		setProperty(propertyDefinition, value);
+		return this;
+	}
+
 
 	public MessageObject setIntArrayProperty(String name, int[] value) {
 		setProperty(name, value);
 		return this;
 	}
 
+	public MessageObject setIntArrayProperty(PropertyDefinition propertyDefinition, int[] value) {
+		setProperty(propertyDefinition, value);
+		return this;
+	}
+
 
 	public MessageObject setLongArrayProperty(String name, long[] value) {
 		setProperty(name, value);
 		return this;
 	}
 
+	public MessageObject setLongArrayProperty(PropertyDefinition propertyDefinition, long[] value) {
+		setProperty(propertyDefinition, value);
+		return this;
+	}
+
 
 	public MessageObject setFloatArrayProperty(String name, float[] value) {
 		setProperty(name, value);
 		return this;
 	}
 
+	public MessageObject setFloatArrayProperty(PropertyDefinition propertyDefinition, float[] value) {
+		setProperty(propertyDefinition, value);
+		return this;
+	}
+
 
 	public MessageObject setDoubleArrayProperty(String name, double[] value) {
 		setProperty(name, value);
 		return this;
 	}
 
+	public MessageObject setDoubleArrayProperty(PropertyDefinition propertyDefinition, double[] value) {
+		setProperty(propertyDefinition, value);
+		return this;
+	}
+
 
 	public MessageObject setStringArrayProperty(String name, String[] value) {
 		setProperty(name, value);
 		return this;
 	}
 
+	public MessageObject setStringArrayProperty(PropertyDefinition propertyDefinition, String[] value) {
+		setProperty(propertyDefinition, value);
+		return this;
+	}
+
 
 	public MessageObject getReferencedObject(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
@@ -314,6 +799,15 @@ public class MessageObject {
 		}
 	}
 
+	public MessageObject getReferencedObject(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getReferencedObject();
+		} else {
+			return null;
+		}
+	}
+
 
 	public List<MessageObject> getReferencedObjects(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
@@ -324,6 +818,15 @@ public class MessageObject {
 		}
 	}
 
+	public List<MessageObject> getReferencedObjects(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getReferencedObjects();
+		} else {
+			return null;
+		}
+	}
+
 
 	public <TYPE extends MessageObject> TYPE getReferencedObjectAsType(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
@@ -334,6 +837,15 @@ public class MessageObject {
 		}
 	}
 
+	public <TYPE extends MessageObject> TYPE getReferencedObjectAsType(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getReferencedObjectAsType();
+		} else {
+			return null;
+		}
+	}
+
 
 	public <TYPE extends MessageObject> List<TYPE> getReferencedObjectsAsType(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
@@ -344,6 +856,15 @@ public class MessageObject {
 		}
 	}
 
+	public <TYPE extends MessageObject> List<TYPE> getReferencedObjectsAsType(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getReferencedObjectsAsType();
+		} else {
+			return null;
+		}
+	}
+
 
 	public boolean getBooleanProperty(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
@@ -354,6 +875,15 @@ public class MessageObject {
 		}
 	}
 
+	public boolean getBooleanProperty(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getBooleanProperty();
+		} else {
+			return false;
+		}
+	}
+
 
 	public byte getByteProperty(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
@@ -364,6 +894,15 @@ public class MessageObject {
 		}
 	}
 
+	public byte getByteProperty(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getByteProperty();
+		} else {
+			return 0;
+		}
+	}
+
 
 	public int getIntProperty(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
@@ -374,6 +913,15 @@ public class MessageObject {
 		}
 	}
 
+	public int getIntProperty(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getIntProperty();
+		} else {
+			return 0;
+		}
+	}
+
 
 	public long getLongProperty(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
@@ -384,6 +932,15 @@ public class MessageObject {
 		}
 	}
 
+	public long getLongProperty(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getLongProperty();
+		} else {
+			return 0;
+		}
+	}
+
 
 	public float getFloatProperty(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
@@ -394,6 +951,15 @@ public class MessageObject {
 		}
 	}
 
+	public float getFloatProperty(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getFloatProperty();
+		} else {
+			return 0;
+		}
+	}
+
 
 	public double getDoubleProperty(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
@@ -404,6 +970,15 @@ public class MessageObject {
 		}
 	}
 
+	public double getDoubleProperty(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getDoubleProperty();
+		} else {
+			return 0;
+		}
+	}
+
 
 	public String getStringProperty(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
@@ -414,6 +989,15 @@ public class MessageObject {
 		}
 	}
 
+	public String getStringProperty(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getStringProperty();
+		} else {
+			return null;
+		}
+	}
+
 
 	public FileProperty getFileProperty(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
@@ -424,6 +1008,15 @@ public class MessageObject {
 		}
 	}
 
+	public FileProperty getFileProperty(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getFileProperty();
+		} else {
+			return null;
+		}
+	}
+
 	public File getFilePropertyAsFile(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
 		if (property != null) {
@@ -433,6 +1026,15 @@ public class MessageObject {
 		}
 	}
 
+	public File getFilePropertyAsFile(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getFilePropertyAsFile();
+		} else {
+			return null;
+		}
+	}
+
 	public String getFilePropertyAsFileName(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
 		if (property != null) {
@@ -442,6 +1044,15 @@ public class MessageObject {
 		}
 	}
 
+	public String getFilePropertyAsFileName(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getFilePropertyAsFileName();
+		} else {
+			return null;
+		}
+	}
+
 	public long getFilePropertyAsFileLength(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
 		if (property != null) {
@@ -451,6 +1062,15 @@ public class MessageObject {
 		}
 	}
 
+	public long getFilePropertyAsFileLength(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getFilePropertyAsFileLength();
+		} else {
+			return 0;
+		}
+	}
+
 
 	public BitSet getBitSetProperty(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
@@ -461,6 +1081,15 @@ public class MessageObject {
 		}
 	}
 
+	public BitSet getBitSetProperty(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getBitSetProperty();
+		} else {
+			return null;
+		}
+	}
+
 
 	public byte[] getByteArrayProperty(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
@@ -471,6 +1100,36 @@ public class MessageObject {
 		}
 	}
 
+	/**
+	 * Returns the byte array property as buffer, for a {@link ReferenceCountedMessage} this is a slice of the source buffer.
+	 */
+	public ByteBuf getByteBufProperty(String propertyName) {
+		MessageProperty property = getProperty(propertyName);
+		if (property != null) {
+			return property.getByteBufProperty();
+		} else {
+			return null;
+		}
+	}
+
+	public ByteBuf getByteBufProperty(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getByteBufProperty();
+		} else {
+			return null;
+		}
+	}
+
+	public byte[] getByteArrayProperty(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getByteArrayProperty();
+		} else {
+			return null;
+		}
+	}
+
 
 	public int[] getIntArrayProperty(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
@@ -481,6 +1140,15 @@ public class MessageObject {
 		}
 	}
 
+	public int[] getIntArrayProperty(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getIntArrayProperty();
+		} else {
+			return null;
+		}
+	}
+
 
 	public long[] getLongArrayProperty(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
@@ -491,6 +1159,15 @@ public class MessageObject {
 		}
 	}
 
+	public long[] getLongArrayProperty(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getLongArrayProperty();
+		} else {
+			return null;
+		}
+	}
+
 
 	public float[] getFloatArrayProperty(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
@@ -501,6 +1178,15 @@ public class MessageObject {
 		}
 	}
 
+	public float[] getFloatArrayProperty(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getFloatArrayProperty();
+		} else {
+			return null;
+		}
+	}
+
 
 	public double[] getDoubleArrayProperty(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
@@ -511,6 +1197,15 @@ public class MessageObject {
 		}
 	}
 
+	public double[] getDoubleArrayProperty(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getDoubleArrayProperty();
+		} else {
+			return null;
+		}
+	}
+
 
 	public String[] getStringArrayProperty(String propertyName) {
 		MessageProperty property = getProperty(propertyName);
@@ -521,6 +1216,15 @@ public class MessageObject {
 		}
 	}
 
+	public String[] getStringArrayProperty(PropertyDefinition propertyDefinition) {
+		MessageProperty property = getProperty(propertyDefinition);
+		if (property != null) {
+			return property.getStringArrayProperty();
+		} else {
+			return null;
+		}
+	}
+
 
 	public void addReference(String name, MessageObject messageObject) {
 		PropertyDefinition propertyDefinition = objectPropertyDefinition.getPropertyDefinitionByName(name);
@@ -547,33 +1251,147 @@ public class MessageObject {
 		if (propertyDefinition == null) {
 			throw new RuntimeException("Message model does not contain a field with name:" + name);
 		}
-		MessageProperty existingField = propertyByName.get(name);
-		if (existingField != null) {
-			properties.remove(existingField);
-			if (value != null) {
-				MessageProperty messageProperty = new AbstractMessageProperty(propertyDefinition, value);
-				properties.add(messageProperty);
-				propertyByName.put(name, messageProperty);
-			} else {
-				propertyByName.remove(name);
-			}
-		} else if (value != null) {
-			MessageProperty messageProperty = new AbstractMessageProperty(propertyDefinition, value);
-			properties.add(messageProperty);
-			propertyByName.put(name, messageProperty);
+		setProperty(propertyDefinition, value);
+	}
+
+	public void setProperty(int key, Object value) {
+		PropertyDefinition propertyDefinition = objectPropertyDefinition.getPropertyDefinitionByKey(key);
+		if (propertyDefinition == null) {
+			throw new RuntimeException("Message model does not contain a field with key:" + key);
+		}
+		setProperty(propertyDefinition, value);
+	}
+
+	public void setProperty(PropertyDefinition propertyDefinition, Object value) {
+		if (setFieldValue(propertyDefinition, value)) {
+			return;
+		}
+		flatSerializedSize = -1;
+		if (value != null) {
+			addProperty(new AbstractMessageProperty(propertyDefinition, value));
+		} else {
+			removeStoredProperty(getSlot(propertyDefinition));
 		}
 	}
 
 	public void removeField(PropertyDefinition propertyDefinition) {
-		MessageProperty existingField = propertyByName.get(propertyDefinition);
-		if (existingField != null) {
-			properties.remove(existingField);
-			propertyByName.remove(propertyDefinition);
+		if (!setFieldValue(propertyDefinition, null)) {
+			removeStoredProperty(getSlot(propertyDefinition));
 		}
 	}
 
 	public MessageProperty getProperty(String name) {
-		return propertyByName.get(name);
+		PropertyDefinition propertyDefinition = objectPropertyDefinition.getPropertyDefinitionByName(name);
+		return propertyDefinition != null ? getProperty(propertyDefinition) : null;
+	}
+
+	public MessageProperty getProperty(int key) {
+		PropertyDefinition propertyDefinition = objectPropertyDefinition.getPropertyDefinitionByKey(key);
+		return propertyDefinition != null ? getProperty(propertyDefinition) : null;
+	}
+
+	public MessageProperty getProperty(PropertyDefinition propertyDefinition) {
+		if (hasFieldValue(propertyDefinition)) {
+			return new AbstractMessageProperty(propertyDefinition, getFieldValue(propertyDefinition));
+		}
+		return getStoredProperty(propertyDefinition);
+	}
+
+	protected static void writeEncodedValue(MessageProperty property, DataOutput out, FileSink fileSink, MessageEncoding encoding, SharedReferences references) throws IOException {
+		if (property instanceof LazyMessageProperty) {
+			((LazyMessageProperty) property).writeEncodedValue(out, fileSink, encoding, references);
+		} else {
+			((AbstractMessageProperty) property).writeEncodedValue(out, fileSink, encoding, references);
+		}
+	}
+
+	protected void addProperty(MessageProperty property) {
+		if (isFieldBacked(property.getPropertyDefinition())) {
+			AbstractMessageProperty fieldProperty = property instanceof LazyMessageProperty ? ((LazyMessageProperty) property).getDecodedProperty() : (AbstractMessageProperty) property;
+			setFieldValue(property.getPropertyDefinition(), fieldProperty.getValue());
+			return;
+		}
+		flatSerializedSize = -1;
+		int slot = getSlot(property.getPropertyDefinition());
+		if (slot >= slots.length) {
+			slots = Arrays.copyOf(slots, Math.max(slot + 1, objectPropertyDefinition.getPropertyDefinitions().size()));
+		}
+		if (slots[slot] == null) {
+			propertyCount++;
+		}
+		slots[slot] = property;
+	}
+
+	protected MessageProperty getStoredProperty(PropertyDefinition propertyDefinition) {
+		int slot = getSlot(propertyDefinition);
+		return slot < slots.length ? slots[slot] : null;
+	}
+
+	private void removeStoredProperty(int slot) {
+		if (slot < slots.length && slots[slot] != null) {
+			flatSerializedSize = -1;
+			slots[slot] = null;
+			propertyCount--;
+		}
+	}
+
+	private int getSlot(PropertyDefinition propertyDefinition) {
+		if (propertyDefinition.getParent() != objectPropertyDefinition || propertyDefinition.getOrdinal() < 0) {
+			PropertyDefinition ownDefinition = objectPropertyDefinition.getPropertyDefinitionByName(propertyDefinition.getName());
+			if (ownDefinition == null || ownDefinition.getOrdinal() < 0) {
+				throw new RuntimeException("Message model does not contain a field with name:" + propertyDefinition.getName());
+			}
+			return ownDefinition.getOrdinal();
+		}
+		return propertyDefinition.getOrdinal();
+	}
+
+	/**
+	 * Returns true if the property is held in a typed subclass field instead of the generic property store.
+	 */
+	protected boolean isFieldBacked(PropertyDefinition propertyDefinition) {
+		return false;
+	}
+
+	protected boolean hasFieldValue(PropertyDefinition propertyDefinition) {
+		return false;
+	}
+
+	/**
+	 * Returns the boxed value of a typed subclass field, only used by the generic property accessors.
+	 */
+	protected Object getFieldValue(PropertyDefinition propertyDefinition) {
+		return null;
+	}
+
+	/**
+	 * Sets or with a null value resets a typed subclass field, returns false if the property is not field backed.
+	 */
+	protected boolean setFieldValue(PropertyDefinition propertyDefinition, Object value) {
+		return false;
+	}
+
+	protected void writeFieldValue(PropertyDefinition propertyDefinition, DataOutput out, MessageEncoding encoding) throws IOException {
+	}
+
+	protected int getFieldCount() {
+		return 0;
+	}
+
+	protected int getFieldsSerializedSize() {
+		return 0;
+	}
+
+	/**
+	 * Resets all typed subclass fields.
+	 */
+	protected void clearFields() {
+	}
+
+	protected static void checkPropertyType(int typeId, PropertyDefinition propertyDefinition) {
+		if (typeId != propertyDefinition.getType().getId()) {
+			throw new RuntimeException("Message parsing error - property type mismatch: " + PropertyType.getById(typeId) + " <-> " + propertyDefinition.getType());
+		}
 	}
 
 	protected String explain(int level) {
@@ -584,7 +1402,7 @@ public class MessageObject {
 		}
 		sb.append("[").append(objectPropertyDefinition.getObjectUuid()).append("], ").append(objectPropertyDefinition.getType());
 		sb.append(objectPropertyDefinition.getContentType() != PropertyContentType.GENERIC ? ", " + objectPropertyDefinition.getContentType() : "");
-		for (MessageProperty property : properties) {
+		for (MessageProperty property : getProperties()) {
 			sb.append("\n");
 			sb.append(property.explain(level + 1));
 		}
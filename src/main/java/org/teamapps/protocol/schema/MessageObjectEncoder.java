@@ -0,0 +1,64 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.schema;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+import org.teamapps.protocol.file.FileSink;
+
+/**
+ * Writes each message as [int length][message] directly into a pooled (by default direct) buffer.
+ */
+@ChannelHandler.Sharable
+public class MessageObjectEncoder extends MessageToByteEncoder<MessageObject> {
+
+	private final FileSink fileSink;
+	private final MessageEncoding encoding;
+
+	public MessageObjectEncoder() {
+		this(null, null);
+	}
+
+	public MessageObjectEncoder(FileSink fileSink, MessageEncoding encoding) {
+		super(MessageObject.class, true);
+		this.fileSink = fileSink;
+		this.encoding = encoding;
+	}
+
+	@Override
+	protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, MessageObject message, boolean preferDirect) {
+		int initialCapacity = 4 + message.getSerializedSize();
+		return preferDirect ? ctx.alloc().ioBuffer(initialCapacity) : ctx.alloc().heapBuffer(initialCapacity);
+	}
+
+	@Override
+	protected void encode(ChannelHandlerContext ctx, MessageObject message, ByteBuf out) throws Exception {
+		int lengthIndex = out.writerIndex();
+		out.writeInt(0);
+		if (encoding == null || encoding.isDefault()) {
+			message.write(out, fileSink);
+		} else {
+			message.write(out, fileSink, encoding);
+		}
+		out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+	}
+}
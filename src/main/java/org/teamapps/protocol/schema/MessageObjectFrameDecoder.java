@@ -0,0 +1,108 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.schema;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import org.teamapps.protocol.file.FileProvider;
+import org.teamapps.protocol.message.ByteBufInput;
+import org.teamapps.protocol.message.MessageReader;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reads [int length][message] frames written by {@link MessageObjectEncoder} and resolves their models with a {@link ModelRegistry}.
+ * Messages with a decoder in the {@link PojoObjectDecoderRegistry} are emitted as their generated type.
+ */
+public class MessageObjectFrameDecoder extends ByteToMessageDecoder {
+
+	public static final int DEFAULT_MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+	private final ModelRegistry modelRegistry;
+	private final FileProvider fileProvider;
+	private final PojoObjectDecoderRegistry decoderRegistry;
+	private final int maxFrameLength;
+
+	public MessageObjectFrameDecoder(ModelRegistry modelRegistry, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) {
+		this(modelRegistry, fileProvider, decoderRegistry, DEFAULT_MAX_FRAME_LENGTH);
+	}
+
+	public MessageObjectFrameDecoder(ModelRegistry modelRegistry, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry, int maxFrameLength) {
+		this.modelRegistry = modelRegistry;
+		this.fileProvider = fileProvider;
+		this.decoderRegistry = decoderRegistry;
+		this.maxFrameLength = maxFrameLength;
+	}
+
+	@Override
+	protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+		while (in.readableBytes() >= 4) {
+			int length = in.getInt(in.readerIndex());
+			if (length <= 0) {
+				throw new CorruptedFrameException("Invalid message frame length:" + length);
+			}
+			if (length > maxFrameLength) {
+				throw new TooLongFrameException("Message frame length " + length + " exceeds maximum of " + maxFrameLength);
+			}
+			if (in.readableBytes() < 4 + length) {
+				return;
+			}
+			in.skipBytes(4);
+			ByteBuf frame = in.readSlice(length);
+			out.add(decodeFrame(frame));
+			if (frame.isReadable()) {
+				throw new CorruptedFrameException("Message frame contains " + frame.readableBytes() + " unread bytes");
+			}
+		}
+	}
+
+	private MessageObject decodeFrame(ByteBuf frame) throws IOException {
+		MessageEncoding encoding = MessageEncoding.DEFAULT;
+		if (MessageEncoding.isEncodingHeader(frame.getUnsignedByte(frame.readerIndex()))) {
+			encoding = MessageEncoding.fromHeader(frame.readUnsignedByte());
+		}
+		DataInput body = encoding.openBody(new ByteBufInput(frame));
+		MessageModel model = peekModel(frame, body, encoding);
+		PojoObjectDecoder<? extends MessageObject> decoder = decoderRegistry != null ? decoderRegistry.getMessageDecoder(model.getModelUuid()) : null;
+		if (decoder != null) {
+			return decoder.decode(body, model, fileProvider, decoderRegistry, encoding);
+		}
+		return new MessageObject(body, model, fileProvider, decoderRegistry, encoding);
+	}
+
+	private MessageModel peekModel(ByteBuf frame, DataInput body, MessageEncoding encoding) throws IOException {
+		if (body instanceof MessageReader) {
+			MessageReader reader = (MessageReader) body;
+			int position = reader.getPosition();
+			MessageModel model = encoding.readModelHeader(reader, modelRegistry);
+			reader.setPosition(position);
+			return model;
+		}
+		int readerIndex = frame.readerIndex();
+		MessageModel model = encoding.readModelHeader(body, modelRegistry);
+		frame.readerIndex(readerIndex);
+		return model;
+	}
+}
@@ -0,0 +1,64 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.schema;
+
+import java.util.ArrayDeque;
+import java.util.function.Supplier;
+
+/**
+ * Thread-local pool of message instances that are refilled with {@link MessageObject#decodeInto}.
+ * Released messages keep their nested objects and lists so the next decode can reuse them.
+ */
+public class MessageObjectPool<MESSAGE extends MessageObject> {
+
+	public static final int DEFAULT_MAX_SIZE = 64;
+
+	private final Supplier<MESSAGE> factory;
+	private final int maxSize;
+	private final ThreadLocal<ArrayDeque<MESSAGE>> freeMessages = ThreadLocal.withInitial(ArrayDeque::new);
+
+	public MessageObjectPool(Supplier<MESSAGE> factory) {
+		this(factory, DEFAULT_MAX_SIZE);
+	}
+
+	public MessageObjectPool(Supplier<MESSAGE> factory, int maxSize) {
+		this.factory = factory;
+		this.maxSize = maxSize;
+	}
+
+	public MESSAGE acquire() {
+		MESSAGE message = freeMessages.get().pollLast();
+		return message != null ? message : factory.get();
+	}
+
+	public void release(MESSAGE message) {
+		if (message == null) {
+			return;
+		}
+		ArrayDeque<MESSAGE> messages = freeMessages.get();
+		if (messages.size() < maxSize) {
+			messages.addLast(message);
+		}
+	}
+
+	public int getPooledCount() {
+		return freeMessages.get().size();
+	}
+}
@@ -0,0 +1,277 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.schema;
+
+import org.teamapps.protocol.file.FileProvider;
+import org.teamapps.protocol.file.FileSink;
+import org.teamapps.protocol.message.MessageReader;
+import org.teamapps.protocol.message.MessageWriter;
+
+import java.io.IOException;
+import java.util.*;
+
+public class MessagePatch {
+
+	private static final int EDIT_PATCH = 1;
+	private static final int EDIT_REMOVE = 2;
+	private static final int EDIT_INSERT = 3;
+
+	private final MessageModel model;
+	private final List<MessageProperty> changedProperties = new ArrayList<>();
+	private final List<PropertyDefinition> removedProperties = new ArrayList<>();
+	private final Map<PropertyDefinition, MessagePatch> referencePatches = new LinkedHashMap<>();
+	private final Map<PropertyDefinition, List<ListEdit>> listEdits = new LinkedHashMap<>();
+
+	public static MessagePatch create(MessageObject previous, MessageObject current) throws IOException {
+		if (!previous.getModel().getModelUuid().equals(current.getModel().getModelUuid())) {
+			throw new RuntimeException("Cannot create patch for different models:" + previous.getModel().getModelUuid() + ", " + current.getModel().getModelUuid());
+		}
+		MessagePatch patch = new MessagePatch(current.getModel());
+		for (MessageProperty property : current.getProperties()) {
+			PropertyDefinition propertyDefinition = property.getPropertyDefinition();
+			MessageProperty previousProperty = previous.getProperty(propertyDefinition.getName());
+			if (previousProperty == null) {
+				patch.changedProperties.add(property);
+			} else if (propertyDefinition.getType() == PropertyType.OBJECT_SINGLE_REFERENCE) {
+				MessagePatch referencePatch = create(previousProperty.getReferencedObject(), property.getReferencedObject());
+				if (!referencePatch.isEmpty()) {
+					patch.referencePatches.put(propertyDefinition, referencePatch);
+				}
+			} else if (propertyDefinition.getType() == PropertyType.OBJECT_MULTI_REFERENCE) {
+				List<ListEdit> edits = createListEdits(previousProperty.getReferencedObjects(), property.getReferencedObjects());
+				if (!edits.isEmpty()) {
+					patch.listEdits.put(propertyDefinition, edits);
+				}
+			} else if (!Arrays.equals(previousProperty.toBytes(), property.toBytes())) {
+				patch.changedProperties.add(property);
+			}
+		}
+		for (MessageProperty property : previous.getProperties()) {
+			if (current.getProperty(property.getPropertyDefinition().getName()) == null) {
+				patch.removedProperties.add(property.getPropertyDefinition());
+			}
+		}
+		return patch;
+	}
+
+	private static List<ListEdit> createListEdits(List<MessageObject> previous, List<MessageObject> current) throws IOException {
+		previous = previous != null ? previous : Collections.emptyList();
+		current = current != null ? current : Collections.emptyList();
+		int prefix = 0;
+		int maxCommon = Math.min(previous.size(), current.size());
+		while (prefix < maxCommon && isEqual(previous.get(prefix), current.get(prefix))) {
+			prefix++;
+		}
+		int suffix = 0;
+		while (suffix < maxCommon - prefix && isEqual(previous.get(previous.size() - 1 - suffix), current.get(current.size() - 1 - suffix))) {
+			suffix++;
+		}
+		int previousCount = previous.size() - prefix - suffix;
+		int currentCount = current.size() - prefix - suffix;
+		int patchCount = Math.min(previousCount, currentCount);
+		List<ListEdit> edits = new ArrayList<>();
+		for (int i = 0; i < patchCount; i++) {
+			MessagePatch patch = create(previous.get(prefix + i), current.get(prefix + i));
+			if (!patch.isEmpty()) {
+				edits.add(new ListEdit(EDIT_PATCH, prefix + i, 1, patch, null));
+			}
+		}
+		if (previousCount > patchCount) {
+			edits.add(new ListEdit(EDIT_REMOVE, prefix + patchCount, previousCount - patchCount, null, null));
+		}
+		if (currentCount > patchCount) {
+			List<MessageObject> insertedObjects = new ArrayList<>(current.subList(prefix + patchCount, prefix + currentCount));
+			edits.add(new ListEdit(EDIT_INSERT, prefix + patchCount, insertedObjects.size(), null, insertedObjects));
+		}
+		return edits;
+	}
+
+	private static boolean isEqual(MessageObject previous, MessageObject current) throws IOException {
+		return previous.getModel().getModelUuid().equals(current.getModel().getModelUuid()) && Arrays.equals(previous.toBytes(), current.toBytes());
+	}
+
+	public MessagePatch(MessageModel model) {
+		this.model = model;
+	}
+
+	public MessagePatch(byte[] bytes, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		this(new MessageReader(bytes), model, fileProvider, decoderRegistry);
+	}
+
+	public MessagePatch(MessageReader reader, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		this.model = model;
+		int changedCount = reader.readShort();
+		for (int i = 0; i < changedCount; i++) {
+			changedProperties.add(new AbstractMessageProperty(reader, model, fileProvider, decoderRegistry, MessageEncoding.DEFAULT));
+		}
+		int removedCount = reader.readShort();
+		for (int i = 0; i < removedCount; i++) {
+			removedProperties.add(getPropertyDefinition(reader.readShort()));
+		}
+		int referencePatchCount = reader.readShort();
+		for (int i = 0; i < referencePatchCount; i++) {
+			PropertyDefinition propertyDefinition = getPropertyDefinition(reader.readShort());
+			referencePatches.put(propertyDefinition, new MessagePatch(reader, propertyDefinition.getReferencedObject(), fileProvider, decoderRegistry));
+		}
+		int listCount = reader.readShort();
+		for (int i = 0; i < listCount; i++) {
+			PropertyDefinition propertyDefinition = getPropertyDefinition(reader.readShort());
+			ObjectPropertyDefinition referencedObject = propertyDefinition.getReferencedObject();
+			int editCount = reader.readShort();
+			List<ListEdit> edits = new ArrayList<>(editCount);
+			for (int n = 0; n < editCount; n++) {
+				int type = reader.readByte();
+				int index = reader.readInt();
+				int count = reader.readInt();
+				switch (type) {
+					case EDIT_PATCH -> edits.add(new ListEdit(type, index, count, new MessagePatch(reader, referencedObject, fileProvider, decoderRegistry), null));
+					case EDIT_REMOVE -> edits.add(new ListEdit(type, index, count, null, null));
+					case EDIT_INSERT -> {
+						List<MessageObject> insertedObjects = new ArrayList<>(count);
+						for (int k = 0; k < count; k++) {
+							insertedObjects.add(new MessageObject(reader, referencedObject, fileProvider, decoderRegistry));
+						}
+						edits.add(new ListEdit(type, index, count, null, insertedObjects));
+					}
+					default -> throw new RuntimeException("Message parsing error - unknown patch edit type:" + type);
+				}
+			}
+			listEdits.put(propertyDefinition, edits);
+		}
+	}
+
+	private PropertyDefinition getPropertyDefinition(int key) {
+		PropertyDefinition propertyDefinition = model.getPropertyDefinitionByKey(key);
+		if (propertyDefinition == null) {
+			throw new RuntimeException("Message parsing error - unknown property key:" + key);
+		}
+		return propertyDefinition;
+	}
+
+	public boolean isEmpty() {
+		return changedProperties.isEmpty() && removedProperties.isEmpty() && referencePatches.isEmpty() && listEdits.isEmpty();
+	}
+
+	public MessageModel getModel() {
+		return model;
+	}
+
+	public void apply(MessageObject message) {
+		if (!model.getModelUuid().equals(message.getModel().getModelUuid())) {
+			throw new RuntimeException("Cannot apply patch of model " + model.getModelUuid() + " to " + message.getModel().getModelUuid());
+		}
+		for (MessageProperty property : changedProperties) {
+			message.setProperty(property.getPropertyDefinition().getName(), getValue(property));
+		}
+		for (PropertyDefinition propertyDefinition : removedProperties) {
+			message.removeField(propertyDefinition);
+		}
+		for (Map.Entry<PropertyDefinition, MessagePatch> entry : referencePatches.entrySet()) {
+			MessageObject referencedObject = message.getReferencedObject(entry.getKey().getName());
+			if (referencedObject == null) {
+				throw new RuntimeException("Cannot apply patch, missing referenced object:" + entry.getKey().getName());
+			}
+			entry.getValue().apply(referencedObject);
+		}
+		for (Map.Entry<PropertyDefinition, List<ListEdit>> entry : listEdits.entrySet()) {
+			String name = entry.getKey().getName();
+			List<MessageObject> referencedObjects = message.getReferencedObjects(name);
+			List<MessageObject> objects = referencedObjects != null ? new ArrayList<>(referencedObjects) : new ArrayList<>();
+			for (ListEdit edit : entry.getValue()) {
+				switch (edit.type) {
+					case EDIT_PATCH -> edit.patch.apply(objects.get(edit.index));
+					case EDIT_REMOVE -> objects.subList(edit.index, edit.index + edit.count).clear();
+					case EDIT_INSERT -> objects.addAll(edit.index, edit.objects);
+				}
+			}
+			message.setProperty(name, objects.isEmpty() ? null : objects);
+		}
+	}
+
+	private static Object getValue(MessageProperty property) {
+		if (property instanceof LazyMessageProperty) {
+			return ((LazyMessageProperty) property).getDecodedProperty().getValue();
+		}
+		return ((AbstractMessageProperty) property).getValue();
+	}
+
+	public void write(MessageWriter writer, FileSink fileSink) throws IOException {
+		writer.writeShort(changedProperties.size());
+		for (MessageProperty property : changedProperties) {
+			property.writeEncoded(writer, fileSink, MessageEncoding.DEFAULT);
+		}
+		writer.writeShort(removedProperties.size());
+		for (PropertyDefinition propertyDefinition : removedProperties) {
+			writer.writeShort(propertyDefinition.getKey());
+		}
+		writer.writeShort(referencePatches.size());
+		for (Map.Entry<PropertyDefinition, MessagePatch> entry : referencePatches.entrySet()) {
+			writer.writeShort(entry.getKey().getKey());
+			entry.getValue().write(writer, fileSink);
+		}
+		writer.writeShort(listEdits.size());
+		for (Map.Entry<PropertyDefinition, List<ListEdit>> entry : listEdits.entrySet()) {
+			writer.writeShort(entry.getKey().getKey());
+			writer.writeShort(entry.getValue().size());
+			for (ListEdit edit : entry.getValue()) {
+				writer.writeByte(edit.type);
+				writer.writeInt(edit.index);
+				writer.writeInt(edit.count);
+				if (edit.type == EDIT_PATCH) {
+					edit.patch.write(writer, fileSink);
+				} else if (edit.type == EDIT_INSERT) {
+					for (MessageObject object : edit.objects) {
+						object.write(writer, fileSink);
+					}
+				}
+			}
+		}
+	}
+
+	public byte[] toBytes() throws IOException {
+		return toBytes(null);
+	}
+
+	public byte[] toBytes(FileSink fileSink) throws IOException {
+		MessageWriter writer = MessageWriter.acquire();
+		try {
+			write(writer, fileSink);
+			return writer.copyBytes();
+		} finally {
+			writer.release();
+		}
+	}
+
+	private static class ListEdit {
+		private final int type;
+		private final int index;
+		private final int count;
+		private final MessagePatch patch;
+		private final List<MessageObject> objects;
+
+		private ListEdit(int type, int index, int count, MessagePatch patch, List<MessageObject> objects) {
+			this.type = type;
+			this.index = index;
+			this.count = count;
+			this.patch = patch;
+			this.objects = objects;
+		}
+	}
+}
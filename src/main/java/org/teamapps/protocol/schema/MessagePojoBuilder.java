@@ -26,6 +26,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 public class MessagePojoBuilder {
 
@@ -181,8 +184,14 @@ public class MessagePojoBuilder {
 		tpl = setValue(tpl, "uuid", objDef.getObjectUuid());
 		StringBuilder data = new StringBuilder();
 
+		List<PropertyDefinition> fieldDefinitions = getFieldDefinitions(objDef);
 		for (PropertyDefinition propDef : objDef.getPropertyDefinitions()) {
 			String objectReferenceWithType = propDef.isReferenceProperty() ? "AsType" : "";
+			int fieldIndex = fieldDefinitions.indexOf(propDef);
+			if (fieldIndex >= 0) {
+				appendFieldAccessors(data, objDef, propDef, fieldIndex);
+				continue;
+			}
 			data.append(getTabs(1))
 					.append("public ")
 					.append(getReturnType(propDef))
@@ -190,7 +199,7 @@ public class MessagePojoBuilder {
 					.append(firstUpperCase(propDef.getName())).append("() {\n")
 					.append(getTabs(2))
 					.append("return get").append(getGetterSetterMethodName(propDef)).append(objectReferenceWithType).append("(")
-					.append(withQuotes(propDef.getName())).append(");\n")
+					.append(getConstantName(propDef)).append(");\n")
 					.append(getTabs(1))
 					.append("}\n\n");
 
@@ -202,7 +211,7 @@ public class MessagePojoBuilder {
 					.append(getReturnType(propDef)).append(" value) {\n")
 					.append(getTabs(2))
 					.append("set").append(getGetterSetterMethodName(propDef)).append(objectReferenceWithType).append("(")
-					.append(withQuotes(propDef.getName())).append(", value);\n")
+					.append(getConstantName(propDef)).append(", value);\n")
 					.append(getTabs(2))
 					.append("return this;\n")
 					.append(getTabs(1))
@@ -214,7 +223,7 @@ public class MessagePojoBuilder {
 						.append(firstUpperCase(propDef.getName())).append("AsFile").append("() {\n")
 						.append(getTabs(2))
 						.append("return get").append("FilePropertyAsFile").append("(")
-						.append(withQuotes(propDef.getName())).append(");\n")
+						.append(getConstantName(propDef)).append(");\n")
 						.append(getTabs(1))
 						.append("}\n\n");
 
@@ -223,7 +232,7 @@ public class MessagePojoBuilder {
 						.append(firstUpperCase(propDef.getName())).append("AsFileName").append("() {\n")
 						.append(getTabs(2))
 						.append("return get").append("FilePropertyAsFileName").append("(")
-						.append(withQuotes(propDef.getName())).append(");\n")
+						.append(getConstantName(propDef)).append(");\n")
 						.append(getTabs(1))
 						.append("}\n\n");
 
@@ -232,7 +241,7 @@ public class MessagePojoBuilder {
 						.append(firstUpperCase(propDef.getName())).append("AsFileLength").append("() {\n")
 						.append(getTabs(2))
 						.append("return get").append("FilePropertyAsFileLength").append("(")
-						.append(withQuotes(propDef.getName())).append(");\n")
+						.append(getConstantName(propDef)).append(");\n")
 						.append(getTabs(1))
 						.append("}\n\n");
 
@@ -245,7 +254,7 @@ public class MessagePojoBuilder {
 						.append("File").append(" value) {\n")
 						.append(getTabs(2))
 						.append("set").append(getGetterSetterMethodName(propDef)).append("(")
-						.append(withQuotes(propDef.getName())).append(", value);\n")
+						.append(getConstantName(propDef)).append(", value);\n")
 						.append(getTabs(2))
 						.append("return this;\n")
 						.append(getTabs(1))
@@ -273,12 +282,482 @@ public class MessagePojoBuilder {
 			}
 		}
 
+		tpl = setValue(tpl, "constants", createPropertyConstants(objDef));
+		tpl = setValue(tpl, "fields", createFields(fieldDefinitions));
+		tpl = setValue(tpl, "serializers", createFieldHooks(fieldDefinitions) + createSerializers(objDef, fieldDefinitions));
 		tpl = setValue(tpl, "methods", data.toString());
 		File file = new File(directory, firstUpperCase(objDef.getName()) + ".java");
 		Files.writeString(file.toPath(), tpl);
 		System.out.println("Write pojo:" + file.getPath());
 	}
 
+	private static String createPropertyConstants(ObjectPropertyDefinition objDef) {
+		StringBuilder data = new StringBuilder();
+		for (PropertyDefinition propDef : getKeyOrderedDefinitions(objDef)) {
+			data.append(getTabs(1))
+					.append("public final static PropertyDefinition ").append(getConstantName(propDef))
+					.append(" = getMessageModel().getPropertyDefinitionByName(").append(withQuotes(propDef.getName())).append(");\n");
+		}
+		return data.toString();
+	}
+
+	private static String createFields(List<PropertyDefinition> fieldDefinitions) {
+		if (fieldDefinitions.isEmpty()) {
+			return "";
+		}
+		StringBuilder data = new StringBuilder();
+		for (int i = 0; i < fieldDefinitions.size(); i += 64) {
+			data.append(getTabs(1)).append("private long ").append(getPresenceName(i)).append(";\n");
+		}
+		for (PropertyDefinition propDef : fieldDefinitions) {
+			data.append(getTabs(1)).append("private ").append(getReturnType(propDef)).append(" ").append(getFieldName(propDef)).append(";\n");
+		}
+		return data.toString();
+	}
+
+	private static void appendFieldAccessors(StringBuilder data, ObjectPropertyDefinition objDef, PropertyDefinition propDef, int fieldIndex) {
+		String fieldName = getFieldName(propDef);
+		data.append(getTabs(1)).append("public ").append(getReturnType(propDef)).append(" ")
+				.append(propDef.getType() == PropertyType.BOOLEAN ? "is" : "get").append(firstUpperCase(propDef.getName())).append("() {\n");
+		data.append(getTabs(2)).append("return ").append(fieldName).append(";\n");
+		data.append(getTabs(1)).append("}\n\n");
+
+		data.append(getTabs(1)).append("public ").append(firstUpperCase(objDef.getName())).append(" set").append(firstUpperCase(propDef.getName()))
+				.append("(").append(getReturnType(propDef)).append(" value) {\n");
+		data.append(getTabs(2)).append(fieldName).append(" = value;\n");
+		data.append(getTabs(2)).append(getPresenceName(fieldIndex)).append(" |= ").append(getFieldBit(fieldIndex)).append(";\n");
+		data.append(getTabs(2)).append("return this;\n");
+		data.append(getTabs(1)).append("}\n\n");
+	}
+
+	private static String createFieldHooks(List<PropertyDefinition> fieldDefinitions) {
+		if (fieldDefinitions.isEmpty()) {
+			return "";
+		}
+		StringBuilder data = new StringBuilder();
+		data.append(getTabs(1)).append("@Override\n");
+		data.append(getTabs(1)).append("protected boolean isFieldBacked(PropertyDefinition propertyDefinition) {\n");
+		data.append(getTabs(2)).append("return switch (propertyDefinition.getKey()) {\n");
+		data.append(getTabs(3)).append("case ");
+		for (int i = 0; i < fieldDefinitions.size(); i++) {
+			data.append(i > 0 ? ", " : "").append(fieldDefinitions.get(i).getKey());
+		}
+		data.append(" -> true;\n");
+		data.append(getTabs(3)).append("default -> false;\n");
+		data.append(getTabs(2)).append("};\n");
+		data.append(getTabs(1)).append("}\n\n");
+
+		data.append(getTabs(1)).append("@Override\n");
+		data.append(getTabs(1)).append("protected boolean hasFieldValue(PropertyDefinition propertyDefinition) {\n");
+		data.append(getTabs(2)).append("return switch (propertyDefinition.getKey()) {\n");
+		for (int i = 0; i < fieldDefinitions.size(); i++) {
+			data.append(getTabs(3)).append("case ").append(fieldDefinitions.get(i).getKey()).append(" -> ").append(getPresenceCheck(i)).append(";\n");
+		}
+		data.append(getTabs(3)).append("default -> false;\n");
+		data.append(getTabs(2)).append("};\n");
+		data.append(getTabs(1)).append("}\n\n");
+
+		data.append(getTabs(1)).append("@Override\n");
+		data.append(getTabs(1)).append("protected Object getFieldValue(PropertyDefinition propertyDefinition) {\n");
+		data.append(getTabs(2)).append("return switch (propertyDefinition.getKey()) {\n");
+		for (PropertyDefinition propDef : fieldDefinitions) {
+			data.append(getTabs(3)).append("case ").append(propDef.getKey()).append(" -> ").append(getFieldName(propDef)).append(";\n");
+		}
+		data.append(getTabs(3)).append("default -> null;\n");
+		data.append(getTabs(2)).append("};\n");
+		data.append(getTabs(1)).append("}\n\n");
+
+		data.append(getTabs(1)).append("@Override\n");
+		data.append(getTabs(1)).append("protected boolean setFieldValue(PropertyDefinition propertyDefinition, Object value) {\n");
+		data.append(getTabs(2)).append("switch (propertyDefinition.getKey()) {\n");
+		for (int i = 0; i < fieldDefinitions.size(); i++) {
+			PropertyDefinition propDef = fieldDefinitions.get(i);
+			String defaultValue = propDef.getType() == PropertyType.BOOLEAN ? "false" : "0";
+			data.append(getTabs(3)).append("case ").append(propDef.getKey()).append(" -> {\n");
+			data.append(getTabs(4)).append(getFieldName(propDef)).append(" = value != null ? (").append(getReturnType(propDef)).append(") value : ").append(defaultValue).append(";\n");
+			data.append(getTabs(4)).append(getPresenceName(i)).append(" = value != null ? ").append(getPresenceName(i)).append(" | ").append(getFieldBit(i))
+					.append(" : ").append(getPresenceName(i)).append(" & ~").append(getFieldBit(i)).append(";\n");
+			data.append(getTabs(4)).append("return true;\n");
+			data.append(getTabs(3)).append("}\n");
+		}
+		data.append(getTabs(3)).append("default -> {\n");
+		data.append(getTabs(4)).append("return false;\n");
+		data.append(getTabs(3)).append("}\n");
+		data.append(getTabs(2)).append("}\n");
+		data.append(getTabs(1)).append("}\n\n");
+
+		data.append(getTabs(1)).append("@Override\n");
+		data.append(getTabs(1)).append("protected void writeFieldValue(PropertyDefinition propertyDefinition, DataOutput out, MessageEncoding encoding) throws IOException {\n");
+		data.append(getTabs(2)).append("switch (propertyDefinition.getKey()) {\n");
+		for (PropertyDefinition propDef : fieldDefinitions) {
+			data.append(getTabs(3)).append("case ").append(propDef.getKey()).append(" -> ").append(getWriteFieldStatement(propDef, "encoding")).append("\n");
+		}
+		data.append(getTabs(2)).append("}\n");
+		data.append(getTabs(1)).append("}\n\n");
+
+		data.append(getTabs(1)).append("@Override\n");
+		data.append(getTabs(1)).append("protected int getFieldCount() {\n");
+		data.append(getTabs(2)).append("return ");
+		for (int i = 0; i < fieldDefinitions.size(); i += 64) {
+			data.append(i > 0 ? " + " : "").append("Long.bitCount(").append(getPresenceName(i)).append(")");
+		}
+		data.append(";\n");
+		data.append(getTabs(1)).append("}\n\n");
+
+		data.append(getTabs(1)).append("@Override\n");
+		data.append(getTabs(1)).append("protected int getFieldsSerializedSize() {\n");
+		data.append(getTabs(2)).append("int size = 0;\n");
+		for (int i = 0; i < fieldDefinitions.size(); i++) {
+			data.append(getTabs(2)).append("if (").append(getPresenceCheck(i)).append(") {\n");
+			data.append(getTabs(3)).append("size += ").append(3 + getFieldValueSize(fieldDefinitions.get(i))).append(";\n");
+			data.append(getTabs(2)).append("}\n");
+		}
+		data.append(getTabs(2)).append("return size;\n");
+		data.append(getTabs(1)).append("}\n\n");
+
+		data.append(getTabs(1)).append("@Override\n");
+		data.append(getTabs(1)).append("protected void clearFields() {\n");
+		for (int i = 0; i < fieldDefinitions.size(); i += 64) {
+			data.append(getTabs(2)).append(getPresenceName(i)).append(" = 0;\n");
+		}
+		for (PropertyDefinition propDef : fieldDefinitions) {
+			data.append(getTabs(2)).append(getFieldName(propDef)).append(" = ").append(propDef.getType() == PropertyType.BOOLEAN ? "false" : "0").append(";\n");
+		}
+		data.append(getTabs(1)).append("}\n\n");
+		return data.toString();
+	}
+
+	private static String createSerializers(ObjectPropertyDefinition objDef, List<PropertyDefinition> fieldDefinitions) {
+		String type = firstUpperCase(objDef.getName());
+		StringBuilder data = new StringBuilder();
+		for (String receiver : new String[]{"DataOutput", "DataOutputStream", "MessageWriter", "ByteBuf"}) {
+			appendWriteMethod(data, objDef, fieldDefinitions, receiver);
+		}
+		appendWriteEncodedMethod(data, objDef, fieldDefinitions);
+
+		data.append(getTabs(1)).append("public static ").append(type).append(" readMessage(ByteBuf in, FileProvider fileProvider) throws IOException {\n");
+		data.append(getTabs(2)).append("if (MessageEncoding.isEncodingHeader(in.getUnsignedByte(in.readerIndex()))) {\n");
+		data.append(getTabs(3)).append("return readMessage((DataInput) new ByteBufInput(in), fileProvider);\n");
+		data.append(getTabs(2)).append("}\n");
+		data.append(getTabs(2)).append("return readProperties(in, fileProvider, MessageUtils.readString(in));\n");
+		data.append(getTabs(1)).append("}\n\n");
+
+		data.append(getTabs(1)).append("public static ").append(type).append(" readMessage(MessageReader in, FileProvider fileProvider) throws IOException {\n");
+		data.append(getTabs(2)).append("if (MessageEncoding.isEncodingHeader(in.peekUnsignedByte())) {\n");
+		data.append(getTabs(3)).append("return readMessage((DataInput) in, fileProvider);\n");
+		data.append(getTabs(2)).append("}\n");
+		data.append(getTabs(2)).append("return readProperties(in, fileProvider, MessageUtils.readString(in));\n");
+		data.append(getTabs(1)).append("}\n\n");
+
+		data.append(getTabs(1)).append("public static ").append(type).append(" readMessage(DataInput in, FileProvider fileProvider) throws IOException {\n");
+		data.append(getTabs(2)).append("int firstByte = in.readUnsignedByte();\n");
+		data.append(getTabs(2)).append("if (MessageEncoding.isEncodingHeader(firstByte)) {\n");
+		data.append(getTabs(3)).append("MessageEncoding encoding = MessageEncoding.fromHeader(firstByte);\n");
+		data.append(getTabs(3)).append("return readEncoded(encoding.openBody(in), fileProvider, encoding, SharedReferences.create(encoding));\n");
+		data.append(getTabs(2)).append("}\n");
+		data.append(getTabs(2)).append("return readProperties(in, fileProvider, MessageUtils.readString(in, firstByte));\n");
+		data.append(getTabs(1)).append("}\n\n");
+
+		for (String receiver : new String[]{"DataInput", "MessageReader", "ByteBuf"}) {
+			appendReadPropertiesMethod(data, objDef, fieldDefinitions, receiver);
+		}
+		appendReadEncodedMethod(data, objDef, fieldDefinitions);
+		return data.toString();
+	}
+
+	/**
+	 * Writes the default encoding with calls on the concrete output type so that the calls are not dispatched through {@link java.io.DataOutput}.
+	 */
+	private static void appendWriteMethod(StringBuilder data, ObjectPropertyDefinition objDef, List<PropertyDefinition> fieldDefinitions, String receiver) {
+		data.append(getTabs(1)).append("@Override\n");
+		data.append(getTabs(1)).append("public void write(").append(receiver).append(" out, FileSink fileSink) throws IOException {\n");
+		data.append(getTabs(2)).append("if (getModel() != MESSAGE_MODEL) {\n");
+		data.append(getTabs(3)).append("super.write(out, fileSink);\n");
+		data.append(getTabs(3)).append("return;\n");
+		data.append(getTabs(2)).append("}\n");
+		data.append(getTabs(2)).append(getStringWriter(receiver)).append("(out, OBJECT_UUID);\n");
+		data.append(getTabs(2)).append("out.writeShort(MODEL_VERSION);\n");
+		data.append(getTabs(2)).append("MessageProperty property;\n");
+		data.append(getTabs(2)).append("out.writeShort(getStoredPropertyCount()").append(fieldDefinitions.isEmpty() ? "" : " + getFieldCount()").append(");\n");
+		for (PropertyDefinition propDef : getKeyOrderedDefinitions(objDef)) {
+			int fieldIndex = fieldDefinitions.indexOf(propDef);
+			if (fieldIndex >= 0) {
+				data.append(getTabs(2)).append("if (").append(getPresenceCheck(fieldIndex)).append(") {\n");
+				data.append(getTabs(3)).append("out.writeByte(").append(propDef.getType().getId()).append(");\n");
+				data.append(getTabs(3)).append("out.writeShort(").append(propDef.getKey()).append(");\n");
+				data.append(getTabs(3)).append("out.write").append(getFieldIoName(propDef)).append("(").append(getFieldName(propDef)).append(");\n");
+				data.append(getTabs(2)).append("}\n");
+				continue;
+			}
+			data.append(getTabs(2)).append("property = getStoredProperty(").append(getConstantName(propDef)).append(");\n");
+			data.append(getTabs(2)).append("if (property != null) {\n");
+			if (propDef.getType() == PropertyType.OBJECT) {
+				data.append(getTabs(3)).append("property.writeEncoded(").append(getDataOutput(receiver)).append(", fileSink, MessageEncoding.DEFAULT);\n");
+			} else {
+				data.append(getTabs(3)).append("out.writeByte(").append(propDef.getType().getId()).append(");\n");
+				data.append(getTabs(3)).append("out.writeShort(").append(propDef.getKey()).append(");\n");
+				appendWriteValue(data, propDef, receiver, 3);
+			}
+			data.append(getTabs(2)).append("}\n");
+		}
+		data.append(getTabs(1)).append("}\n\n");
+	}
+
+	private static void appendWriteEncodedMethod(StringBuilder data, ObjectPropertyDefinition objDef, List<PropertyDefinition> fieldDefinitions) {
+		List<PropertyDefinition> definitions = getKeyOrderedDefinitions(objDef);
+		data.append(getTabs(1)).append("@Override\n");
+		data.append(getTabs(1)).append("protected void writeEncoded(DataOutput out, FileSink fileSink, MessageEncoding encoding, SharedReferences references) throws IOException {\n");
+		data.append(getTabs(2)).append("if (getModel() != MESSAGE_MODEL) {\n");
+		data.append(getTabs(3)).append("super.writeEncoded(out, fileSink, encoding, references);\n");
+		data.append(getTabs(3)).append("return;\n");
+		data.append(getTabs(2)).append("}\n");
+		data.append(getTabs(2)).append("encoding.writeModelHeader(out, MESSAGE_MODEL);\n");
+		data.append(getTabs(2)).append("MessageProperty property;\n");
+		data.append(getTabs(2)).append("if (encoding.isFixedLayout()) {\n");
+		data.append(getTabs(3)).append("byte[] presence = new byte[").append((definitions.size() + 7) / 8).append("];\n");
+		for (int i = 0; i < definitions.size(); i++) {
+			PropertyDefinition propDef = definitions.get(i);
+			int fieldIndex = fieldDefinitions.indexOf(propDef);
+			String check = fieldIndex >= 0 ? getPresenceCheck(fieldIndex) : "getStoredProperty(" + getConstantName(propDef) + ") != null";
+			data.append(getTabs(3)).append("if (").append(check).append(") {\n");
+			data.append(getTabs(4)).append("presence[").append(i >>> 3).append("] |= ").append(1 << (i & 7)).append(";\n");
+			data.append(getTabs(3)).append("}\n");
+		}
+		data.append(getTabs(3)).append("encoding.writePresence(out, presence, ").append(definitions.size()).append(");\n");
+		for (PropertyDefinition propDef : definitions) {
+			int fieldIndex = fieldDefinitions.indexOf(propDef);
+			if (fieldIndex >= 0) {
+				data.append(getTabs(3)).append("if (").append(getPresenceCheck(fieldIndex)).append(") {\n");
+				data.append(getTabs(4)).append(getWriteFieldStatement(propDef, "encoding")).append("\n");
+			} else {
+				data.append(getTabs(3)).append("property = getStoredProperty(").append(getConstantName(propDef)).append(");\n");
+				data.append(getTabs(3)).append("if (property != null) {\n");
+				data.append(getTabs(4)).append("writeEncodedValue(property, out, fileSink, encoding, references);\n");
+			}
+			data.append(getTabs(3)).append("}\n");
+		}
+		data.append(getTabs(3)).append("return;\n");
+		data.append(getTabs(2)).append("}\n");
+		data.append(getTabs(2)).append("encoding.writePropertyCount(out, getStoredPropertyCount()").append(fieldDefinitions.isEmpty() ? "" : " + getFieldCount()").append(");\n");
+		for (PropertyDefinition propDef : definitions) {
+			int fieldIndex = fieldDefinitions.indexOf(propDef);
+			if (fieldIndex >= 0) {
+				data.append(getTabs(2)).append("if (").append(getPresenceCheck(fieldIndex)).append(") {\n");
+				data.append(getTabs(3)).append("out.writeByte(").append(propDef.getType().getId()).append(");\n");
+				data.append(getTabs(3)).append("encoding.writeKey(out, ").append(propDef.getKey()).append(");\n");
+				data.append(getTabs(3)).append(getWriteFieldStatement(propDef, "encoding")).append("\n");
+			} else {
+				data.append(getTabs(2)).append("property = getStoredProperty(").append(getConstantName(propDef)).append(");\n");
+				data.append(getTabs(2)).append("if (property != null) {\n");
+				data.append(getTabs(3)).append("property.writeEncoded(out, fileSink, encoding, references);\n");
+			}
+			data.append(getTabs(2)).append("}\n");
+		}
+		data.append(getTabs(1)).append("}\n\n");
+	}
+
+	private static void appendReadPropertiesMethod(StringBuilder data, ObjectPropertyDefinition objDef, List<PropertyDefinition> fieldDefinitions, String receiver) {
+		String type = firstUpperCase(objDef.getName());
+		data.append(getTabs(1)).append("private static ").append(type).append(" readProperties(").append(receiver).append(" in, FileProvider fileProvider, String objectUuid) throws IOException {\n");
+		data.append(getTabs(2)).append("if (!OBJECT_UUID.equals(objectUuid)) {\n");
+		data.append(getTabs(3)).append("throw new RuntimeException(\"Cannot parse message with wrong model:\" + objectUuid + \", expected:\" + OBJECT_UUID);\n");
+		data.append(getTabs(2)).append("}\n");
+		data.append(getTabs(2)).append("short modelVersion = in.readShort();\n");
+		data.append(getTabs(2)).append("if (modelVersion != MODEL_VERSION) {\n");
+		data.append(getTabs(3)).append("LOGGER.warn(\"Decoding message of model version {} with model {}, version {}\", modelVersion, OBJECT_UUID, MODEL_VERSION);\n");
+		data.append(getTabs(2)).append("}\n");
+		data.append(getTabs(2)).append(type).append(" message = new ").append(type).append("();\n");
+		data.append(getTabs(2)).append("int propertyCount = in.readShort();\n");
+		data.append(getTabs(2)).append("for (int i = 0; i < propertyCount; i++) {\n");
+		data.append(getTabs(3)).append("int type = in.readByte();\n");
+		data.append(getTabs(3)).append("int key = in.readShort();\n");
+		data.append(getTabs(3)).append("switch (key) {\n");
+		for (PropertyDefinition propDef : getKeyOrderedDefinitions(objDef)) {
+			if (propDef.getType() == PropertyType.OBJECT) {
+				continue;
+			}
+			String constantName = getConstantName(propDef);
+			data.append(getTabs(4)).append("case ").append(propDef.getKey()).append(" -> {\n");
+			data.append(getTabs(5)).append("checkPropertyType(type, ").append(constantName).append(");\n");
+			if (propDef.getType() == PropertyType.OBJECT_MULTI_REFERENCE) {
+				data.append(getTabs(5)).append("int messageCount = in.readInt();\n");
+				data.append(getTabs(5)).append("List<MessageObject> messages = new ArrayList<>(messageCount);\n");
+				data.append(getTabs(5)).append("for (int n = 0; n < messageCount; n++) {\n");
+				data.append(getTabs(6)).append("messages.add(").append(firstUpperCase(propDef.getReferencedObject().getName())).append(".readMessage(in, fileProvider));\n");
+				data.append(getTabs(5)).append("}\n");
+				data.append(getTabs(5)).append("message.addProperty(new AbstractMessageProperty(").append(constantName).append(", messages));\n");
+			} else if (fieldDefinitions.contains(propDef)) {
+				data.append(getTabs(5)).append("message.").append(getFieldName(propDef)).append(" = in.read").append(getFieldIoName(propDef)).append("();\n");
+				data.append(getTabs(5)).append("message.").append(getPresenceName(fieldDefinitions.indexOf(propDef))).append(" |= ").append(getFieldBit(fieldDefinitions.indexOf(propDef))).append(";\n");
+			} else {
+				data.append(getTabs(5)).append("message.addProperty(new AbstractMessageProperty(").append(constantName).append(", ").append(getReadValueExpression(propDef, receiver)).append("));\n");
+			}
+			data.append(getTabs(4)).append("}\n");
+		}
+		data.append(getTabs(4)).append("default -> MessageEncoding.DEFAULT.skipUnknownValue(").append(getDataInput(receiver)).append(", PropertyType.getById(type));\n");
+		data.append(getTabs(3)).append("}\n");
+		data.append(getTabs(2)).append("}\n");
+		data.append(getTabs(2)).append("return message;\n");
+		data.append(getTabs(1)).append("}\n\n");
+	}
+
+	private static void appendReadEncodedMethod(StringBuilder data, ObjectPropertyDefinition objDef, List<PropertyDefinition> fieldDefinitions) {
+		String type = firstUpperCase(objDef.getName());
+		List<PropertyDefinition> definitions = getKeyOrderedDefinitions(objDef);
+		data.append(getTabs(1)).append("private static ").append(type).append(" readEncoded(DataInput in, FileProvider fileProvider, MessageEncoding encoding, SharedReferences references) throws IOException {\n");
+		data.append(getTabs(2)).append("encoding.skipModelHeader(in, MESSAGE_MODEL);\n");
+		data.append(getTabs(2)).append(type).append(" message = new ").append(type).append("();\n");
+		data.append(getTabs(2)).append("if (encoding.isFixedLayout()) {\n");
+		data.append(getTabs(3)).append("byte[] presence = encoding.readPresence(in, ").append(definitions.size()).append(");\n");
+		for (int i = 0; i < definitions.size(); i++) {
+			PropertyDefinition propDef = definitions.get(i);
+			data.append(getTabs(3)).append("if (MessageEncoding.isPresent(presence, ").append(i).append(")) {\n");
+			appendReadEncodedValue(data, propDef, fieldDefinitions, getConstantName(propDef) + ".getType()", 4);
+			data.append(getTabs(3)).append("}\n");
+		}
+		data.append(getTabs(3)).append("return message;\n");
+		data.append(getTabs(2)).append("}\n");
+		data.append(getTabs(2)).append("int propertyCount = encoding.readPropertyCount(in);\n");
+		data.append(getTabs(2)).append("for (int i = 0; i < propertyCount; i++) {\n");
+		data.append(getTabs(3)).append("int type = in.readByte();\n");
+		data.append(getTabs(3)).append("switch (encoding.readKey(in)) {\n");
+		for (PropertyDefinition propDef : definitions) {
+			data.append(getTabs(4)).append("case ").append(propDef.getKey()).append(" -> {\n");
+			data.append(getTabs(5)).append("checkPropertyType(type, ").append(getConstantName(propDef)).append(");\n");
+			appendReadEncodedValue(data, propDef, fieldDefinitions, "PropertyType.getById(type)", 5);
+			data.append(getTabs(4)).append("}\n");
+		}
+		data.append(getTabs(4)).append("default -> encoding.skipUnknownValue(in, PropertyType.getById(type));\n");
+		data.append(getTabs(3)).append("}\n");
+		data.append(getTabs(2)).append("}\n");
+		data.append(getTabs(2)).append("return message;\n");
+		data.append(getTabs(1)).append("}\n\n");
+	}
+
+	private static void appendReadEncodedValue(StringBuilder data, PropertyDefinition propDef, List<PropertyDefinition> fieldDefinitions, String typeExpression, int tabs) {
+		int fieldIndex = fieldDefinitions.indexOf(propDef);
+		if (fieldIndex < 0) {
+			data.append(getTabs(tabs)).append("message.readProperty(").append(getConstantName(propDef)).append(", ").append(typeExpression).append(", in, fileProvider, decoder.getDecoderRegistry(), encoding, references);\n");
+			return;
+		}
+		String readExpression = switch (propDef.getType()) {
+			case INT, ENUM -> "encoding.readInt(in)";
+			case LONG -> "encoding.readLong(in)";
+			default -> "in.read" + getFieldIoName(propDef) + "()";
+		};
+		data.append(getTabs(tabs)).append("message.").append(getFieldName(propDef)).append(" = ").append(readExpression).append(";\n");
+		data.append(getTabs(tabs)).append("message.").append(getPresenceName(fieldIndex)).append(" |= ").append(getFieldBit(fieldIndex)).append(";\n");
+	}
+
+	private static void appendWriteValue(StringBuilder data, PropertyDefinition propDef, String receiver, int tabs) {
+		switch (propDef.getType()) {
+			case OBJECT_SINGLE_REFERENCE -> data.append(getTabs(tabs)).append("property.getReferencedObject().write(out, fileSink);\n");
+			case OBJECT_MULTI_REFERENCE -> {
+				data.append(getTabs(tabs)).append("List<MessageObject> messages = property.getReferencedObjects();\n");
+				data.append(getTabs(tabs)).append("if (messages == null || messages.isEmpty()) {\n");
+				data.append(getTabs(tabs + 1)).append("out.writeInt(0);\n");
+				data.append(getTabs(tabs)).append("} else {\n");
+				data.append(getTabs(tabs + 1)).append("out.writeInt(messages.size());\n");
+				data.append(getTabs(tabs + 1)).append("for (MessageObject message : messages) {\n");
+				data.append(getTabs(tabs + 2)).append("message.write(out, fileSink);\n");
+				data.append(getTabs(tabs + 1)).append("}\n");
+				data.append(getTabs(tabs)).append("}\n");
+			}
+			case BOOLEAN, BYTE, INT, LONG, FLOAT, DOUBLE, ENUM -> data.append(getTabs(tabs)).append("out.write").append(getFieldIoName(propDef))
+					.append("(property.get").append(getGetterSetterMethodName(propDef)).append("());\n");
+			case STRING -> data.append(getTabs(tabs)).append(getStringWriter(receiver)).append("(out, property.getStringProperty());\n");
+			case FILE -> data.append(getTabs(tabs)).append("MessageEncoding.DEFAULT.writeFileProperty(").append(getDataOutput(receiver)).append(", property.getFileProperty(), fileSink);\n");
+			default -> data.append(getTabs(tabs)).append("MessageEncoding.DEFAULT.write").append(getGetterSetterMethodName(propDef).replace("Property", ""))
+					.append("(").append(getDataOutput(receiver)).append(", property.get").append(getGetterSetterMethodName(propDef)).append("());\n");
+		}
+	}
+
+	private static String getReadValueExpression(PropertyDefinition propDef, String receiver) {
+		return switch (propDef.getType()) {
+			case OBJECT_SINGLE_REFERENCE -> firstUpperCase(propDef.getReferencedObject().getName()) + ".readMessage(in, fileProvider)";
+			case BOOLEAN, BYTE, INT, LONG, FLOAT, DOUBLE, ENUM -> "in.read" + getFieldIoName(propDef) + "()";
+			case STRING -> receiver.equals("DataInput") ? "MessageEncoding.DEFAULT.readString(in)" : "MessageUtils.readString(in)";
+			case FILE -> "MessageEncoding.DEFAULT.readFileProperty(" + getDataInput(receiver) + ", fileProvider)";
+			default -> "MessageEncoding.DEFAULT.read" + getGetterSetterMethodName(propDef).replace("Property", "") + "(" + getDataInput(receiver) + ")";
+		};
+	}
+
+	private static String getStringWriter(String receiver) {
+		return receiver.equals("DataOutput") ? "MessageEncoding.DEFAULT.writeString" : "MessageUtils.writeString";
+	}
+
+	private static String getDataOutput(String receiver) {
+		return receiver.equals("ByteBuf") ? "new ByteBufOutputStream(out)" : "out";
+	}
+
+	private static String getDataInput(String receiver) {
+		return receiver.equals("ByteBuf") ? "new ByteBufInput(in)" : "in";
+	}
+
+	private static String getFieldIoName(PropertyDefinition propDef) {
+		return propDef.getType() == PropertyType.ENUM ? "Int" : getGetterSetterMethodName(propDef).replace("Property", "");
+	}
+
+	private static List<PropertyDefinition> getKeyOrderedDefinitions(ObjectPropertyDefinition objDef) {
+		List<PropertyDefinition> definitions = new ArrayList<>(objDef.getPropertyDefinitions());
+		definitions.sort(Comparator.comparingInt(PropertyDefinition::getKey));
+		return definitions;
+	}
+
+	private static List<PropertyDefinition> getFieldDefinitions(ObjectPropertyDefinition objDef) {
+		List<PropertyDefinition> definitions = new ArrayList<>();
+		for (PropertyDefinition propDef : getKeyOrderedDefinitions(objDef)) {
+			if (isFieldType(propDef.getType())) {
+				definitions.add(propDef);
+			}
+		}
+		return definitions;
+	}
+
+	private static boolean isFieldType(PropertyType type) {
+		return switch (type) {
+			case BOOLEAN, BYTE, INT, LONG, FLOAT, DOUBLE, ENUM -> true;
+			default -> false;
+		};
+	}
+
+	private static String getFieldName(PropertyDefinition propDef) {
+		return propDef.getName() + "Value";
+	}
+
+	private static String getPresenceName(int fieldIndex) {
+		return "fieldPresence" + (fieldIndex / 64);
+	}
+
+	private static String getFieldBit(int fieldIndex) {
+		return "(1L << " + (fieldIndex % 64) + ")";
+	}
+
+	private static String getPresenceCheck(int fieldIndex) {
+		return "(" + getPresenceName(fieldIndex) + " & " + getFieldBit(fieldIndex) + ") != 0";
+	}
+
+	private static String getWriteFieldStatement(PropertyDefinition propDef, String encoding) {
+		String fieldName = getFieldName(propDef);
+		return switch (propDef.getType()) {
+			case INT, ENUM -> encoding + ".writeInt(out, " + fieldName + ");";
+			case LONG -> encoding + ".writeLong(out, " + fieldName + ");";
+			default -> "out.write" + getGetterSetterMethodName(propDef).replace("Property", "") + "(" + fieldName + ");";
+		};
+	}
+
+	private static int getFieldValueSize(PropertyDefinition propDef) {
+		return switch (propDef.getType()) {
+			case BOOLEAN, BYTE -> 1;
+			case LONG, DOUBLE -> 8;
+			default -> 4;
+		};
+	}
+
+	private static String getConstantName(PropertyDefinition propDef) {
+		return "PROPERTY_" + propDef.getName().replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase();
+	}
+
 	private static String readTemplate(String name) throws IOException {
 		InputStream inputStream = MessagePojoBuilder.class.getResourceAsStream("/templates/" + name);
 		return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
@@ -322,7 +801,7 @@ public class MessagePojoBuilder {
 			case DOUBLE_ARRAY -> "double[]";
 			case STRING_ARRAY -> "String[]";
 			case FILE -> "FileProperty";
-			case ENUM -> firstUpperCase(propDef.getName());
+			case ENUM -> "int";
 		};
 	}
 
@@ -20,8 +20,11 @@
 package org.teamapps.protocol.schema;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
 import org.teamapps.protocol.file.FileSink;
 
+import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
@@ -65,6 +68,11 @@ public interface MessageProperty {
 
 	byte[] getByteArrayProperty();
 
+	default ByteBuf getByteBufProperty() {
+		byte[] bytes = getByteArrayProperty();
+		return bytes != null ? Unpooled.wrappedBuffer(bytes) : null;
+	}
+
 	int[] getIntArrayProperty();
 
 	long[] getLongArrayProperty();
@@ -77,9 +85,21 @@ public interface MessageProperty {
 
 	String getAsString();
 
-	void write(DataOutputStream dos, FileSink fileSink) throws IOException;
+	default void write(DataOutputStream dos, FileSink fileSink) throws IOException {
+		writeEncoded(dos, fileSink, MessageEncoding.DEFAULT);
+	}
+
+	default void write(ByteBuf buffer, FileSink fileSink) throws IOException {
+		writeEncoded(new ByteBufOutputStream(buffer), fileSink, MessageEncoding.DEFAULT);
+	}
+
+	default void writeEncoded(DataOutput out, FileSink fileSink, MessageEncoding encoding) throws IOException {
+		writeEncoded(out, fileSink, encoding, SharedReferences.create(encoding));
+	}
+
+	void writeEncoded(DataOutput out, FileSink fileSink, MessageEncoding encoding, SharedReferences references) throws IOException;
 
-	void write(ByteBuf buffer, FileSink fileSink) throws IOException;
+	int getSerializedSize();
 
 	byte[] toBytes() throws IOException;
 
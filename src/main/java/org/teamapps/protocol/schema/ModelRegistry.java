@@ -38,6 +38,14 @@ public interface ModelRegistry {
 
 	MessageModel getModel(byte[] message) throws IOException;
 
+	default int getModelId(MessageModel model) {
+		return -1;
+	}
+
+	default MessageModel getModelById(int modelId) {
+		return null;
+	}
+
 	ModelRegistry addModel(MessageModel model);
 
 	ModelRegistry addModelCollection(ModelCollection collection);
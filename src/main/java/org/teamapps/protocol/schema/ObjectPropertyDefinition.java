@@ -20,9 +20,12 @@
 package org.teamapps.protocol.schema;
 
 import org.teamapps.protocol.message.MessageUtils;
+import org.teamapps.protocol.message.MessageWriter;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -34,6 +37,7 @@ public class ObjectPropertyDefinition extends AbstractPropertyDefinition impleme
 	private final List<PropertyDefinition> definitions = new ArrayList<>();
 	private final Map<Integer, PropertyDefinition> definitionByKey = new HashMap<>();
 	private final Map<String, PropertyDefinition> definitionByName = new HashMap<>();
+	private PropertyDefinition[] fixedLayout;
 
 	public ObjectPropertyDefinition(String objectUuid, String name, int modelVersion) {
 		this(objectUuid, name, null, null, modelVersion);
@@ -55,6 +59,8 @@ public class ObjectPropertyDefinition extends AbstractPropertyDefinition impleme
 
 	public ObjectPropertyDefinition(DataInputStream dis, Map<String, MessageModel> writeCache) throws IOException {
 		this(MessageUtils.readString(dis), MessageUtils.readString(dis), MessageUtils.readString(dis), MessageUtils.readString(dis), dis.readShort());
+		//the writer caches a referenced model before writing it and writes only its uuid for further references
+		writeCache.put(objectUuid, this);
 		int size = dis.readInt();
 		for (int i = 0; i < size; i++) {
 			PropertyDefinition propertyDefinition = new AbstractPropertyDefinition(this, dis, writeCache);
@@ -80,11 +86,13 @@ public class ObjectPropertyDefinition extends AbstractPropertyDefinition impleme
 
 	@Override
 	public byte[] toBytes() throws IOException {
-		ByteArrayOutputStream bos = new ByteArrayOutputStream();
-		DataOutputStream dos = new DataOutputStream(bos);
-		write(dos);
-		dos.close();
-		return bos.toByteArray();
+		MessageWriter writer = MessageWriter.acquire();
+		try {
+			write(writer.asDataOutputStream());
+			return writer.copyBytes();
+		} finally {
+			writer.release();
+		}
 	}
 
 	public String getObjectUuid() {
@@ -178,9 +186,23 @@ public class ObjectPropertyDefinition extends AbstractPropertyDefinition impleme
 		if (definitionByName.containsKey(field.getName()) || definitionByKey.containsKey(field.getKey())) {
 			throw new RuntimeException("Object property already contains field with this name or key:" + field);
 		}
+		if (field instanceof AbstractPropertyDefinition) {
+			((AbstractPropertyDefinition) field).setOrdinal(definitions.size());
+		}
 		definitions.add(field);
 		definitionByKey.put(field.getKey(), field);
 		definitionByName.put(field.getName(), field);
+		fixedLayout = null;
+	}
+
+	public PropertyDefinition[] getFixedLayout() {
+		PropertyDefinition[] layout = fixedLayout;
+		if (layout == null) {
+			layout = definitions.toArray(new PropertyDefinition[0]);
+			Arrays.sort(layout, Comparator.comparingInt(PropertyDefinition::getKey));
+			fixedLayout = layout;
+		}
+		return layout;
 	}
 
 	@Override
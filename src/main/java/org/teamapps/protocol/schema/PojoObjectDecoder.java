@@ -20,10 +20,14 @@
 package org.teamapps.protocol.schema;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.teamapps.protocol.file.FileProvider;
+import org.teamapps.protocol.message.MessageReader;
 
 import java.io.ByteArrayInputStream;
+import java.io.DataInput;
 import java.io.DataInputStream;
+import java.io.IOException;
 
 public interface PojoObjectDecoder<MESSAGE extends MessageObject> {
 
@@ -35,6 +39,74 @@ public interface PojoObjectDecoder<MESSAGE extends MessageObject> {
 
 	String getMessageObjectUuid();
 
+	/**
+	 * Creates an empty message of the decoded type that properties can be added to directly.
+	 */
+	default MESSAGE create(MessageModel model) {
+		return remap(new MessageObject(model));
+	}
+
+	default MESSAGE decode(DataInput in, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry, MessageEncoding encoding) throws IOException {
+		return decode(in, model, fileProvider, decoderRegistry, encoding, SharedReferences.create(encoding));
+	}
+
+	/**
+	 * Decodes a message nested in another one, shared references are resolved against the tables of the enclosing read.
+	 */
+	default MESSAGE decode(DataInput in, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry, MessageEncoding encoding, SharedReferences references) throws IOException {
+		return remap(new MessageObject(in, model, fileProvider, decoderRegistry, encoding, references));
+	}
+
+	default MESSAGE decode(MessageReader reader, FileProvider fileProvider) throws IOException {
+		ByteBuf buf = Unpooled.wrappedBuffer(reader.getBytes(), reader.getPosition(), reader.remaining());
+		MESSAGE message = decode(buf, fileProvider);
+		reader.skipBytes(buf.readerIndex());
+		return message;
+	}
+
+	default PojoObjectDecoderRegistry getDecoderRegistry() {
+		return null;
+	}
+
+	default MESSAGE decodeInto(MESSAGE target, MessageReader reader, FileProvider fileProvider) throws IOException {
+		return MessageObject.decodeInto(target, reader, fileProvider, getDecoderRegistry());
+	}
+
+	default MESSAGE decodeInto(MESSAGE target, ByteBuf buf, FileProvider fileProvider) throws IOException {
+		return MessageObject.decodeInto(target, buf, fileProvider, getDecoderRegistry());
+	}
+
+	/**
+	 * Optional thread-local pool used by {@link #decodePooled}, decoders without a pool allocate a new message per decode.
+	 */
+	default MessageObjectPool<MESSAGE> getPool() {
+		return null;
+	}
+
+	default MESSAGE decodePooled(MessageReader reader, FileProvider fileProvider) throws IOException {
+		MessageObjectPool<MESSAGE> pool = getPool();
+		return pool != null ? decodeInto(pool.acquire(), reader, fileProvider) : decode(reader, fileProvider);
+	}
+
+	default void release(MESSAGE message) {
+		MessageObjectPool<MESSAGE> pool = getPool();
+		if (pool != null) {
+			pool.release(message);
+		}
+	}
+
+	default MESSAGE decode(MessageReader reader, PropertyProjection projection, FileProvider fileProvider) throws IOException {
+		return remap(new MessageObject(reader, projection, fileProvider, null));
+	}
+
+	default MESSAGE decode(byte[] bytes, PropertyProjection projection, FileProvider fileProvider) {
+		try {
+			return decode(new MessageReader(bytes), projection, fileProvider);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	default MESSAGE decode(byte[] bytes, FileProvider fileProvider) {
 		return decode(new DataInputStream(new ByteArrayInputStream(bytes)), fileProvider);
 	}
@@ -34,6 +34,8 @@ public interface PropertyDefinition {
 
 	int getKey();
 
+	int getOrdinal();
+
 	String getQualifiedName();
 
 	PropertyType getType();
@@ -0,0 +1,109 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.schema;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PropertyProjection {
+
+	private final MessageModel model;
+	private final Map<Integer, PropertyProjection> projectionByKey = new HashMap<>();
+
+	public static PropertyProjection forKeys(MessageModel model, int... keys) {
+		PropertyProjection projection = new PropertyProjection(model);
+		for (int key : keys) {
+			projection.addKey(key);
+		}
+		return projection;
+	}
+
+	public static PropertyProjection forPaths(MessageModel model, String... paths) {
+		return forPaths(model, List.of(paths));
+	}
+
+	public static PropertyProjection forPaths(MessageModel model, Collection<String> paths) {
+		PropertyProjection projection = new PropertyProjection(model);
+		for (String path : paths) {
+			projection.addPath(path);
+		}
+		return projection;
+	}
+
+	public PropertyProjection(MessageModel model) {
+		this.model = model;
+	}
+
+	public PropertyProjection addKey(int key) {
+		if (model.getPropertyDefinitionByKey(key) == null) {
+			throw new RuntimeException("Message model does not contain a field with key:" + key);
+		}
+		projectionByKey.put(key, null);
+		return this;
+	}
+
+	public PropertyProjection addPath(String path) {
+		String[] segments = path.split("/");
+		int index = 0;
+		if (segments.length > 1 && segments[0].equals(model.getObjectPropertyDefinition().getName()) && model.getPropertyDefinitionByName(segments[0]) == null) {
+			index++;
+		}
+		PropertyProjection projection = this;
+		for (; index < segments.length; index++) {
+			PropertyDefinition propertyDefinition = projection.getPropertyDefinition(segments[index]);
+			int key = propertyDefinition.getKey();
+			if (index == segments.length - 1) {
+				projection.projectionByKey.put(key, null);
+			} else if (!propertyDefinition.isReferenceProperty()) {
+				throw new RuntimeException("Cannot project path " + path + ", field is not a reference:" + propertyDefinition.getName());
+			} else if (projection.projectionByKey.containsKey(key) && projection.projectionByKey.get(key) == null) {
+				break;
+			} else {
+				projection = projection.projectionByKey.computeIfAbsent(key, k -> new PropertyProjection(propertyDefinition.getReferencedObject()));
+			}
+		}
+		return this;
+	}
+
+	private PropertyDefinition getPropertyDefinition(String segment) {
+		PropertyDefinition propertyDefinition = model.getPropertyDefinitionByName(segment);
+		if (propertyDefinition == null && !segment.isEmpty() && segment.chars().allMatch(Character::isDigit)) {
+			propertyDefinition = model.getPropertyDefinitionByKey(Integer.parseInt(segment));
+		}
+		if (propertyDefinition == null) {
+			throw new RuntimeException("Message model does not contain a field with name:" + segment);
+		}
+		return propertyDefinition;
+	}
+
+	public MessageModel getModel() {
+		return model;
+	}
+
+	public boolean contains(int key) {
+		return projectionByKey.containsKey(key);
+	}
+
+	public PropertyProjection getProjection(int key) {
+		return projectionByKey.get(key);
+	}
+}
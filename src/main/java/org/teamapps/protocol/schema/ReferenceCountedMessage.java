@@ -0,0 +1,92 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.schema;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.AbstractReferenceCounted;
+import org.teamapps.protocol.file.FileProvider;
+import org.teamapps.protocol.message.ByteBufSliceInput;
+
+import java.io.IOException;
+
+/**
+ * A message decoded from a buffer whose large byte array properties are read-only slices of that buffer instead of copies.
+ * The message keeps the buffer retained until it is released, byte buffers returned by {@link MessageObject#getByteBufProperty(String)}
+ * must not be used afterwards while {@link MessageObject#getByteArrayProperty(String)} copies slice backed values into a new array.
+ */
+public class ReferenceCountedMessage extends AbstractReferenceCounted {
+
+	private final MessageObject message;
+	private final ByteBuf buffer;
+
+	/**
+	 * Decodes a message from the readable bytes of the buffer, the buffer is retained until this message is released.
+	 */
+	public static ReferenceCountedMessage decode(ByteBuf buf, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		ByteBuf buffer = buf.retain();
+		try {
+			return new ReferenceCountedMessage(new MessageObject(new ByteBufSliceInput(buffer), model, fileProvider, decoderRegistry), buffer);
+		} catch (IOException | RuntimeException e) {
+			buffer.release();
+			throw e;
+		}
+	}
+
+	private ReferenceCountedMessage(MessageObject message, ByteBuf buffer) {
+		this.message = message;
+		this.buffer = buffer;
+	}
+
+	public MessageObject getMessage() {
+		if (refCnt() == 0) {
+			throw new RuntimeException("Message has already been released");
+		}
+		return message;
+	}
+
+	@Override
+	protected void deallocate() {
+		buffer.release();
+	}
+
+	@Override
+	public ReferenceCountedMessage touch(Object hint) {
+		buffer.touch(hint);
+		return this;
+	}
+
+	@Override
+	public ReferenceCountedMessage retain() {
+		super.retain();
+		return this;
+	}
+
+	@Override
+	public ReferenceCountedMessage retain(int increment) {
+		super.retain(increment);
+		return this;
+	}
+
+	@Override
+	public ReferenceCountedMessage touch() {
+		super.touch();
+		return this;
+	}
+}
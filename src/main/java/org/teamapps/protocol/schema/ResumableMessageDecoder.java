@@ -0,0 +1,496 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.schema;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufUtil;
+import org.teamapps.protocol.file.FileProvider;
+import org.teamapps.protocol.message.MessageReader;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Decodes messages from buffers that may end anywhere inside a message. Complete values are consumed and kept,
+ * an incomplete value stays in the buffer until the next call. Strings, arrays and columnar lists are scanned
+ * incrementally and only decoded once they are complete. Not thread safe, one instance per connection.
+ */
+public class ResumableMessageDecoder {
+
+	private final MessageModel model;
+	private final ModelRegistry modelRegistry;
+	private final FileProvider fileProvider;
+	private final PojoObjectDecoderRegistry decoderRegistry;
+
+	private final Deque<Frame> stack = new ArrayDeque<>();
+	private MessageEncoding encoding;
+	private SharedReferences references;
+	private PendingValue pendingValue;
+	private int requiredBytes;
+
+	public ResumableMessageDecoder(MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) {
+		this(model, null, fileProvider, decoderRegistry);
+	}
+
+	public ResumableMessageDecoder(ModelRegistry modelRegistry, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) {
+		this(null, modelRegistry, fileProvider, decoderRegistry);
+	}
+
+	private ResumableMessageDecoder(MessageModel model, ModelRegistry modelRegistry, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry) {
+		this.model = model;
+		this.modelRegistry = modelRegistry;
+		this.fileProvider = fileProvider;
+		this.decoderRegistry = decoderRegistry;
+	}
+
+	public MessageObject decode(ByteBuf buf) throws IOException {
+		if (buf.readableBytes() < requiredBytes) {
+			return null;
+		}
+		requiredBytes = 0;
+		ByteBufInputStream in = new ByteBufInputStream(buf);
+		while (true) {
+			int readerIndex = buf.readerIndex();
+			try {
+				MessageObject message = step(buf, in);
+				if (message != null) {
+					reset();
+					return message;
+				}
+			} catch (EOFException e) {
+				buf.readerIndex(readerIndex);
+				requiredBytes = Math.max(requiredBytes, buf.readableBytes() + 1);
+				return null;
+			}
+		}
+	}
+
+	public List<MessageObject> decodeAll(ByteBuf buf) throws IOException {
+		List<MessageObject> messages = new ArrayList<>();
+		MessageObject message;
+		while (buf.isReadable() && (message = decode(buf)) != null) {
+			messages.add(message);
+		}
+		return messages;
+	}
+
+	public boolean isDecoding() {
+		return encoding != null;
+	}
+
+	public void reset() {
+		stack.clear();
+		encoding = null;
+		references = null;
+		pendingValue = null;
+		requiredBytes = 0;
+	}
+
+	private MessageObject step(ByteBuf buf, DataInput in) throws IOException {
+		if (encoding == null) {
+			return startMessage(buf, in);
+		}
+		Frame frame = stack.peek();
+		if (frame instanceof ListFrame) {
+			ListFrame listFrame = (ListFrame) frame;
+			if (listFrame.remaining == 0) {
+				stack.pop();
+				return completeValue(listFrame.propertyDefinition, listFrame.messages);
+			}
+			encoding.readObjectFrameLength(in);
+			MessageObject sharedReference = encoding.readSharedReference(in, references);
+			listFrame.remaining--;
+			if (sharedReference != null) {
+				listFrame.messages.add(sharedReference);
+			} else {
+				stack.push(new ObjectFrame(listFrame.propertyDefinition.getReferencedObject(), listFrame.propertyDefinition));
+			}
+			return null;
+		}
+		ObjectFrame objectFrame = (ObjectFrame) frame;
+		if (objectFrame.message == null) {
+			startObject(objectFrame, in);
+			return null;
+		}
+		if (objectFrame.isComplete()) {
+			stack.pop();
+			MessageObject message = objectFrame.message;
+			if (decoderRegistry != null && decoderRegistry.containsDecoder(message.getModel().getModelUuid())) {
+				message = decoderRegistry.getMessageDecoder(message.getModel().getModelUuid()).remap(message);
+			}
+			if (objectFrame.propertyDefinition == null) {
+				return message;
+			}
+			return completeValue(objectFrame.propertyDefinition, encoding.addSharedReference(message, references));
+		}
+		readProperty(objectFrame, buf, in);
+		return null;
+	}
+
+	private MessageObject startMessage(ByteBuf buf, DataInput in) throws IOException {
+		int start = buf.readerIndex();
+		MessageEncoding messageEncoding = MessageEncoding.DEFAULT;
+		if (MessageEncoding.isEncodingHeader(in.readUnsignedByte())) {
+			messageEncoding = MessageEncoding.fromHeader(buf.getUnsignedByte(start));
+		} else {
+			buf.readerIndex(start);
+		}
+		if (messageEncoding.isCompressed()) {
+			messageEncoding.skipBody(in);
+			MessageReader reader = new MessageReader(ByteBufUtil.getBytes(buf, start, buf.readerIndex() - start));
+			return model != null ? new MessageObject(reader, model, fileProvider, decoderRegistry) : new MessageObject(reader, modelRegistry, fileProvider, decoderRegistry);
+		}
+		MessageModel messageModel = model;
+		if (messageModel == null) {
+			messageModel = messageEncoding.readModelHeader(in, modelRegistry);
+		} else {
+			messageEncoding.skipModelHeader(in, messageModel);
+		}
+		ObjectFrame frame = new ObjectFrame(messageModel.getObjectPropertyDefinition(), null);
+		frame.start(messageEncoding, in);
+		encoding = messageEncoding;
+		references = SharedReferences.create(messageEncoding);
+		stack.push(frame);
+		return null;
+	}
+
+	private void startObject(ObjectFrame frame, DataInput in) throws IOException {
+		encoding.skipModelHeader(in, frame.model);
+		frame.start(encoding, in);
+	}
+
+	private void readProperty(ObjectFrame frame, ByteBuf buf, DataInput in) throws IOException {
+		if (pendingValue != null) {
+			readPendingValue(frame, buf, in);
+			return;
+		}
+		int start = buf.readerIndex();
+		PropertyType type;
+		PropertyDefinition propertyDefinition;
+		int nextIndex = frame.index + 1;
+		if (frame.layout != null) {
+			while (!MessageEncoding.isPresent(frame.presence, frame.index)) {
+				frame.index++;
+			}
+			nextIndex = frame.index + 1;
+			propertyDefinition = frame.layout[frame.index];
+			type = propertyDefinition.getType();
+		} else {
+			type = PropertyType.getById(in.readByte());
+			int key = encoding.readKey(in);
+			propertyDefinition = frame.model.getPropertyDefinitionByKey(key);
+			if (propertyDefinition == null) {
+				pendingValue = new PendingValue(null, type, nextIndex, buf.readerIndex() - start, new ValueScan(encoding, type, null));
+				buf.readerIndex(start);
+				readPendingValue(frame, buf, in);
+				return;
+			}
+		}
+		if (type != propertyDefinition.getType()) {
+			throw new RuntimeException("Message parsing error - property type mismatch: " + type + " <-> " + propertyDefinition.getType());
+		}
+		if (type == PropertyType.OBJECT_SINGLE_REFERENCE) {
+			encoding.readFrameLength(in, type);
+			MessageObject sharedReference = encoding.readSharedReference(in, references);
+			frame.index = nextIndex;
+			if (sharedReference != null) {
+				frame.message.addProperty(new AbstractMessageProperty(propertyDefinition, sharedReference));
+			} else {
+				stack.push(new ObjectFrame(propertyDefinition.getReferencedObject(), propertyDefinition));
+			}
+		} else if (type == PropertyType.OBJECT_MULTI_REFERENCE && !encoding.isColumnar()) {
+			encoding.readFrameLength(in, type);
+			int messageCount = encoding.readSize(in);
+			frame.index = nextIndex;
+			stack.push(new ListFrame(propertyDefinition, messageCount));
+		} else if (ValueScan.isScanned(type, encoding)) {
+			pendingValue = new PendingValue(propertyDefinition, type, nextIndex, buf.readerIndex() - start, new ValueScan(encoding, type, propertyDefinition));
+			buf.readerIndex(start);
+			readPendingValue(frame, buf, in);
+		} else {
+			AbstractMessageProperty property = new AbstractMessageProperty(propertyDefinition, type, in, fileProvider, decoderRegistry, encoding, references);
+			frame.index = nextIndex;
+			frame.message.addProperty(property);
+		}
+	}
+
+	private void readPendingValue(ObjectFrame frame, ByteBuf buf, DataInput in) throws IOException {
+		PendingValue value = pendingValue;
+		int valueStart = buf.readerIndex() + value.headerLength;
+		if (!value.scan.scan(buf.slice(valueStart, buf.writerIndex() - valueStart))) {
+			requiredBytes = value.headerLength + value.scan.getRequiredBytes();
+			throw new EOFException("Message value incomplete, required:" + requiredBytes);
+		}
+		buf.readerIndex(valueStart);
+		if (value.propertyDefinition == null) {
+			encoding.skipUnknownValue(in, value.type);
+		} else {
+			frame.message.addProperty(new AbstractMessageProperty(value.propertyDefinition, value.type, in, fileProvider, decoderRegistry, encoding, references));
+		}
+		frame.index = value.nextIndex;
+		pendingValue = null;
+	}
+
+	private MessageObject completeValue(PropertyDefinition propertyDefinition, Object value) {
+		Frame parent = stack.peek();
+		if (parent instanceof ListFrame) {
+			((ListFrame) parent).messages.add((MessageObject) value);
+		} else {
+			((ObjectFrame) parent).message.addProperty(new AbstractMessageProperty(propertyDefinition, value));
+		}
+		return null;
+	}
+
+	private interface Frame {
+	}
+
+	private static class ObjectFrame implements Frame {
+		private final ObjectPropertyDefinition model;
+		private final PropertyDefinition propertyDefinition;
+		private MessageObject message;
+		private PropertyDefinition[] layout;
+		private byte[] presence;
+		private int count;
+		private int index;
+
+		private ObjectFrame(ObjectPropertyDefinition model, PropertyDefinition propertyDefinition) {
+			this.model = model;
+			this.propertyDefinition = propertyDefinition;
+		}
+
+		private void start(MessageEncoding encoding, DataInput in) throws IOException {
+			if (encoding.isFixedLayout()) {
+				PropertyDefinition[] fixedLayout = model.getFixedLayout();
+				presence = encoding.readPresence(in, fixedLayout.length);
+				layout = fixedLayout;
+				count = fixedLayout.length;
+			} else {
+				count = encoding.readPropertyCount(in);
+			}
+			message = new MessageObject(model);
+		}
+
+		private boolean isComplete() {
+			if (layout != null) {
+				while (index < count && !MessageEncoding.isPresent(presence, index)) {
+					index++;
+				}
+			}
+			return index >= count;
+		}
+	}
+
+	private static class PendingValue {
+		private final PropertyDefinition propertyDefinition;
+		private final PropertyType type;
+		private final int nextIndex;
+		private final int headerLength;
+		private final ValueScan scan;
+
+		private PendingValue(PropertyDefinition propertyDefinition, PropertyType type, int nextIndex, int headerLength, ValueScan scan) {
+			this.propertyDefinition = propertyDefinition;
+			this.type = type;
+			this.nextIndex = nextIndex;
+			this.headerLength = headerLength;
+			this.scan = scan;
+		}
+	}
+
+	/**
+	 * Finds the end of a value without decoding it. Length prefixes, elements and columns are read once, the scan
+	 * keeps the offset of the complete part and continues there when more bytes arrive.
+	 */
+	private static class ValueScan {
+		private final MessageEncoding encoding;
+		private final PropertyType type;
+		private final PropertyDefinition propertyDefinition;
+		private int offset;
+		private int end = -1;
+		private int remaining = -1;
+		private ValueScan element;
+		private int rowCount;
+		private byte[] presence;
+		private PropertyType columnType;
+		private PropertyDefinition columnDefinition;
+		private int row;
+
+		private ValueScan(MessageEncoding encoding, PropertyType type, PropertyDefinition propertyDefinition) {
+			this.encoding = encoding;
+			this.type = type;
+			this.propertyDefinition = propertyDefinition;
+		}
+
+		private static boolean isScanned(PropertyType type, MessageEncoding encoding) {
+			return switch (type) {
+				case STRING, BYTE_ARRAY, BITSET, INT_ARRAY, LONG_ARRAY, FLOAT_ARRAY, DOUBLE_ARRAY, STRING_ARRAY, FILE -> true;
+				case OBJECT_MULTI_REFERENCE -> encoding.isColumnar();
+				default -> false;
+			};
+		}
+
+		private int getRequiredBytes() {
+			return element != null ? element.getRequiredBytes() : end >= 0 ? end : offset + 1;
+		}
+
+		/**
+		 * Scans the value at the reader index of the buffer and returns true once it is complete.
+		 */
+		private boolean scan(ByteBuf buf) throws IOException {
+			DataInput in = new ByteBufInputStream(buf);
+			try {
+				while (true) {
+					buf.readerIndex(offset);
+					if (end >= 0) {
+						if (buf.writerIndex() < end) {
+							return false;
+						}
+						offset = end;
+						end = -1;
+					} else if (element != null) {
+						if (!element.scan(buf)) {
+							return false;
+						}
+						offset = element.offset;
+						element = null;
+					} else if (remaining < 0) {
+						readPrefix(in);
+						offset = buf.readerIndex();
+						if (end >= 0) {
+							end += offset;
+						}
+					} else if (remaining == 0) {
+						return true;
+					} else {
+						readElement(in);
+						offset = buf.readerIndex();
+					}
+				}
+			} catch (EOFException e) {
+				return false;
+			}
+		}
+
+		private void readPrefix(DataInput in) throws IOException {
+			if (encoding.isFramed(type)) {
+				int length = in.readInt();
+				setEnd(length, 1);
+				return;
+			}
+			switch (type) {
+				case STRING, BYTE_ARRAY -> setEnd(encoding.readSize(in), 1);
+				case FLOAT_ARRAY -> setEnd(encoding.readSize(in), 4);
+				case DOUBLE_ARRAY -> setEnd(encoding.readSize(in), 8);
+				case INT_ARRAY, LONG_ARRAY -> {
+					int length = encoding.readSize(in);
+					if (encoding.isCompact()) {
+						remaining = length;
+					} else {
+						setEnd(length, type == PropertyType.INT_ARRAY ? 4 : 8);
+					}
+				}
+				case BITSET, STRING_ARRAY -> remaining = encoding.readSize(in);
+				case FILE -> {
+					encoding.readLong(in);
+					remaining = 2;
+				}
+				case OBJECT_MULTI_REFERENCE -> {
+					rowCount = encoding.readSize(in);
+					remaining = rowCount == 0 ? 0 : encoding.readSize(in);
+				}
+				default -> {
+					encoding.skipValue(in, type, propertyDefinition);
+					remaining = 0;
+				}
+			}
+		}
+
+		private void setEnd(int length, int elementSize) {
+			remaining = 0;
+			end = length * elementSize;
+		}
+
+		private void readElement(DataInput in) throws IOException {
+			switch (type) {
+				case INT_ARRAY, BITSET -> {
+					encoding.readInt(in);
+					remaining--;
+				}
+				case LONG_ARRAY -> {
+					encoding.readLong(in);
+					remaining--;
+				}
+				case STRING_ARRAY, FILE -> {
+					element = createElement(PropertyType.STRING, null);
+					remaining--;
+				}
+				default -> readColumn(in);
+			}
+		}
+
+		private void readColumn(DataInput in) throws IOException {
+			if (presence == null) {
+				PropertyType valueType = PropertyType.getById(in.readByte());
+				int key = encoding.readKey(in);
+				byte[] columnPresence = new byte[(rowCount + 7) / 8];
+				in.readFully(columnPresence);
+				ObjectPropertyDefinition model = propertyDefinition != null ? propertyDefinition.getReferencedObject() : null;
+				columnType = valueType;
+				columnDefinition = model != null ? model.getPropertyDefinitionByKey(key) : null;
+				presence = columnPresence;
+				row = 0;
+				return;
+			}
+			while (row < rowCount && !MessageEncoding.isPresent(presence, row)) {
+				row++;
+			}
+			if (row == rowCount) {
+				presence = null;
+				remaining--;
+				return;
+			}
+			element = createElement(columnType, columnDefinition);
+			row++;
+		}
+
+		private ValueScan createElement(PropertyType type, PropertyDefinition propertyDefinition) {
+			ValueScan scan = new ValueScan(encoding, type, propertyDefinition);
+			scan.offset = offset;
+			return scan;
+		}
+	}
+
+	private static class ListFrame implements Frame {
+		private final PropertyDefinition propertyDefinition;
+		private final List<MessageObject> messages;
+		private int remaining;
+
+		private ListFrame(PropertyDefinition propertyDefinition, int remaining) {
+			this.propertyDefinition = propertyDefinition;
+			this.messages = new ArrayList<>(remaining);
+			this.remaining = remaining;
+		}
+	}
+}
@@ -0,0 +1,62 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.schema;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reference tables of a single message read or write with {@link MessageEncoding#FLAG_SHARED_REFERENCES}, every top level
+ * read or write uses its own instance so encodings can be shared between threads and channels.
+ */
+public final class SharedReferences {
+
+	private final Map<MessageObject, Integer> writtenReferences = new IdentityHashMap<>();
+	private final List<MessageObject> readReferences = new ArrayList<>();
+
+	/**
+	 * Creates the reference tables for one read or write, null if the encoding does not share references.
+	 */
+	public static SharedReferences create(MessageEncoding encoding) {
+		return encoding != null && encoding.isSharedReferences() ? new SharedReferences() : null;
+	}
+
+	int getWrittenIndex(MessageObject message) {
+		Integer index = writtenReferences.get(message);
+		return index != null ? index : -1;
+	}
+
+	void addWritten(MessageObject message) {
+		writtenReferences.put(message, writtenReferences.size());
+	}
+
+	MessageObject getRead(int index) {
+		if (index >= readReferences.size()) {
+			throw new RuntimeException("Message parsing error - invalid shared reference:" + (index + 1));
+		}
+		return readReferences.get(index);
+	}
+
+	void addRead(MessageObject message) {
+		readReferences.add(message);
+	}
+}
@@ -3,12 +3,17 @@ package {package};
 import org.teamapps.protocol.schema.*;
 import org.teamapps.protocol.service.*;
 import org.teamapps.protocol.file.*;
+import org.teamapps.protocol.message.ByteBufInput;
+import org.teamapps.protocol.message.MessageReader;
+import org.teamapps.protocol.message.MessageUtils;
+import org.teamapps.protocol.message.MessageWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.lang.invoke.MethodHandles;
 import java.io.*;
 import java.nio.ByteBuffer;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 import java.util.*;
 
 
@@ -16,10 +21,12 @@ public class {type} extends MessageObject {
 	private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
 	private final static PojoObjectDecoder<{type}> decoder = new PojoObjectDecoder<{type}>() {
+		private final MessageObjectPool<{type}> pool = new MessageObjectPool<>({type}::new);
+
 		@Override
 		public {type} decode(DataInputStream dis, FileProvider fileProvider) {
 			try {
-				return new {type}(dis, fileProvider);
+				return readMessage(dis, fileProvider);
 			} catch (IOException e) {
 				LOGGER.error("Error creating {type} instance", e);
 			}
@@ -29,22 +36,50 @@ public class {type} extends MessageObject {
 		@Override
 		public {type} decode(ByteBuf buf, FileProvider fileProvider) {
 			try {
-				return new {type}(buf, fileProvider);
+				return readMessage(buf, fileProvider);
 			} catch (IOException e) {
 				LOGGER.error("Error creating {type} instance", e);
 			}
 			return null;
 		}
 
+		@Override
+		public {type} decode(MessageReader reader, FileProvider fileProvider) throws IOException {
+			return readMessage(reader, fileProvider);
+		}
+
+		@Override
+		public {type} decode(DataInput in, MessageModel model, FileProvider fileProvider, PojoObjectDecoderRegistry decoderRegistry, MessageEncoding encoding, SharedReferences references) throws IOException {
+			if (encoding.isDefault()) {
+				return readMessage(in, fileProvider);
+			}
+			return model == MESSAGE_MODEL ? readEncoded(in, fileProvider, encoding, references) : new {type}(in, model, fileProvider, encoding, references);
+		}
+
 		@Override
 		public {type} remap(MessageObject message) {
 			return new {type}(message, {schema}.MODEL_COLLECTION);
 		}
 
+		@Override
+		public {type} create(MessageModel model) {
+			return new {type}();
+		}
+
         @Override
         public String getMessageObjectUuid() {
             return OBJECT_UUID;
         }
+
+		@Override
+		public PojoObjectDecoderRegistry getDecoderRegistry() {
+			return {schema}.MODEL_COLLECTION;
+		}
+
+		@Override
+		public MessageObjectPool<{type}> getPool() {
+			return pool;
+		}
 	};
 
 	public static PojoObjectDecoder<{type}> getMessageDecoder() {
@@ -64,8 +99,10 @@ public class {type} extends MessageObject {
     }
 
     public final static String OBJECT_UUID = "{uuid}";
-
-
+	private final static short MODEL_VERSION = {version};
+	private final static MessageModel MESSAGE_MODEL = getMessageModel();
+{constants}
+{fields}
 	public {type}() {
 		super({schema}.MODEL_COLLECTION.getModel(OBJECT_UUID));
 	}
@@ -86,6 +123,10 @@ public class {type} extends MessageObject {
 		super(buf, {schema}.MODEL_COLLECTION.getModel(OBJECT_UUID), fileProvider, {schema}.MODEL_COLLECTION);
 	}
 
+	public {type}(MessageReader reader, FileProvider fileProvider) throws IOException {
+		super(reader, {schema}.MODEL_COLLECTION.getModel(OBJECT_UUID), fileProvider, {schema}.MODEL_COLLECTION);
+	}
+
 	public {type}(byte[] bytes) throws IOException {
 		super(bytes, {schema}.MODEL_COLLECTION.getModel(OBJECT_UUID), null, {schema}.MODEL_COLLECTION);
 	}
@@ -94,6 +135,11 @@ public class {type} extends MessageObject {
 		super(bytes, {schema}.MODEL_COLLECTION.getModel(OBJECT_UUID), fileProvider, {schema}.MODEL_COLLECTION);
 	}
 
+	private {type}(DataInput in, MessageModel model, FileProvider fileProvider, MessageEncoding encoding, SharedReferences references) throws IOException {
+		super(in, model, fileProvider, {schema}.MODEL_COLLECTION, encoding, references);
+	}
+
+{serializers}
 {methods}
 
 }
\ No newline at end of file
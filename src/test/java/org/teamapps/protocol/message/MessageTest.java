@@ -20,13 +20,23 @@
 package org.teamapps.protocol.message;
 
 import org.junit.Test;
+import org.teamapps.protocol.schema.MessageEncoding;
+import org.teamapps.protocol.schema.MessageObject;
+import org.teamapps.protocol.schema.ObjectPropertyDefinition;
+import org.teamapps.protocol.test.Company;
+import org.teamapps.protocol.test.Employee;
 import org.teamapps.protocol.testmodel.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class MessageTest {
 
@@ -137,4 +147,186 @@ public class MessageTest {
 			assertEquals(10, p.getAddresses().size());
 		}
 	}
+
+	@Test
+	public void testMessageReaderReadLine() {
+		MessageReader reader = new MessageReader("first\nsecond\r\nthird\rlast".getBytes(StandardCharsets.US_ASCII));
+		assertEquals("first", reader.readLine());
+		assertEquals("second", reader.readLine());
+		assertEquals("third", reader.readLine());
+		assertEquals("last", reader.readLine());
+		assertNull(reader.readLine());
+	}
+
+	@Test
+	public void testMessageWriterPrimitives() throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		writePrimitives(new DataOutputStream(bos));
+		byte[] bytes = bos.toByteArray();
+
+		MessageWriter writer = new MessageWriter(1);
+		writePrimitives(writer);
+		assertEquals(bytes.length, writer.getPosition());
+		assertArrayEquals(bytes, writer.toByteArray());
+
+		MessageReader reader = new MessageReader(bytes);
+		assertEquals(1, reader.peekUnsignedByte());
+		assertTrue(reader.readBoolean());
+		assertEquals(-2, reader.readByte());
+		assertEquals(254, reader.readUnsignedByte());
+		assertEquals(-3, reader.readShort());
+		assertEquals(65533, reader.readUnsignedShort());
+		assertEquals('x', reader.readChar());
+		assertEquals(Integer.MIN_VALUE + 1, reader.readInt());
+		assertEquals(Long.MAX_VALUE - 1, reader.readLong());
+		assertEquals(1.5f, reader.readFloat(), 0f);
+		assertEquals(-2.25d, reader.readDouble(), 0d);
+		assertEquals("Grüße 😀", reader.readUTF());
+		byte[] ascii = new byte[5];
+		reader.readFully(ascii);
+		assertEquals("ascii", new String(ascii, StandardCharsets.US_ASCII));
+		assertEquals('c', reader.readChar());
+		assertEquals('h', reader.readChar());
+		assertEquals(3, reader.skipBytes(3));
+		assertEquals(0, reader.remaining());
+		assertThrows(EOFException.class, reader::readByte);
+	}
+
+	@Test
+	public void testMessageReaderBounds() throws IOException {
+		MessageWriter writer = new MessageWriter();
+		writer.writeInt(1);
+		writer.writeInt(2);
+		writer.writeInt(3);
+		byte[] bytes = writer.toByteArray();
+
+		MessageReader reader = new MessageReader(bytes, 4, 6);
+		assertEquals(10, reader.getLimit());
+		assertEquals(6, reader.remaining());
+		assertEquals(2, reader.readInt());
+		assertEquals(2, reader.remaining());
+		assertThrows(EOFException.class, reader::readInt);
+		assertEquals(8, reader.getPosition());
+		assertThrows(EOFException.class, () -> reader.readFully(new byte[3]));
+		assertThrows(EOFException.class, () -> reader.skipBytes(3));
+		assertEquals(0, reader.readShort());
+		assertEquals(0, reader.remaining());
+	}
+
+	@Test
+	public void testMessageWriterPatching() throws IOException {
+		MessageWriter writer = new MessageWriter(2);
+		writer.writeInt(0);
+		writer.write("payload".getBytes(StandardCharsets.UTF_8));
+		writer.setInt(0, writer.getPosition() - 4);
+		int end = writer.getPosition();
+		writer.setPosition(end + 100);
+		writer.writeByte(7);
+		writer.setPosition(end);
+
+		MessageReader reader = new MessageReader(writer.toByteArray());
+		int length = reader.readInt();
+		assertEquals(7, length);
+		byte[] payload = new byte[length];
+		reader.readFully(payload);
+		assertEquals("payload", new String(payload, StandardCharsets.UTF_8));
+		assertEquals(0, reader.remaining());
+
+		writer.reset();
+		assertEquals(0, writer.getPosition());
+		assertEquals(0, writer.toByteArray().length);
+	}
+
+	@Test
+	public void testMessageWriterAcquire() {
+		MessageWriter writer = MessageWriter.acquire();
+		writer.writeInt(42);
+		MessageWriter nested = MessageWriter.acquire();
+		assertNotSame(writer, nested);
+		assertEquals(0, nested.getPosition());
+		nested.release();
+		assertEquals(4, writer.getPosition());
+		writer.release();
+
+		MessageWriter reused = MessageWriter.acquire();
+		assertSame(writer, reused);
+		assertEquals(0, reused.getPosition());
+		reused.write(new byte[2 * 1024 * 1024]);
+		reused.release();
+		MessageWriter shrunk = MessageWriter.acquire();
+		assertSame(writer, shrunk);
+		assertTrue(shrunk.getBytes().length < 2 * 1024 * 1024);
+		shrunk.release();
+	}
+
+	@Test
+	public void testMessageReaderWriter() throws IOException {
+		ObjectPropertyDefinition childModel = new ObjectPropertyDefinition("child-model", "child", 1);
+		childModel.addStringProperty("name", 1);
+		ObjectPropertyDefinition model = new ObjectPropertyDefinition("reader-writer-model", "readerWriter", 1);
+		model.addStringProperty("name", 1);
+		model.addIntProperty("value", 2);
+		model.addIntArrayProperty("values", 3);
+		model.addByteArrayProperty("bytes", 4);
+		model.addSingleReference("child", 5, childModel);
+		MessageObject message = new MessageObject(model)
+				.setStringProperty("name", "Grüße")
+				.setIntProperty("value", -17)
+				.setIntArrayProperty("values", new int[]{1, 2, 3})
+				.setByteArrayProperty("bytes", new byte[]{4, 5})
+				.setReferencedObject("child", new MessageObject(childModel).setStringProperty("name", "single"));
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		message.write(new DataOutputStream(bos), null);
+		byte[] bytes = bos.toByteArray();
+
+		MessageWriter writer = new MessageWriter(8);
+		message.write(writer, null);
+		assertArrayEquals(bytes, writer.toByteArray());
+		assertArrayEquals(bytes, message.toBytes());
+
+		MessageReader reader = new MessageReader(bytes);
+		assertReaderWriterMessage(new MessageObject(reader, model, null, null));
+		assertEquals(0, reader.remaining());
+
+		MessageWriter compactWriter = new MessageWriter();
+		message.write(compactWriter, null, MessageEncoding.COMPACT);
+		assertReaderWriterMessage(new MessageObject(new MessageReader(compactWriter.toByteArray()), model, null, null));
+
+		Company company = new Company().setName("Test-Company").setCeo(new Employee().setFirstName("First"));
+		company.addEmployee(new Employee().setLastName("Last"));
+		MessageWriter companyWriter = new MessageWriter();
+		company.write(companyWriter, null);
+		companyWriter.writeInt(42);
+		reader = new MessageReader(companyWriter.toByteArray());
+		Company decoded = Company.getMessageDecoder().decode(reader, null);
+		assertEquals("First", decoded.getCeo().getFirstName());
+		assertEquals("Last", decoded.getEmployee().get(0).getLastName());
+		assertEquals(42, reader.readInt());
+	}
+
+	private static void writePrimitives(DataOutput out) throws IOException {
+		out.writeBoolean(true);
+		out.writeByte(-2);
+		out.writeByte(254);
+		out.writeShort(-3);
+		out.writeShort(65533);
+		out.writeChar('x');
+		out.writeInt(Integer.MIN_VALUE + 1);
+		out.writeLong(Long.MAX_VALUE - 1);
+		out.writeFloat(1.5f);
+		out.writeDouble(-2.25d);
+		out.writeUTF("Grüße 😀");
+		out.writeBytes("ascii");
+		out.writeChars("ch");
+		out.write(new byte[]{1, 2, 3});
+	}
+
+	private static void assertReaderWriterMessage(MessageObject message) {
+		assertEquals("Grüße", message.getStringProperty("name"));
+		assertEquals(-17, message.getIntProperty("value"));
+		assertArrayEquals(new int[]{1, 2, 3}, message.getIntArrayProperty("values"));
+		assertArrayEquals(new byte[]{4, 5}, message.getByteArrayProperty("bytes"));
+		assertEquals("single", message.getReferencedObject("child").getStringProperty("name"));
+	}
 }
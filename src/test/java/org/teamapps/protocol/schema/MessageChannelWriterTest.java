@@ -0,0 +1,114 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.schema;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MessageChannelWriterTest {
+
+	private static final int BUFFER_SIZE = 1024;
+
+	@Test
+	public void testFramedMessageToFileChannel() throws IOException {
+		ObjectPropertyDefinition model = createModel();
+		MessageObject message = createMessage(model, 200);
+		MessageEncoding framed = MessageEncoding.COMPACT.withFlags(MessageEncoding.FLAG_FRAMED);
+		byte[] expected = message.toBytes(null, framed);
+		assertTrue(expected.length > 10 * BUFFER_SIZE);
+
+		File file = File.createTempFile("message-channel-writer", ".bin");
+		file.deleteOnExit();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+			MessageChannelWriter writer = new MessageChannelWriter(channel, BUFFER_SIZE);
+			writer.writeMessage(message, null, framed);
+			writer.writeMessage(message, null, framed);
+			assertEquals(2L * expected.length, writer.getWrittenBytes());
+		}
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		assertEquals(3 + 2 * expected.length, bytes.length);
+		MessageChannelReader reader = new MessageChannelReader(new ByteArrayInputStream(bytes, 3, bytes.length - 3), file.getParentFile());
+		for (int i = 0; i < 2; i++) {
+			MessageObject decoded = reader.readMessage(model, null);
+			assertArrayEquals(expected, decoded.toBytes(null, framed));
+		}
+	}
+
+	@Test
+	public void testFramedMessageToStream() throws IOException {
+		ObjectPropertyDefinition model = createModel();
+		MessageEncoding framed = MessageEncoding.COMPACT.withFlags(MessageEncoding.FLAG_FRAMED);
+		MessageObject smallMessage = createMessage(model, 2);
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		MessageChannelWriter writer = new MessageChannelWriter(Channels.newChannel(bos), BUFFER_SIZE);
+		writer.writeMessage(smallMessage, null, framed);
+		assertArrayEquals(smallMessage.toBytes(null, framed), bos.toByteArray());
+
+		try {
+			writer.writeMessage(createMessage(model, 200), null, framed);
+			fail("frame larger than the buffer");
+		} catch (RuntimeException e) {
+			assertTrue(e.getMessage().contains("buffer size"));
+		}
+		try {
+			writer.writeMessage(smallMessage, null, MessageEncoding.COMPACT.withCompression(0));
+			fail("compressed encoding");
+		} catch (RuntimeException e) {
+			assertTrue(e.getMessage().contains("Compressed"));
+		}
+	}
+
+	private static ObjectPropertyDefinition createModel() {
+		ObjectPropertyDefinition itemModel = new ObjectPropertyDefinition("item-model", "item", 1);
+		itemModel.addStringProperty("name", 1);
+		itemModel.addIntArrayProperty("values", 2);
+		ObjectPropertyDefinition model = new ObjectPropertyDefinition("list-model", "list", 1);
+		model.addStringProperty("title", 1);
+		model.addMultiReference("items", 2, itemModel);
+		model.addSingleReference("first", 3, itemModel);
+		return model;
+	}
+
+	private static MessageObject createMessage(ObjectPropertyDefinition model, int itemCount) {
+		ObjectPropertyDefinition itemModel = model.getPropertyDefinitionByKey(2).getReferencedObject();
+		List<MessageObject> items = new ArrayList<>();
+		for (int i = 0; i < itemCount; i++) {
+			items.add(new MessageObject(itemModel).setStringProperty("name", "item-" + i).setIntArrayProperty("values", new int[]{i, i * 2, i * 3, i * 4, i * 5, i * 6, i * 7, i * 8, i * 9, i * 10}));
+		}
+		return new MessageObject(model)
+				.setStringProperty("title", "list")
+				.setReferencedObjects("items", items)
+				.setReferencedObject("first", items.get(0));
+	}
+}
@@ -0,0 +1,100 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.schema;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class MessageEncodingTest {
+
+	private static final int ARRAY_LENGTH = 1_000_000;
+
+	@Test
+	public void testBulkPrimitiveArrays() throws IOException {
+		ObjectPropertyDefinition model = new ObjectPropertyDefinition("bulk-model", "bulk", 1);
+		model.addProperty("ints", 1, PropertyType.INT_ARRAY);
+		model.addProperty("longs", 2, PropertyType.LONG_ARRAY);
+		model.addProperty("floats", 3, PropertyType.FLOAT_ARRAY);
+		model.addProperty("doubles", 4, PropertyType.DOUBLE_ARRAY);
+		int[] ints = new int[ARRAY_LENGTH];
+		long[] longs = new long[ARRAY_LENGTH];
+		float[] floats = new float[ARRAY_LENGTH];
+		double[] doubles = new double[ARRAY_LENGTH];
+		for (int i = 0; i < ARRAY_LENGTH; i++) {
+			ints[i] = i * 31 - 7;
+			longs[i] = i * 1_000_003L - 5;
+			floats[i] = i / 3f;
+			doubles[i] = i / 7d - 1;
+		}
+		MessageObject message = new MessageObject(model)
+				.setIntArrayProperty("ints", ints)
+				.setLongArrayProperty("longs", longs)
+				.setFloatArrayProperty("floats", floats)
+				.setDoubleArrayProperty("doubles", doubles);
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		message.write(new DataOutputStream(bos), null);
+		byte[] bytes = bos.toByteArray();
+		assertArrayEquals(bytes, message.toBytes());
+
+		for (ByteBuf buffer : Arrays.asList(Unpooled.buffer(16), PooledByteBufAllocator.DEFAULT.directBuffer(16))) {
+			message.write(buffer, null);
+			assertEquals(bytes.length, buffer.readableBytes());
+			byte[] written = new byte[bytes.length];
+			buffer.getBytes(buffer.readerIndex(), written);
+			assertArrayEquals(bytes, written);
+			assertBulkMessage(new MessageObject(buffer, model, null, null), ints, longs, floats, doubles);
+			assertEquals(0, buffer.readableBytes());
+			buffer.release();
+		}
+
+		ByteBuffer byteBuffer = ByteBuffer.allocateDirect(bytes.length);
+		message.write(byteBuffer, null);
+		byteBuffer.flip();
+		assertBulkMessage(new MessageObject(byteBuffer, model, null, null), ints, longs, floats, doubles);
+		assertBulkMessage(new MessageObject(bytes, model, null, null), ints, longs, floats, doubles);
+		assertBulkMessage(new MessageObject(new DataInputStream(new ByteArrayInputStream(bytes)), model, null, null), ints, longs, floats, doubles);
+
+		byte[] compactBytes = message.toBytes(null, MessageEncoding.COMPACT);
+		ByteBuf compactBuffer = Unpooled.buffer();
+		message.write(compactBuffer, null, MessageEncoding.COMPACT);
+		assertEquals(compactBytes.length, compactBuffer.readableBytes());
+		assertBulkMessage(new MessageObject(compactBuffer, model, null, null), ints, longs, floats, doubles);
+	}
+
+	private static void assertBulkMessage(MessageObject message, int[] ints, long[] longs, float[] floats, double[] doubles) {
+		assertArrayEquals(ints, message.getIntArrayProperty("ints"));
+		assertArrayEquals(longs, message.getLongArrayProperty("longs"));
+		assertArrayEquals(floats, message.getFloatArrayProperty("floats"), 0);
+		assertArrayEquals(doubles, message.getDoubleArrayProperty("doubles"), 0);
+	}
+}
@@ -20,15 +20,41 @@
 package org.teamapps.protocol.schema;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ResourceLeakDetector;
 import org.junit.Test;
+import org.teamapps.protocol.file.FileSink;
+import org.teamapps.protocol.message.MessageReader;
+import org.teamapps.protocol.message.MessageUtils;
+import org.teamapps.protocol.message.MessageWriter;
 import org.teamapps.protocol.test.Company;
 import org.teamapps.protocol.test.Employee;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class MessageObjectTest {
 
@@ -107,6 +133,99 @@ public class MessageObjectTest {
 		}
 	}
 
+	@Test
+	public void testTypedFields() throws IOException {
+		Employee employee = new Employee().setFirstName("First").setVegan(true);
+		assertEquals(1, employee.getProperties().stream().filter(property -> property.getPropertyDefinition().getName().equals("vegan")).count());
+		assertTrue(employee.getBooleanProperty("vegan"));
+		assertNotSame(employee.getProperty("vegan"), employee.getProperty("vegan"));
+		byte[] bytes = employee.toBytes();
+		assertEquals(bytes.length, employee.getSerializedSize());
+
+		MessageObject message = new MessageObject(bytes, Employee.getMessageModel(), null, null);
+		assertTrue(message.getBooleanProperty("vegan"));
+		assertTrue(new Employee(bytes).isVegan());
+		assertTrue(Employee.remap(message).isVegan());
+
+		MessageEncoding fixedLayout = MessageEncoding.COMPACT.withFlags(MessageEncoding.FLAG_FIXED_LAYOUT);
+		assertTrue(Employee.getMessageDecoder().decode(employee.toBytes(null, fixedLayout), null).isVegan());
+		assertTrue(new MessageObject(employee.toBytes(null, MessageEncoding.COMPACT), Employee.getMessageModel(), null, null).getBooleanProperty("vegan"));
+
+		employee.setBooleanProperty("vegan", false);
+		assertFalse(employee.isVegan());
+		assertNotNull(employee.getProperty("vegan"));
+		employee.removeField(Employee.PROPERTY_VEGAN);
+		assertNull(employee.getProperty("vegan"));
+		assertEquals(1, employee.getProperties().size());
+		assertEquals(employee.toBytes().length, employee.getSerializedSize());
+
+		MessageObject.decodeInto(employee, bytes, null, null);
+		assertTrue(employee.isVegan());
+		employee.clear();
+		assertFalse(employee.isVegan());
+		assertTrue(employee.getProperties().isEmpty());
+	}
+
+	@Test
+	public void testGeneratedRoundTrip() throws IOException {
+		Company company = new Company().setName("Test-Company").setType("Type").setCeo(new Employee().setFirstName("First").setVegan(true).setStatus(2));
+		company.addEmployee(new Employee().setFirstName("First-0").setLastName("Last-0").setPic(new byte[]{1, 2, 3}).setStatus(1));
+		company.addEmployee(new Employee().setLastName("Last-1").setVegan(true));
+		byte[] bytes = company.toBytes();
+		assertEquals(bytes.length, company.getSerializedSize());
+		assertArrayEquals(bytes, new MessageObject(bytes, Company.getMessageModel(), null, null).toBytes());
+
+		Company decoded = Company.getMessageDecoder().decode(bytes, null);
+		assertArrayEquals(bytes, decoded.toBytes());
+		assertEquals(2, decoded.getCeo().getStatus());
+		assertTrue(decoded.getCeo().isVegan());
+		assertEquals(1, decoded.getEmployee().get(0).getStatus());
+		assertArrayEquals(new byte[]{1, 2, 3}, decoded.getEmployee().get(0).getPic());
+		assertEquals(2, decoded.getCeo().getIntProperty("status"));
+
+		ByteBuf buf = Unpooled.buffer();
+		company.write(buf, null);
+		assertArrayEquals(bytes, ByteBufUtil.getBytes(buf));
+		assertArrayEquals(bytes, Company.readMessage(buf, null).toBytes());
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		company.write(new DataOutputStream(bos), null);
+		assertArrayEquals(bytes, bos.toByteArray());
+		assertArrayEquals(bytes, Company.readMessage(new MessageReader(bytes), null).toBytes());
+
+		MessageEncoding fixedLayout = MessageEncoding.COMPACT.withFlags(MessageEncoding.FLAG_FIXED_LAYOUT);
+		MessageEncoding columnar = MessageEncoding.COMPACT.withFlags(MessageEncoding.FLAG_COLUMNAR);
+		for (MessageEncoding encoding : new MessageEncoding[]{MessageEncoding.COMPACT, fixedLayout, columnar}) {
+			Company flagged = Company.getMessageDecoder().decode(company.toBytes(null, encoding), null);
+			assertArrayEquals(bytes, flagged.toBytes());
+			Employee employee = flagged.getEmployee().get(1);
+			assertSame(Employee.class, employee.getClass());
+			assertTrue(employee.isVegan());
+			assertEquals("Last-1", employee.getLastName());
+			assertEquals(1, flagged.getEmployee().get(0).getStatus());
+			assertEquals(2, flagged.getCeo().getStatus());
+			assertSame(Employee.class, flagged.getCeo().getClass());
+			assertArrayEquals(new MessageObject(company.toBytes(null, encoding), Company.getMessageModel(), null, null).toBytes(null, encoding), flagged.toBytes(null, encoding));
+			ByteBuf flaggedBuf = Unpooled.buffer();
+			company.write(flaggedBuf, null, encoding);
+			assertArrayEquals(bytes, Company.readMessage(flaggedBuf, null).toBytes());
+		}
+
+		ObjectPropertyDefinition extendedModel = new ObjectPropertyDefinition(Employee.getMessageModel().getObjectPropertyDefinition().toBytes());
+		extendedModel.addProperty("nickName", 9, PropertyType.STRING);
+		MessageObject extended = new MessageObject(extendedModel).setStringProperty("firstName", "First").setStringProperty("nickName", "Nick").setIntProperty("status", 3);
+		Employee employee = Employee.getMessageDecoder().decode(extended.toBytes(), null);
+		assertEquals("First", employee.getFirstName());
+		assertEquals(3, employee.getStatus());
+
+		ObjectPropertyDefinition employeeModel = Employee.getMessageModel().getObjectPropertyDefinition();
+		ObjectPropertyDefinition newerModel = new ObjectPropertyDefinition(employeeModel.getObjectUuid(), employeeModel.getName(), employeeModel.getModelVersion() + 1);
+		newerModel.addProperty("lastName", 2, PropertyType.STRING);
+		byte[] newerBytes = new MessageObject(newerModel).setStringProperty("lastName", "Last").toBytes();
+		assertEquals(employeeModel.getModelVersion() + 1, Unpooled.wrappedBuffer(newerBytes).getShort(MessageUtils.getStringSize(employeeModel.getObjectUuid())));
+		assertEquals("Last", Employee.readMessage(Unpooled.wrappedBuffer(newerBytes), null).getLastName());
+		assertEquals("Last", Employee.readMessage(new MessageReader(newerBytes), null).getLastName());
+	}
+
 	@Test
 	public void testRemapping() throws IOException {
 		Company company = new Company();
@@ -125,4 +244,972 @@ public class MessageObjectTest {
 		assertEquals("First-0", employee0.getFirstName());
 		assertEquals(employees.size(), 10);
 	}
+
+	@Test
+	public void testCompactEncoding() throws IOException {
+		ObjectPropertyDefinition model = createAllTypesModel();
+		MessageObject message = createAllTypesMessage(model);
+
+		byte[] defaultBytes = message.toBytes();
+		byte[] compactBytes = message.toBytes(null, MessageEncoding.COMPACT);
+		assertTrue(compactBytes.length < defaultBytes.length);
+		assertArrayEquals(defaultBytes, message.toBytes(null, MessageEncoding.DEFAULT));
+
+		assertAllTypesMessage(new MessageObject(compactBytes, model, null, null));
+		assertAllTypesMessage(new MessageObject(compactBytes, new MessageModelRegistry().addModel(model), null, null));
+
+		ByteBuf buffer = PooledByteBufAllocator.DEFAULT.buffer();
+		message.write(buffer, null, MessageEncoding.COMPACT);
+		assertEquals(compactBytes.length, buffer.readableBytes());
+		assertAllTypesMessage(new MessageObject(buffer, model, null, null));
+		buffer.release();
+	}
+
+	@Test
+	public void testModelIdEncoding() throws IOException {
+		ModelRegistry registry = Company.getModelCollection().createRegistry();
+		ModelRegistry peerRegistry = new MessageModelRegistry(registry.toBytes(), registry);
+		Company company = new Company().setName("Test-Company");
+		for (int n = 0; n < 1_000; n++) {
+			company.addEmployee(new Employee().setFirstName("First-" + n).setLastName("Last-" + n));
+		}
+
+		MessageEncoding encoding = MessageEncoding.COMPACT.withModelIds(registry);
+		byte[] bytes = company.toBytes(null, encoding);
+		assertTrue(bytes.length < company.toBytes(null, MessageEncoding.COMPACT).length);
+		assertSame(company.getModel(), peerRegistry.getModel(bytes));
+
+		Company decoded = new Company(bytes);
+		assertEquals("Test-Company", decoded.getName());
+		assertEquals("Last-999", decoded.getEmployee().get(999).getLastName());
+
+		MessageObject message = new MessageObject(bytes, peerRegistry, null, null);
+		assertEquals("First-5", message.getReferencedObjects("employee").get(5).getStringProperty("firstName"));
+	}
+
+	@Test
+	public void testModelIdsWithUnknownModels() throws IOException {
+		ObjectPropertyDefinition first = new ObjectPropertyDefinition("model-a", "modelA", 1);
+		first.addProperty("name", 1, PropertyType.STRING);
+		ObjectPropertyDefinition second = new ObjectPropertyDefinition("model-b", "modelB", 1);
+		second.addProperty("name", 1, PropertyType.STRING);
+		ObjectPropertyDefinition third = new ObjectPropertyDefinition("model-c", "modelC", 1);
+		third.addProperty("name", 1, PropertyType.STRING);
+		MessageModelRegistry registry = new MessageModelRegistry();
+		registry.addModel(first).addModel(second).addModel(third);
+
+		MessageModelRegistry localRegistry = new MessageModelRegistry();
+		localRegistry.addModel(third).addModel(first);
+		MessageModelRegistry peerRegistry = new MessageModelRegistry(registry.toBytes(), localRegistry);
+		assertSame(first, peerRegistry.getModelById(0));
+		assertNull(peerRegistry.getModelById(1));
+		assertSame(third, peerRegistry.getModelById(2));
+		assertArrayEquals(registry.toBytes(), peerRegistry.toBytes());
+
+		MessageEncoding encoding = MessageEncoding.DEFAULT.withModelIds(registry);
+		byte[] bytes = new MessageObject(second).setStringProperty("name", "b").toBytes(null, encoding);
+		assertThrows(RuntimeException.class, () -> new MessageObject(bytes, peerRegistry, null, null));
+
+		peerRegistry.addModel(second);
+		assertSame(second, peerRegistry.getModelById(1));
+		assertEquals("b", new MessageObject(bytes, peerRegistry, null, null).getStringProperty("name"));
+		assertArrayEquals(registry.toBytes(), peerRegistry.toBytes());
+	}
+
+	@Test
+	public void testLatestModelVersion() {
+		ObjectPropertyDefinition version1 = new ObjectPropertyDefinition("versioned-model", "versioned", 1);
+		ObjectPropertyDefinition version2 = new ObjectPropertyDefinition("versioned-model", "versioned", 2);
+		ObjectPropertyDefinition version3 = new ObjectPropertyDefinition("versioned-model", "versioned", 3);
+		MessageModelRegistry registry = new MessageModelRegistry();
+		registry.addModel(version1).addModel(version3).addModel(version2);
+
+		assertSame(version3, registry.getLatestModel("versioned-model"));
+		assertSame(version3, registry.getModel("versioned-model", (short) 3));
+		assertNull(registry.getModel("versioned-model", (short) 2));
+		assertEquals(List.of(version3), registry.getLatestModels());
+		assertEquals(3, registry.getModelVersions("versioned-model").size());
+		assertEquals(List.of(version1, version3, version2), registry.getAllModels());
+	}
+
+	@Test
+	public void testModelIdsConcurrentRegistration() throws Exception {
+		MessageModelRegistry registry = new MessageModelRegistry();
+		List<ObjectPropertyDefinition> models = new ArrayList<>();
+		for (int i = 0; i < 400; i++) {
+			models.add(new ObjectPropertyDefinition("model-" + i, "model" + i, 1));
+		}
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			int offset = t;
+			threads.add(new Thread(() -> {
+				for (int i = offset; i < models.size(); i += 4) {
+					registry.addModel(models.get(i));
+					registry.toBytes();
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		BitSet modelIds = new BitSet();
+		for (ObjectPropertyDefinition model : models) {
+			int modelId = registry.getModelId(model);
+			assertSame(model, registry.getModelById(modelId));
+			modelIds.set(modelId);
+		}
+		assertEquals(models.size(), modelIds.cardinality());
+		assertEquals(models.size(), modelIds.nextClearBit(0));
+
+		MessageModelRegistry peerRegistry = new MessageModelRegistry(registry.toBytes(), new MessageModelRegistry());
+		assertNull(peerRegistry.getModelById(0));
+		assertArrayEquals(registry.toBytes(), peerRegistry.toBytes());
+	}
+
+	@Test
+	public void testDecodeInvalidBytes() throws IOException {
+		byte[] bytes = new Company().setName("Test-Company").toBytes();
+		assertNull(Company.getMessageDecoder().decode(Arrays.copyOf(bytes, bytes.length - 4), null));
+		assertEquals("Test-Company", Company.getMessageDecoder().decode(bytes, null).getName());
+	}
+
+	@Test
+	public void testSerializedSize() throws IOException {
+		ObjectPropertyDefinition model = createAllTypesModel();
+		MessageObject message = createAllTypesMessage(model);
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		message.write(new DataOutputStream(bos), null);
+		assertEquals(bos.size(), message.getSerializedSize());
+		assertArrayEquals(bos.toByteArray(), message.toBytes());
+
+		int size = message.getSerializedSize();
+		message.setStringProperty("stringValue", "Grüße aus 😀");
+		assertEquals(size + 9, message.getSerializedSize());
+		message.removeField(model.getPropertyDefinitionByName("stringValue"));
+		assertEquals(size - 3 - 11, message.getSerializedSize());
+		message.getReferencedObject("child").setStringProperty("name", "single-changed");
+		assertEquals(size - 3 - 11 + 8, message.getSerializedSize());
+		assertEquals(message.getSerializedSize(), message.toBytes().length);
+	}
+
+	@Test
+	public void testByteBufCodec() throws IOException {
+		ObjectPropertyDefinition model = createAllTypesModel();
+		MessageObject message = createAllTypesMessage(model);
+		byte[] bytes = message.toBytes();
+		assertAllTypesMessage(new MessageObject(bytes, model, null, null));
+
+		for (ByteBuf buffer : List.of(Unpooled.buffer(16), PooledByteBufAllocator.DEFAULT.directBuffer(16), Unpooled.compositeBuffer())) {
+			message.write(buffer, null);
+			assertEquals(bytes.length, buffer.readableBytes());
+			assertArrayEquals(bytes, ByteBufUtil.getBytes(buffer));
+			assertAllTypesMessage(new MessageObject(buffer, model, null, null));
+			assertEquals(0, buffer.readableBytes());
+			buffer.release();
+		}
+	}
+
+	@Test
+	public void testLazyMessageObject() throws IOException {
+		ObjectPropertyDefinition model = createAllTypesModel();
+		MessageObject message = createAllTypesMessage(model);
+		byte[] bytes = message.toBytes();
+
+		LazyMessageObject lazyMessage = new LazyMessageObject(bytes, model, null, null);
+		assertEquals("Grüße", lazyMessage.getStringProperty("stringValue"));
+		assertFalse(((LazyMessageProperty) lazyMessage.getProperty("children")).isDecoded());
+		assertEquals(bytes.length, lazyMessage.getSerializedSize());
+		assertArrayEquals(bytes, lazyMessage.toBytes());
+		ByteBuf buffer = Unpooled.buffer();
+		lazyMessage.write(buffer, null);
+		assertArrayEquals(bytes, ByteBufUtil.getBytes(buffer));
+
+		LazyMessageObject bufferMessage = new LazyMessageObject(buffer, model, null, null);
+		assertEquals(0, buffer.readableBytes());
+		assertAllTypesMessage(bufferMessage);
+		bufferMessage.getReferencedObjects("children").get(0).setIntProperty("value", 99);
+		MessageObject changedMessage = new MessageObject(bufferMessage.toBytes(), model, null, null);
+		assertEquals(99, changedMessage.getReferencedObjects("children").get(0).getIntProperty("value"));
+
+		lazyMessage.setIntProperty("intValue", 7);
+		assertTrue(lazyMessage.isModified());
+		MessageObject modifiedMessage = new MessageObject(lazyMessage.toBytes(), model, null, null);
+		assertEquals(7, modifiedMessage.getIntProperty("intValue"));
+		assertEquals("Grüße", modifiedMessage.getStringProperty("stringValue"));
+
+		byte[] compactBytes = message.toBytes(null, MessageEncoding.COMPACT);
+		LazyMessageObject compactMessage = new LazyMessageObject(compactBytes, model, null, null);
+		assertArrayEquals(compactBytes, compactMessage.toBytes(null, MessageEncoding.COMPACT));
+		assertArrayEquals(bytes, compactMessage.toBytes());
+		assertAllTypesMessage(compactMessage);
+
+		ByteBuf pooledBuffer = PooledByteBufAllocator.DEFAULT.directBuffer();
+		pooledBuffer.writeBytes(bytes);
+		LazyMessageObject retainedMessage = new LazyMessageObject(pooledBuffer, model, null, null);
+		assertEquals(0, pooledBuffer.readableBytes());
+		pooledBuffer.release();
+		assertEquals(1, retainedMessage.refCnt());
+		assertArrayEquals(bytes, retainedMessage.toBytes());
+		assertAllTypesMessage(retainedMessage);
+		assertTrue(retainedMessage.release());
+		assertEquals(0, pooledBuffer.refCnt());
+
+		LazyMessageObject addedMessage = new LazyMessageObject(bytes, model, null, null);
+		assertFalse(addedMessage.isModified());
+		addedMessage.addReference("children", new MessageObject(model.getPropertyDefinitionByName("children").getReferencedObject()));
+		assertTrue(addedMessage.isModified());
+		LazyMessageObject removedMessage = new LazyMessageObject(bytes, model, null, null);
+		removedMessage.removeField(model.getPropertyDefinitionByName("intValue"));
+		assertTrue(removedMessage.isModified());
+		assertEquals(0, new MessageObject(removedMessage.toBytes(), model, null, null).getIntProperty("intValue"));
+	}
+
+	@Test
+	public void testProjection() throws IOException {
+		ObjectPropertyDefinition model = createAllTypesModel();
+		MessageObject message = createAllTypesMessage(model);
+		for (byte[] bytes : List.of(message.toBytes(), message.toBytes(null, MessageEncoding.COMPACT))) {
+			MessageObject projected = new MessageObject(bytes, PropertyProjection.forKeys(model, 3, 7), null, null);
+			assertEquals(2, projected.getProperties().size());
+			assertEquals(-42, projected.getIntProperty("intValue"));
+			assertEquals("Grüße", projected.getStringProperty("stringValue"));
+
+			projected = new MessageObject(bytes, PropertyProjection.forPaths(model, "allTypes/children/value", "child", "doubleArrayValue"), null, null);
+			assertEquals(3, projected.getProperties().size());
+			assertArrayEquals(new double[]{0.25, -0.25}, projected.getDoubleArrayProperty("doubleArrayValue"), 0);
+			assertEquals("single", projected.getReferencedObject("child").getStringProperty("name"));
+			List<MessageObject> children = projected.getReferencedObjects("children");
+			assertEquals(5, children.size());
+			assertEquals(3, children.get(3).getIntProperty("value"));
+			assertNull(children.get(3).getStringProperty("name"));
+		}
+
+		Company company = new Company().setName("Test-Company").setType("Type").setCeo(new Employee().setFirstName("First"));
+		company.addEmployee(new Employee().setFirstName("First-0").setLastName("Last-0"));
+		Company projectedCompany = Company.getMessageDecoder().decode(company.toBytes(), PropertyProjection.forPaths(company.getModel(), "company/employee/lastName", "name"), null);
+		assertEquals("Test-Company", projectedCompany.getName());
+		assertNull(projectedCompany.getType());
+		assertNull(projectedCompany.getCeo());
+		assertEquals("Last-0", projectedCompany.getEmployee().get(0).getLastName());
+		assertNull(projectedCompany.getEmployee().get(0).getFirstName());
+	}
+
+	@Test
+	public void testFramedEncoding() throws IOException {
+		ObjectPropertyDefinition model = createAllTypesModel();
+		MessageObject message = createAllTypesMessage(model);
+		for (MessageEncoding encoding : List.of(new MessageEncoding(MessageEncoding.FLAG_FRAMED), new MessageEncoding(MessageEncoding.FLAG_COMPACT | MessageEncoding.FLAG_FRAMED))) {
+			byte[] bytes = message.toBytes(null, encoding);
+			assertAllTypesMessage(new MessageObject(bytes, model, null, null));
+			assertAllTypesMessage(new LazyMessageObject(bytes, model, null, null));
+
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			message.write(new DataOutputStream(bos), null, encoding);
+			assertArrayEquals(bytes, bos.toByteArray());
+			ByteBuf buffer = Unpooled.buffer();
+			message.write(buffer, null, encoding);
+			assertArrayEquals(bytes, ByteBufUtil.getBytes(buffer));
+			assertAllTypesMessage(new MessageObject(buffer, model, null, null));
+
+			MessageReader reader = new MessageReader(bytes, 1, bytes.length - 1);
+			encoding.skipObject(reader);
+			assertEquals(0, reader.remaining());
+
+			ObjectPropertyDefinition olderModel = new ObjectPropertyDefinition("all-types", "allTypes", 1);
+			olderModel.addProperty("intValue", 3, PropertyType.INT);
+			olderModel.addProperty("stringValue", 7, PropertyType.STRING);
+			MessageObject olderMessage = new MessageObject(bytes, olderModel, null, null);
+			assertEquals(2, olderMessage.getProperties().size());
+			assertEquals(-42, olderMessage.getIntProperty("intValue"));
+			assertEquals("Grüße", olderMessage.getStringProperty("stringValue"));
+		}
+	}
+
+	@Test
+	public void testCompression() throws IOException {
+		ObjectPropertyDefinition model = createAllTypesModel();
+		MessageObject message = createAllTypesMessage(model);
+		MessageEncoding encoding = MessageEncoding.COMPACT.withCompression(512);
+		byte[] smallBytes = message.toBytes(null, encoding);
+		assertEquals(MessageEncoding.COMPACT.getHeader(), smallBytes[0] & 0xFF);
+		assertArrayEquals(message.toBytes(null, MessageEncoding.COMPACT), smallBytes);
+
+		message.setStringArrayProperty("stringArrayValue", new String[]{"a", "b", "c", "document ".repeat(1_000)});
+		byte[] uncompressedBytes = message.toBytes(null, MessageEncoding.COMPACT);
+		byte[] bytes = message.toBytes(null, encoding);
+		assertEquals(encoding.getHeader(), bytes[0] & 0xFF);
+		assertTrue(bytes.length * 5 < uncompressedBytes.length);
+		assertEquals("all-types", MessageObject.readMessageObjectUuid(bytes));
+
+		MessageObject decoded = new MessageObject(bytes, model, null, null);
+		assertEquals("document ".repeat(1_000), decoded.getStringArrayProperty("stringArrayValue")[3]);
+		assertEquals("single", decoded.getReferencedObject("child").getStringProperty("name"));
+		assertEquals(-42, new MessageObject(new DataInputStream(new ByteArrayInputStream(bytes)), model, null, null).getIntProperty("intValue"));
+		ByteBuf buffer = Unpooled.buffer();
+		message.write(buffer, null, encoding);
+		buffer.writeInt(42);
+		assertEquals(5, new MessageObject(buffer, model, null, null).getReferencedObjects("children").size());
+		assertEquals(42, buffer.readInt());
+
+		LazyMessageObject lazyMessage = new LazyMessageObject(bytes, model, null, null);
+		assertEquals(-42, lazyMessage.getIntProperty("intValue"));
+		assertArrayEquals(bytes, lazyMessage.toBytes(null, encoding));
+		assertArrayEquals(uncompressedBytes, lazyMessage.toBytes(null, MessageEncoding.COMPACT));
+	}
+
+	@Test
+	public void testColumnarEncoding() throws IOException {
+		ObjectPropertyDefinition model = createAllTypesModel();
+		ObjectPropertyDefinition child = model.getPropertyDefinitionByName("child").getReferencedObject();
+		MessageObject message = createAllTypesMessage(model);
+		List<MessageObject> rows = new ArrayList<>();
+		for (int i = 0; i < 10_000; i++) {
+			MessageObject row = new MessageObject(child).setIntProperty("value", i);
+			if (i % 3 != 0) {
+				row.setStringProperty("name", "row-" + i);
+			}
+			rows.add(row);
+		}
+		message.setReferencedObjects("children", rows);
+
+		MessageEncoding encoding = MessageEncoding.COMPACT.withFlags(MessageEncoding.FLAG_COLUMNAR);
+		byte[] bytes = message.toBytes(null, encoding);
+		assertTrue(bytes.length * 2 < message.toBytes(null, MessageEncoding.COMPACT).length);
+		MessageObject decoded = new MessageObject(bytes, model, null, null);
+		assertEquals(-42, decoded.getIntProperty("intValue"));
+		List<MessageObject> decodedRows = decoded.getReferencedObjects("children");
+		assertEquals(10_000, decodedRows.size());
+		assertNull(decodedRows.get(3).getStringProperty("name"));
+		assertEquals("row-4", decodedRows.get(4).getStringProperty("name"));
+		assertEquals(9_999, decodedRows.get(9_999).getIntProperty("value"));
+		assertArrayEquals(bytes, decoded.toBytes(null, encoding));
+
+		MessageEncoding framedEncoding = encoding.withFlags(MessageEncoding.FLAG_FRAMED);
+		assertEquals(7_777, new MessageObject(message.toBytes(null, framedEncoding), model, null, null).getReferencedObjects("children").get(7_777).getIntProperty("value"));
+
+		MessageObject projected = new MessageObject(bytes, PropertyProjection.forPaths(model, "children/name", "stringValue"), null, null);
+		assertEquals("Grüße", projected.getStringProperty("stringValue"));
+		assertEquals("row-5", projected.getReferencedObjects("children").get(5).getStringProperty("name"));
+		assertNull(projected.getReferencedObjects("children").get(5).getProperty("value"));
+
+		LazyMessageObject lazyMessage = new LazyMessageObject(bytes, model, null, null);
+		assertEquals("single", lazyMessage.getReferencedObject("child").getStringProperty("name"));
+		assertArrayEquals(bytes, lazyMessage.toBytes(null, encoding));
+		assertEquals(10_000, lazyMessage.getReferencedObjects("children").size());
+	}
+
+	@Test
+	public void testFixedLayoutEncoding() throws IOException {
+		ObjectPropertyDefinition model = createAllTypesModel();
+		MessageObject message = createAllTypesMessage(model);
+		message.setProperty("floatValue", null);
+		MessageEncoding encoding = MessageEncoding.COMPACT.withFlags(MessageEncoding.FLAG_FIXED_LAYOUT);
+		byte[] bytes = message.toBytes(null, encoding);
+		assertTrue(bytes.length < message.toBytes(null, MessageEncoding.COMPACT).length);
+		MessageObject decoded = new MessageObject(bytes, model, null, null);
+		assertNull(decoded.getProperty("floatValue"));
+		decoded.setFloatProperty("floatValue", 1.5f);
+		assertAllTypesMessage(decoded);
+
+		for (MessageEncoding combinedEncoding : List.of(encoding.withFlags(MessageEncoding.FLAG_FRAMED), encoding.withFlags(MessageEncoding.FLAG_COLUMNAR), encoding.withCompression(0))) {
+			byte[] combinedBytes = message.toBytes(null, combinedEncoding);
+			MessageObject combined = new MessageObject(combinedBytes, model, null, null);
+			combined.setFloatProperty("floatValue", 1.5f);
+			assertAllTypesMessage(combined);
+		}
+
+		MessageObject projected = new MessageObject(bytes, PropertyProjection.forPaths(model, "children/value", "doubleArrayValue"), null, null);
+		assertEquals(2, projected.getProperties().size());
+		assertEquals(4, projected.getReferencedObjects("children").get(4).getIntProperty("value"));
+		assertNull(projected.getReferencedObjects("children").get(4).getProperty("name"));
+
+		ByteBuf buffer = Unpooled.buffer();
+		message.write(buffer, null, encoding);
+		buffer.writeInt(42);
+		LazyMessageObject lazyMessage = new LazyMessageObject(buffer, model, null, null);
+		assertEquals(42, buffer.readInt());
+		assertEquals("single", lazyMessage.getReferencedObject("child").getStringProperty("name"));
+		assertArrayEquals(bytes, lazyMessage.toBytes(null, encoding));
+		assertArrayEquals(message.toBytes(null, MessageEncoding.COMPACT), lazyMessage.toBytes(null, MessageEncoding.COMPACT));
+	}
+
+	@Test
+	public void testSharedReferences() throws IOException {
+		ObjectPropertyDefinition model = createAllTypesModel();
+		MessageObject message = createAllTypesMessage(model);
+		MessageObject sharedChild = message.getReferencedObject("child");
+		List<MessageObject> children = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			children.add(sharedChild);
+		}
+		message.setReferencedObjects("children", children);
+
+		MessageEncoding encoding = MessageEncoding.COMPACT.withFlags(MessageEncoding.FLAG_SHARED_REFERENCES);
+		byte[] bytes = message.toBytes(null, encoding);
+		assertTrue(bytes.length * 5 < message.toBytes(null, MessageEncoding.COMPACT).length);
+		assertArrayEquals(bytes, message.toBytes(null, encoding));
+		MessageObject decoded = new MessageObject(bytes, model, null, null);
+		List<MessageObject> decodedChildren = decoded.getReferencedObjects("children");
+		assertEquals(500, decodedChildren.size());
+		assertSame(decoded.getReferencedObject("child"), decodedChildren.get(0));
+		assertSame(decodedChildren.get(0), decodedChildren.get(499));
+		assertEquals("single", decodedChildren.get(250).getStringProperty("name"));
+
+		for (MessageEncoding combinedEncoding : List.of(encoding.withFlags(MessageEncoding.FLAG_FRAMED), encoding.withFlags(MessageEncoding.FLAG_FIXED_LAYOUT), encoding.withCompression(0))) {
+			MessageObject combined = new MessageObject(message.toBytes(null, combinedEncoding), model, null, null);
+			assertSame(combined.getReferencedObject("child"), combined.getReferencedObjects("children").get(42));
+		}
+
+		MessageObject projected = new MessageObject(bytes, PropertyProjection.forPaths(model, "children/name"), null, null);
+		assertNull(projected.getProperty("child"));
+		assertEquals("single", projected.getReferencedObjects("children").get(7).getStringProperty("name"));
+
+		LazyMessageObject lazyMessage = new LazyMessageObject(bytes, model, null, null);
+		assertSame(lazyMessage.getReferencedObject("child"), lazyMessage.getReferencedObjects("children").get(499));
+		assertArrayEquals(bytes, lazyMessage.toBytes(null, encoding));
+
+		MessageWriter body = new MessageWriter(64);
+		message.writeEncoded(body, null, encoding);
+		byte[] firstBody = body.copyBytes();
+		body = new MessageWriter(64);
+		message.writeEncoded(body, null, encoding);
+		assertArrayEquals(firstBody, body.copyBytes());
+
+		EmbeddedChannel channel = new EmbeddedChannel(new MessageObjectEncoder(null, encoding));
+		channel.writeOutbound(message, message);
+		ByteBuf firstFrame = channel.readOutbound();
+		ByteBuf secondFrame = channel.readOutbound();
+		assertEquals(firstFrame, secondFrame);
+		firstFrame.release();
+		secondFrame.release();
+		channel.finishAndReleaseAll();
+	}
+
+	@Test
+	public void testChannelWriter() throws IOException {
+		ObjectPropertyDefinition model = createAllTypesModel();
+		model.addFileProperty("fileValue", 17);
+		MessageObject message = createAllTypesMessage(model);
+		byte[] largeBytes = new byte[1_000_000];
+		for (int i = 0; i < largeBytes.length; i++) {
+			largeBytes[i] = (byte) i;
+		}
+		message.setByteArrayProperty("byteArrayValue", largeBytes);
+		File file = File.createTempFile("message-channel-writer", ".bin");
+		file.deleteOnExit();
+		Files.write(file.toPath(), "file content".getBytes(StandardCharsets.UTF_8));
+		message.setFileProperty("fileValue", file);
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		MessageChannelWriter writer = new MessageChannelWriter(Channels.newChannel(bos), 4096);
+		writer.writeMessage(message, MessageEncoding.COMPACT);
+		writer.writeMessage(message, null, null);
+		byte[] bytes = bos.toByteArray();
+		assertEquals(bytes.length, writer.getWrittenBytes());
+
+		MessageChannelReader reader = new MessageChannelReader(new ByteArrayInputStream(bytes), file.getParentFile());
+		MessageObject decoded = reader.readMessage(model, null);
+		assertArrayEquals(largeBytes, decoded.getByteArrayProperty("byteArrayValue"));
+		File decodedFile = decoded.getFileProperty("fileValue").getFile();
+		decodedFile.deleteOnExit();
+		assertNotEquals(file, decodedFile);
+		assertEquals("file content", new String(Files.readAllBytes(decodedFile.toPath()), StandardCharsets.UTF_8));
+		MessageObject legacy = reader.readMessage(model, null);
+		assertNull(legacy.getFileProperty("fileValue").getFile());
+		assertArrayEquals(message.toBytes(), legacy.toBytes());
+	}
+
+	@Test
+	public void testResumableDecoder() throws IOException {
+		ObjectPropertyDefinition model = createAllTypesModel();
+		MessageObject message = createAllTypesMessage(model);
+		MessageEncoding compact = MessageEncoding.COMPACT;
+		List<MessageEncoding> encodings = List.of(MessageEncoding.DEFAULT, compact, compact.withFlags(MessageEncoding.FLAG_FRAMED | MessageEncoding.FLAG_SHARED_REFERENCES),
+				compact.withFlags(MessageEncoding.FLAG_FIXED_LAYOUT | MessageEncoding.FLAG_COLUMNAR), compact.withCompression(0));
+		ByteBuf stream = Unpooled.buffer();
+		for (MessageEncoding encoding : encodings) {
+			message.write(stream, null, encoding);
+		}
+		byte[] bytes = ByteBufUtil.getBytes(stream);
+
+		for (int chunkSize : new int[]{1, 7, 100, bytes.length}) {
+			ResumableMessageDecoder decoder = new ResumableMessageDecoder(model, null, null);
+			ByteBuf cumulation = Unpooled.buffer();
+			List<MessageObject> messages = new ArrayList<>();
+			for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+				cumulation.writeBytes(bytes, offset, Math.min(chunkSize, bytes.length - offset));
+				messages.addAll(decoder.decodeAll(cumulation));
+				cumulation.discardReadBytes();
+			}
+			assertFalse(decoder.isDecoding());
+			assertEquals(0, cumulation.readableBytes());
+			assertEquals(encodings.size(), messages.size());
+			for (MessageObject decoded : messages) {
+				assertAllTypesMessage(decoded);
+			}
+		}
+	}
+
+	@Test
+	public void testNettyCodec() {
+		ObjectPropertyDefinition model = createAllTypesModel();
+		MessageObject message = createAllTypesMessage(model);
+		ModelRegistry registry = new MessageModelRegistry().addModel(model);
+		for (MessageEncoding encoding : Arrays.asList(null, MessageEncoding.COMPACT.withFlags(MessageEncoding.FLAG_FRAMED))) {
+			EmbeddedChannel encoderChannel = new EmbeddedChannel(new MessageObjectEncoder(null, encoding));
+			assertTrue(encoderChannel.writeOutbound(message, message));
+			ByteBuf encoded = Unpooled.buffer();
+			ByteBuf buf;
+			while ((buf = encoderChannel.readOutbound()) != null) {
+				encoded.writeBytes(buf);
+				buf.release();
+			}
+
+			EmbeddedChannel decoderChannel = new EmbeddedChannel(new MessageObjectFrameDecoder(registry, null, null));
+			decoderChannel.writeInbound(encoded.readRetainedSlice(10));
+			assertNull(decoderChannel.readInbound());
+			decoderChannel.writeInbound(encoded);
+			MessageObject first = decoderChannel.readInbound();
+			MessageObject second = decoderChannel.readInbound();
+			assertAllTypesMessage(first);
+			assertAllTypesMessage(second);
+			assertNull(decoderChannel.readInbound());
+			assertFalse(decoderChannel.finish());
+		}
+	}
+
+	@Test
+	public void testNettyCodecGeneratedPojos() throws IOException {
+		Company company = new Company().setName("Test-Company").setCeo(new Employee().setFirstName("First").setVegan(true));
+		company.addEmployee(new Employee().setLastName("Last").setStatus(2));
+		MessageModelRegistry registry = new MessageModelRegistry(Company.getModelCollection());
+		MessageEncoding compact = MessageEncoding.COMPACT;
+		for (MessageEncoding encoding : Arrays.asList(null, compact.withFlags(MessageEncoding.FLAG_FRAMED), compact.withModelIds(registry), compact.withCompression(0))) {
+			EmbeddedChannel encoderChannel = new EmbeddedChannel(new MessageObjectEncoder(null, encoding));
+			assertTrue(encoderChannel.writeOutbound(company));
+			ByteBuf encoded = encoderChannel.readOutbound();
+
+			EmbeddedChannel decoderChannel = new EmbeddedChannel(new MessageObjectFrameDecoder(registry, null, registry));
+			decoderChannel.writeInbound(encoded);
+			MessageObject decoded = decoderChannel.readInbound();
+			assertSame(Company.class, decoded.getClass());
+			Company decodedCompany = (Company) decoded;
+			assertSame(Employee.class, decodedCompany.getCeo().getClass());
+			assertTrue(decodedCompany.getCeo().isVegan());
+			assertEquals(2, decodedCompany.getEmployee().get(0).getStatus());
+			assertArrayEquals(company.toBytes(), decoded.toBytes());
+			assertFalse(decoderChannel.finish());
+			assertFalse(encoderChannel.finish());
+		}
+	}
+
+	@Test
+	public void testSlotStorage() throws IOException {
+		ObjectPropertyDefinition model = createAllTypesModel();
+		for (int i = 0; i < model.getPropertyDefinitions().size(); i++) {
+			assertEquals(i, model.getPropertyDefinitions().get(i).getOrdinal());
+		}
+		MessageObject message = new MessageObject(model);
+		message.setIntProperty("intValue", 1);
+		message.setStringProperty("stringValue", "a");
+		message.setIntProperty("intValue", 2);
+		assertEquals(2, message.getProperties().size());
+		assertEquals(2, message.getIntProperty("intValue"));
+
+		message.setProperty("stringValue", null);
+		assertEquals(1, message.getProperties().size());
+		assertNull(message.getProperty("stringValue"));
+		message.removeField(model.getPropertyDefinitionByName("intValue"));
+		assertTrue(message.getProperties().isEmpty());
+
+		MessageObject allTypes = createAllTypesMessage(model);
+		MessageObject decoded = new MessageObject(allTypes.toBytes(), model, null, null);
+		assertArrayEquals(allTypes.toBytes(), decoded.toBytes());
+		assertEquals(allTypes.getProperties().size(), decoded.getProperties().size());
+	}
+
+	@Test
+	public void testHandleAccessors() throws IOException {
+		ObjectPropertyDefinition model = createAllTypesModel();
+		PropertyDefinition intValue = model.getPropertyDefinitionByName("intValue");
+		PropertyDefinition stringValue = model.getPropertyDefinitionByName("stringValue");
+		MessageObject message = new MessageObject(model);
+		message.setIntProperty(intValue, 7);
+		message.setStringProperty(stringValue, "handle");
+		assertEquals(7, message.getIntProperty("intValue"));
+		assertEquals(7, message.getIntProperty(intValue));
+		assertEquals("handle", message.getStringProperty(stringValue));
+		assertSame(message.getProperty(stringValue), message.getProperty(stringValue.getKey()));
+
+		message.setProperty(intValue.getKey(), 8);
+		assertEquals(8, message.getIntProperty(intValue));
+		message.setProperty(stringValue, null);
+		assertNull(message.getStringProperty(stringValue));
+		assertNull(message.getProperty(stringValue.getKey()));
+	}
+
+	@Test
+	public void testCompiledCodec() throws IOException {
+		ObjectPropertyDefinition localModel = createAllTypesModel();
+		ObjectPropertyDefinition remoteModel = new ObjectPropertyDefinition(localModel.toBytes());
+		MessageModelRegistry registry = new MessageModelRegistry();
+		registry.addModel(remoteModel);
+		CompiledMessageCodec codec = registry.getModelCodec(remoteModel);
+		assertNotNull(codec);
+		assertNull(registry.getMessageDecoder(remoteModel.getObjectUuid()));
+		assertFalse(registry.containsDecoder(remoteModel.getObjectUuid()));
+		assertSame(remoteModel.getPropertyDefinitionByName("child").getReferencedObject(), remoteModel.getPropertyDefinitionByName("children").getReferencedObject());
+		assertArrayEquals(localModel.toBytes(), remoteModel.toBytes());
+
+		MessageObject message = createAllTypesMessage(localModel);
+		byte[] bytes = message.toBytes();
+		MessageObject decoded = registry.decode(bytes, null);
+		assertSame(remoteModel, decoded.getModel());
+		assertArrayEquals(bytes, decoded.toBytes());
+		assertArrayEquals(bytes, codec.toBytes(decoded, null));
+		assertArrayEquals(bytes, codec.decode(Unpooled.wrappedBuffer(bytes), null).toBytes());
+		assertArrayEquals(bytes, codec.decode(new DataInputStream(new ByteArrayInputStream(bytes)), null).toBytes());
+		assertArrayEquals(bytes, registry.decode(message.toBytes(null, MessageEncoding.COMPACT), null).toBytes());
+	}
+
+	@Test
+	public void testDecodeInto() throws IOException {
+		ObjectPropertyDefinition model = createAllTypesModel();
+		MessageObject message = createAllTypesMessage(model);
+		byte[] bytes = message.toBytes();
+		MessageObject target = MessageObject.decodeInto(new MessageObject(model), bytes, null, null);
+		assertArrayEquals(bytes, target.toBytes());
+		MessageObject child = target.getReferencedObject("child");
+		List<MessageObject> children = target.getReferencedObjects("children");
+		MessageObject firstChild = children.get(0);
+
+		MessageObject changed = new MessageObject(message.toBytes(), model, null, null);
+		changed.setIntProperty("intValue", 43);
+		changed.setProperty("stringValue", null);
+		changed.getReferencedObject("child").setIntProperty("value", 2);
+		changed.setReferencedObjects("children", new ArrayList<>(changed.getReferencedObjects("children").subList(0, 2)));
+		byte[] changedBytes = changed.toBytes();
+		assertSame(target, MessageObject.decodeInto(target, changedBytes, null, null));
+		assertArrayEquals(changedBytes, target.toBytes());
+		assertSame(child, target.getReferencedObject("child"));
+		assertSame(children, target.getReferencedObjects("children"));
+		assertSame(firstChild, target.getReferencedObjects("children").get(0));
+		assertEquals(2, target.getReferencedObjects("children").size());
+		assertNull(target.getStringProperty("stringValue"));
+
+		MessageObject.decodeInto(target, Unpooled.wrappedBuffer(message.toBytes(null, MessageEncoding.COMPACT)), null, null);
+		assertArrayEquals(bytes, target.toBytes());
+		target.clear();
+		assertTrue(target.getProperties().isEmpty());
+
+		MessageModelRegistry registry = new MessageModelRegistry();
+		registry.addModel(model);
+		CompiledMessageCodec codec = registry.getModelCodec(model);
+		MessageObject pooled = codec.decodePooled(new MessageReader(bytes), null);
+		assertArrayEquals(bytes, pooled.toBytes());
+		codec.release(pooled);
+		assertSame(pooled, codec.decodePooled(new MessageReader(changedBytes), null));
+		assertArrayEquals(changedBytes, pooled.toBytes());
+	}
+
+	@Test
+	public void testScratchWriter() throws IOException {
+		ObjectPropertyDefinition model = createAllTypesModel();
+		MessageObject message = createAllTypesMessage(model);
+		MessageWriter expected = new MessageWriter();
+		message.write(expected, null);
+		byte[] bytes = message.toBytes();
+		assertArrayEquals(expected.toByteArray(), bytes);
+		assertNotSame(bytes, message.toBytes());
+		assertArrayEquals(bytes, message.toBytes());
+		assertArrayEquals(model.toBytes(), new ObjectPropertyDefinition(model.toBytes()).toBytes());
+
+		MessageWriter writer = MessageWriter.acquire();
+		try {
+			assertNotSame(writer, MessageWriter.acquire());
+			assertArrayEquals(bytes, message.toBytes());
+		} finally {
+			writer.release();
+		}
+		MessageWriter scratchWriter = MessageWriter.acquire();
+		scratchWriter.release();
+		assertSame(writer, scratchWriter);
+	}
+
+	@Test
+	public void testZeroCopyByteArrays() throws IOException {
+		ObjectPropertyDefinition model = createAllTypesModel();
+		byte[] blob = new byte[MessageUtils.ZERO_COPY_THRESHOLD * 4];
+		for (int i = 0; i < blob.length; i++) {
+			blob[i] = (byte) i;
+		}
+		MessageObject message = createAllTypesMessage(model).setByteArrayProperty("byteArrayValue", blob);
+		byte[] bytes = message.toBytes();
+
+		CompositeByteBuf composite = message.toCompositeByteBuf(null);
+		assertTrue(composite.numComponents() > 2);
+		assertArrayEquals(bytes, ByteBufUtil.getBytes(composite));
+		composite.release();
+
+		ByteBuf buf = Unpooled.wrappedBuffer(bytes);
+		ReferenceCountedMessage retained = ReferenceCountedMessage.decode(buf, model, null, null);
+		MessageObject decoded = retained.getMessage();
+		assertEquals(2, buf.refCnt());
+		ByteBuf slice = decoded.getByteBufProperty("byteArrayValue");
+		assertTrue(slice.isReadOnly());
+		assertArrayEquals(blob, decoded.getByteArrayProperty("byteArrayValue"));
+		assertArrayEquals(bytes, decoded.toBytes());
+		decoded.setByteArrayProperty("byteArrayValue", new byte[]{1, 2, 3});
+		assertEquals(2, buf.refCnt());
+		retained.release();
+		assertEquals(1, buf.refCnt());
+
+		retained = ReferenceCountedMessage.decode(Unpooled.wrappedBuffer(bytes), model, null, null);
+		composite = retained.getMessage().toCompositeByteBuf(null);
+		assertArrayEquals(bytes, ByteBufUtil.getBytes(composite));
+		retained.release();
+		assertArrayEquals(bytes, ByteBufUtil.getBytes(composite));
+		composite.release();
+		buf.release();
+		assertEquals(0, buf.refCnt());
+	}
+
+	@Test
+	public void testReferenceCountedMessageReleasesBuffer() throws IOException {
+		ResourceLeakDetector.Level level = ResourceLeakDetector.getLevel();
+		ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+		try {
+			ObjectPropertyDefinition model = createAllTypesModel();
+			byte[] blob = new byte[MessageUtils.ZERO_COPY_THRESHOLD * 2];
+			Arrays.fill(blob, (byte) 7);
+			byte[] bytes = createAllTypesMessage(model).setByteArrayProperty("byteArrayValue", blob).toBytes();
+			ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(bytes.length);
+			buf.writeBytes(bytes);
+
+			ReferenceCountedMessage message = ReferenceCountedMessage.decode(buf, model, null, null);
+			buf.release();
+			assertEquals(1, buf.refCnt());
+			assertEquals(1, message.refCnt());
+			assertArrayEquals(blob, message.getMessage().getByteArrayProperty("byteArrayValue"));
+
+			message.retain();
+			assertFalse(message.release());
+			assertEquals(1, buf.refCnt());
+			assertTrue(message.release());
+			assertEquals(0, buf.refCnt());
+			assertThrows(RuntimeException.class, message::getMessage);
+
+			ByteBuf truncated = PooledByteBufAllocator.DEFAULT.heapBuffer();
+			truncated.writeBytes(bytes, 0, bytes.length / 2);
+			assertThrows(Exception.class, () -> ReferenceCountedMessage.decode(truncated, model, null, null));
+			assertEquals(1, truncated.refCnt());
+			truncated.release();
+		} finally {
+			ResourceLeakDetector.setLevel(level);
+		}
+	}
+
+	@Test
+	public void testByteBufferCodec() throws IOException {
+		ObjectPropertyDefinition model = createAllTypesModel();
+		MessageObject message = createAllTypesMessage(model);
+		byte[] bytes = message.toBytes();
+		MessageModelRegistry registry = new MessageModelRegistry();
+		registry.addModel(model);
+
+		File file = File.createTempFile("message-byte-buffer", ".bin");
+		file.deleteOnExit();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer mappedBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes.length);
+			for (ByteBuffer buffer : Arrays.asList(ByteBuffer.allocate(bytes.length), ByteBuffer.allocateDirect(bytes.length), mappedBuffer)) {
+				message.write(buffer, null);
+				assertFalse(buffer.hasRemaining());
+				buffer.flip();
+				byte[] written = new byte[bytes.length];
+				buffer.duplicate().get(written);
+				assertArrayEquals(bytes, written);
+				MessageObject decoded = new MessageObject(buffer, model, null, null);
+				assertFalse(buffer.hasRemaining());
+				assertAllTypesMessage(decoded);
+				assertArrayEquals(bytes, decoded.toBytes());
+				buffer.rewind();
+				assertArrayEquals(bytes, new MessageObject(buffer, registry, null, null).toBytes());
+			}
+		}
+		assertArrayEquals(Files.readAllBytes(file.toPath()), bytes);
+
+		byte[] compactBytes = message.toBytes(null, MessageEncoding.COMPACT);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(compactBytes.length + 16);
+		message.write(buffer, null, MessageEncoding.COMPACT);
+		assertEquals(compactBytes.length, buffer.position());
+		buffer.flip();
+		assertArrayEquals(bytes, new MessageObject(buffer, model, null, null).toBytes());
+		assertFalse(buffer.hasRemaining());
+
+		MessageEncoding framedEncoding = MessageEncoding.COMPACT.withFlags(MessageEncoding.FLAG_FRAMED);
+		byte[] framedBytes = message.toBytes(null, framedEncoding);
+		buffer = ByteBuffer.allocateDirect(framedBytes.length);
+		message.write(buffer, null, framedEncoding);
+		buffer.flip();
+		byte[] written = new byte[framedBytes.length];
+		buffer.get(written);
+		assertArrayEquals(framedBytes, written);
+		try {
+			message.write(ByteBuffer.allocateDirect(bytes.length - 1), null);
+			fail();
+		} catch (EOFException expected) {
+		}
+
+		buffer = ByteBuffer.allocate(bytes.length);
+		new LazyMessageObject(bytes, model, null, null).write(buffer, null);
+		assertArrayEquals(bytes, buffer.array());
+		try {
+			message.write(ByteBuffer.allocate(bytes.length).order(ByteOrder.LITTLE_ENDIAN), null);
+			fail();
+		} catch (RuntimeException expected) {
+		}
+	}
+
+	@Test
+	public void testSerializedSizeWithFileSink() throws IOException {
+		ObjectPropertyDefinition model = new ObjectPropertyDefinition("file-model", "file", 1);
+		model.addStringProperty("name", 1);
+		model.addFileProperty("file", 2);
+		File file = File.createTempFile("serialized-size", ".bin");
+		file.deleteOnExit();
+		Files.write(file.toPath(), "file content".getBytes(StandardCharsets.UTF_8));
+		MessageObject message = new MessageObject(model).setStringProperty("name", "name").setFileProperty("file", file);
+		String fileId = "file-id-12345";
+		FileSink fileSink = f -> fileId;
+
+		int size = message.getSerializedSize();
+		assertEquals(size, message.toBytes().length);
+		byte[] bytes = message.toBytes(fileSink);
+		assertEquals(size + MessageUtils.getStringSize(fileId) - MessageUtils.getStringSize(null), bytes.length);
+
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		message.write(buffer, null);
+		assertEquals(size, buffer.position());
+		try {
+			message.write(ByteBuffer.allocate(size), fileSink);
+			fail("buffer without room for the file id");
+		} catch (EOFException e) {
+			assertTrue(e.getMessage().contains("too small"));
+		}
+		buffer = ByteBuffer.allocate(bytes.length);
+		message.write(buffer, fileSink);
+		assertArrayEquals(bytes, buffer.array());
+	}
+
+	@Test
+	public void testPatch() throws IOException {
+		ObjectPropertyDefinition model = createAllTypesModel();
+		ObjectPropertyDefinition child = model.getPropertyDefinitionByName("child").getReferencedObject();
+		MessageObject previous = createAllTypesMessage(model);
+		MessageObject current = new MessageObject(previous.toBytes(), model, null, null);
+		current.setIntProperty("intValue", 43);
+		current.setProperty("stringValue", null);
+		current.getReferencedObject("child").setIntProperty("value", 2);
+		List<MessageObject> children = new ArrayList<>(current.getReferencedObjects("children"));
+		children.get(1).setStringProperty("name", "changed");
+		children.remove(3);
+		children.add(new MessageObject(child).setStringProperty("name", "child-new").setIntProperty("value", 99));
+		current.setReferencedObjects("children", children);
+
+		MessagePatch patch = MessagePatch.create(previous, current);
+		assertFalse(patch.isEmpty());
+		assertTrue(MessagePatch.create(previous, previous).isEmpty());
+		byte[] bytes = patch.toBytes();
+		assertTrue(bytes.length < current.toBytes().length);
+
+		MessageObject target = new MessageObject(previous.toBytes(), model, null, null);
+		new MessagePatch(bytes, model, null, null).apply(target);
+		assertEquals(43, target.getIntProperty("intValue"));
+		assertNull(target.getStringProperty("stringValue"));
+		assertEquals(2, target.getReferencedObject("child").getIntProperty("value"));
+		List<MessageObject> patchedChildren = target.getReferencedObjects("children");
+		assertEquals(5, patchedChildren.size());
+		assertEquals("changed", patchedChildren.get(1).getStringProperty("name"));
+		assertEquals("child-4", patchedChildren.get(3).getStringProperty("name"));
+		assertEquals(99, patchedChildren.get(4).getIntProperty("value"));
+		assertArrayEquals(new int[]{1, -1, Integer.MAX_VALUE, Integer.MIN_VALUE}, target.getIntArrayProperty("intArrayValue"));
+		assertTrue(MessagePatch.create(target, current).isEmpty());
+	}
+
+	static ObjectPropertyDefinition createAllTypesModel() {
+		ObjectPropertyDefinition child = new ObjectPropertyDefinition("all-types-child", "child", 1);
+		child.addProperty("name", 1, PropertyType.STRING);
+		child.addProperty("value", 2, PropertyType.INT);
+
+		ObjectPropertyDefinition model = new ObjectPropertyDefinition("all-types", "allTypes", 1);
+		model.addProperty("booleanValue", 1, PropertyType.BOOLEAN);
+		model.addProperty("byteValue", 2, PropertyType.BYTE);
+		model.addProperty("intValue", 3, PropertyType.INT);
+		model.addProperty("longValue", 4, PropertyType.LONG);
+		model.addProperty("floatValue", 5, PropertyType.FLOAT);
+		model.addProperty("doubleValue", 6, PropertyType.DOUBLE);
+		model.addProperty("stringValue", 7, PropertyType.STRING);
+		model.addProperty("bitSetValue", 8, PropertyType.BITSET);
+		model.addProperty("byteArrayValue", 9, PropertyType.BYTE_ARRAY);
+		model.addProperty("intArrayValue", 10, PropertyType.INT_ARRAY);
+		model.addProperty("longArrayValue", 11, PropertyType.LONG_ARRAY);
+		model.addProperty("floatArrayValue", 12, PropertyType.FLOAT_ARRAY);
+		model.addProperty("doubleArrayValue", 13, PropertyType.DOUBLE_ARRAY);
+		model.addProperty("stringArrayValue", 14, PropertyType.STRING_ARRAY);
+		model.addSingleReference("child", 15, child);
+		model.addMultiReference("children", 16, child);
+		return model;
+	}
+
+	static MessageObject createAllTypesMessage(ObjectPropertyDefinition model) {
+		ObjectPropertyDefinition child = model.getPropertyDefinitionByName("child").getReferencedObject();
+		BitSet bitSet = new BitSet();
+		bitSet.set(3);
+		bitSet.set(70);
+		bitSet.set(1000);
+		MessageObject message = new MessageObject(model)
+				.setBooleanProperty("booleanValue", true)
+				.setByteProperty("byteValue", (byte) -7)
+				.setIntProperty("intValue", -42)
+				.setLongProperty("longValue", 1234567890123L)
+				.setFloatProperty("floatValue", 1.5f)
+				.setDoubleProperty("doubleValue", -2.25)
+				.setStringProperty("stringValue", "Grüße")
+				.setBitSetProperty("bitSetValue", bitSet)
+				.setByteArrayProperty("byteArrayValue", new byte[]{1, 2, 3})
+				.setIntArrayProperty("intArrayValue", new int[]{1, -1, Integer.MAX_VALUE, Integer.MIN_VALUE})
+				.setLongArrayProperty("longArrayValue", new long[]{5, -5, Long.MAX_VALUE, Long.MIN_VALUE})
+				.setFloatArrayProperty("floatArrayValue", new float[]{0.5f, -0.5f})
+				.setDoubleArrayProperty("doubleArrayValue", new double[]{0.25, -0.25})
+				.setStringArrayProperty("stringArrayValue", new String[]{"a", "b", "c"})
+				.setReferencedObject("child", new MessageObject(child).setStringProperty("name", "single").setIntProperty("value", 1));
+		for (int i = 0; i < 5; i++) {
+			message.addReference("children", new MessageObject(child).setStringProperty("name", "child-" + i).setIntProperty("value", i));
+		}
+		return message;
+	}
+
+	static void assertAllTypesMessage(MessageObject message) {
+		assertTrue(message.getBooleanProperty("booleanValue"));
+		assertEquals(-7, message.getByteProperty("byteValue"));
+		assertEquals(-42, message.getIntProperty("intValue"));
+		assertEquals(1234567890123L, message.getLongProperty("longValue"));
+		assertEquals(1.5f, message.getFloatProperty("floatValue"), 0);
+		assertEquals(-2.25, message.getDoubleProperty("doubleValue"), 0);
+		assertEquals("Grüße", message.getStringProperty("stringValue"));
+		assertEquals(3, message.getBitSetProperty("bitSetValue").cardinality());
+		assertTrue(message.getBitSetProperty("bitSetValue").get(1000));
+		assertArrayEquals(new byte[]{1, 2, 3}, message.getByteArrayProperty("byteArrayValue"));
+		assertArrayEquals(new int[]{1, -1, Integer.MAX_VALUE, Integer.MIN_VALUE}, message.getIntArrayProperty("intArrayValue"));
+		assertArrayEquals(new long[]{5, -5, Long.MAX_VALUE, Long.MIN_VALUE}, message.getLongArrayProperty("longArrayValue"));
+		assertArrayEquals(new float[]{0.5f, -0.5f}, message.getFloatArrayProperty("floatArrayValue"), 0);
+		assertArrayEquals(new double[]{0.25, -0.25}, message.getDoubleArrayProperty("doubleArrayValue"), 0);
+		assertArrayEquals(new String[]{"a", "b", "c"}, message.getStringArrayProperty("stringArrayValue"));
+		assertEquals("single", message.getReferencedObject("child").getStringProperty("name"));
+		List<MessageObject> children = message.getReferencedObjects("children");
+		assertEquals(5, children.size());
+		assertEquals("child-4", children.get(4).getStringProperty("name"));
+		assertEquals(4, children.get(4).getIntProperty("value"));
+	}
 }
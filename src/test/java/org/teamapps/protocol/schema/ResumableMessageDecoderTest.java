@@ -0,0 +1,99 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Protocol Schema
+ * ---
+ * Copyright (C) 2022 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.protocol.schema;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ResumableMessageDecoderTest {
+
+	private static final int ARRAY_LENGTH = 20_000;
+
+	@Test(timeout = 60_000)
+	public void testLargeValuesByteByByte() throws IOException {
+		ObjectPropertyDefinition rowModel = new ObjectPropertyDefinition("row-model", "row", 1);
+		rowModel.addStringProperty("name", 1);
+		rowModel.addIntArrayProperty("values", 2);
+		ObjectPropertyDefinition model = new ObjectPropertyDefinition("large-model", "large", 1);
+		model.addByteArrayProperty("bytes", 1);
+		model.addIntArrayProperty("ints", 2);
+		model.addLongArrayProperty("longs", 3);
+		model.addDoubleArrayProperty("doubles", 4);
+		model.addStringArrayProperty("strings", 5);
+		model.addProperty("bits", 6, PropertyType.BITSET);
+		model.addMultiReference("rows", 7, rowModel);
+
+		byte[] bytes = new byte[ARRAY_LENGTH];
+		int[] ints = new int[ARRAY_LENGTH];
+		long[] longs = new long[ARRAY_LENGTH];
+		double[] doubles = new double[ARRAY_LENGTH];
+		String[] strings = new String[ARRAY_LENGTH / 10];
+		BitSet bits = new BitSet();
+		for (int i = 0; i < ARRAY_LENGTH; i++) {
+			bytes[i] = (byte) i;
+			ints[i] = i * 31 - 7;
+			longs[i] = i * 1_000_003L;
+			doubles[i] = i / 7d;
+			if (i % 3 == 0) {
+				bits.set(i);
+			}
+		}
+		for (int i = 0; i < strings.length; i++) {
+			strings[i] = "value-" + i;
+		}
+		List<MessageObject> rows = new ArrayList<>();
+		for (int i = 0; i < 1_000; i++) {
+			rows.add(new MessageObject(rowModel).setStringProperty("name", "row-" + i).setIntArrayProperty("values", new int[]{i, i + 1, i + 2}));
+		}
+		MessageObject message = new MessageObject(model)
+				.setByteArrayProperty("bytes", bytes)
+				.setIntArrayProperty("ints", ints)
+				.setLongArrayProperty("longs", longs)
+				.setDoubleArrayProperty("doubles", doubles)
+				.setStringArrayProperty("strings", strings)
+				.setBitSetProperty("bits", bits)
+				.setReferencedObjects("rows", rows);
+
+		MessageEncoding compact = MessageEncoding.COMPACT;
+		for (MessageEncoding encoding : new MessageEncoding[]{MessageEncoding.DEFAULT, compact, compact.withFlags(MessageEncoding.FLAG_COLUMNAR | MessageEncoding.FLAG_FIXED_LAYOUT), compact.withFlags(MessageEncoding.FLAG_FRAMED)}) {
+			byte[] encoded = message.toBytes(null, encoding);
+			ResumableMessageDecoder decoder = new ResumableMessageDecoder(model, null, null);
+			ByteBuf cumulation = Unpooled.buffer(encoded.length);
+			MessageObject decoded = null;
+			for (int i = 0; i < encoded.length; i++) {
+				assertNull(decoded);
+				cumulation.writeByte(encoded[i]);
+				decoded = decoder.decode(cumulation);
+			}
+			assertNotNull(decoded);
+			assertFalse(decoder.isDecoding());
+			assertEquals(0, cumulation.readableBytes());
+			assertArrayEquals(message.toBytes(), decoded.toBytes());
+		}
+	}
+}
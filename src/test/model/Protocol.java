@@ -29,6 +29,7 @@ public class Protocol implements ModelCollectionProvider {
 		employee.addProperty("lastName", 2, PropertyType.STRING);
 		employee.addProperty("pic", 3, PropertyType.BYTE_ARRAY);
 		employee.addProperty("vegan", 4, PropertyType.BOOLEAN);
+		employee.addProperty("status", 5, PropertyType.ENUM);
 
 		ObjectPropertyDefinition company = modelCollection.createModel("company", "wvwegjwoie4n");
 		company.addProperty("name", 1, PropertyType.STRING);